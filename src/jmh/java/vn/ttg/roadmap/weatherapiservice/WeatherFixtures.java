@@ -0,0 +1,81 @@
+package vn.ttg.roadmap.weatherapiservice;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import vn.ttg.roadmap.weatherapiservice.dto.DayWeather;
+import vn.ttg.roadmap.weatherapiservice.dto.WeatherAlert;
+import vn.ttg.roadmap.weatherapiservice.dto.WeatherResponse;
+
+/**
+ * Representative weather data shared by the benchmarks.
+ *
+ * @author ttg
+ */
+public final class WeatherFixtures {
+
+    private static final String[] CONDITIONS = {"Clear", "Partially cloudy", "Rain, Partially cloudy", "Overcast", "Rain, Overcast"};
+
+    private WeatherFixtures() {}
+
+    /**
+     * A weather response shaped like the upstream one, with the given number of days starting today.
+     */
+    public static WeatherResponse response(int dayCount) {
+        LocalDate today = LocalDate.now();
+        List<DayWeather> days = new ArrayList<>(dayCount);
+        for (int i = 0; i < dayCount; i++) {
+            days.add(new DayWeather(today.plusDays(i).toString(), 30.5 + i % 3, 21.2 - i % 4, CONDITIONS[i % CONDITIONS.length],
+                    "Partly cloudy throughout the day with a chance of rain in the afternoon."));
+        }
+        List<WeatherAlert> alerts = List.of(new WeatherAlert("Heat Advisory",
+                "Heat index values up to 105 expected. Drink plenty of fluids and stay out of the sun."));
+        return new WeatherResponse("Hanoi, Vietnam", "Asia/Bangkok",
+                "Similar temperatures continuing with a chance of rain multiple days.", days, alerts);
+    }
+
+    /**
+     * A weather API response body with the given number of days starting today, each with its hourly data,
+     * which makes up most of the upstream body although it is not served.
+     */
+    public static String upstreamJson(int dayCount) {
+        LocalDate today = LocalDate.now();
+        StringBuilder json = new StringBuilder(dayCount * 12_000);
+        json.append("{\"queryCost\":").append(dayCount)
+                .append(",\"latitude\":21.0245,\"longitude\":105.8412,\"resolvedAddress\":\"Hanoi, Vietnam\"")
+                .append(",\"address\":\"hanoi\",\"timezone\":\"Asia/Bangkok\",\"tzoffset\":7.0")
+                .append(",\"description\":\"Similar temperatures continuing with a chance of rain multiple days.\",\"days\":[");
+        for (int i = 0; i < dayCount; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"datetime\":\"").append(today.plusDays(i)).append('"')
+                    .append(",\"datetimeEpoch\":").append(1_700_000_000L + i * 86_400L)
+                    .append(",\"tempmax\":").append(30.5 + i % 3).append(",\"tempmin\":").append(21.2 - i % 4)
+                    .append(",\"temp\":26.1,\"humidity\":78.4,\"precip\":1.2,\"precipprob\":45.0,\"preciptype\":[\"rain\"]")
+                    .append(",\"windspeed\":14.8,\"winddir\":120.3,\"pressure\":1008.2,\"cloudcover\":62.5,\"uvindex\":8.0")
+                    .append(",\"sunrise\":\"05:32:10\",\"sunset\":\"18:21:45\"")
+                    .append(",\"conditions\":\"").append(CONDITIONS[i % CONDITIONS.length]).append('"')
+                    .append(",\"description\":\"Partly cloudy throughout the day with a chance of rain in the afternoon.\"")
+                    .append(",\"icon\":\"partly-cloudy-day\",\"stations\":[\"48820099999\",\"VVNB\"],\"hours\":[");
+            for (int hour = 0; hour < 24; hour++) {
+                if (hour > 0) {
+                    json.append(',');
+                }
+                json.append("{\"datetime\":\"").append(String.format("%02d:00:00", hour)).append('"')
+                        .append(",\"datetimeEpoch\":").append(1_700_000_000L + i * 86_400L + hour * 3_600L)
+                        .append(",\"temp\":").append(22.0 + hour % 9).append(",\"feelslike\":").append(24.5 + hour % 7)
+                        .append(",\"humidity\":80.1,\"dew\":20.3,\"precip\":0.0,\"precipprob\":12.0,\"preciptype\":null")
+                        .append(",\"windgust\":20.2,\"windspeed\":10.4,\"winddir\":110.0,\"pressure\":1008.0")
+                        .append(",\"visibility\":10.0,\"cloudcover\":55.0,\"uvindex\":3.0")
+                        .append(",\"conditions\":\"Partially cloudy\",\"icon\":\"partly-cloudy-day\",\"stations\":[\"VVNB\"]}");
+            }
+            json.append("]}");
+        }
+        json.append("],\"alerts\":[{\"event\":\"Heat Advisory\",\"headline\":\"Heat Advisory\"")
+                .append(",\"description\":\"Heat index values up to 105 expected. Drink plenty of fluids and stay out of the sun.\"}]")
+                .append(",\"currentConditions\":{\"datetime\":\"12:00:00\",\"temp\":29.4,\"conditions\":\"Partially cloudy\"}}");
+        return json.toString();
+    }
+}
@@ -0,0 +1,69 @@
+package vn.ttg.roadmap.weatherapiservice.cache;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import vn.ttg.roadmap.weatherapiservice.WeatherFixtures;
+import vn.ttg.roadmap.weatherapiservice.conf.RedisCacheConfig;
+
+/**
+ * Compares the polymorphic JSON cache value serializer with the binary codec, with and without LZ4.
+ * The encoded size of each variant is printed once per trial.
+ *
+ * @author ttg
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CacheValueCodecBenchmark {
+
+    @Param({"1", "15"})
+    private int days;
+
+    @Param({"json", "binary", "binary-lz4"})
+    private String codec;
+
+    private RedisSerializer<Object> serializer;
+    private TimestampedValue value;
+    private byte[] encoded;
+
+    @Setup
+    public void setUp() {
+        RedisSerializer<Object> json = RedisCacheConfig.jsonCacheValueSerializer(Jackson2ObjectMapperBuilder.json().build());
+        serializer = switch (codec) {
+            case "json" -> json;
+            case "binary" -> new WeatherResponseRedisSerializer(json, WeatherResponseRedisSerializer.Compression.NONE, 0);
+            case "binary-lz4" -> new WeatherResponseRedisSerializer(json, WeatherResponseRedisSerializer.Compression.LZ4, 0);
+            default -> throw new IllegalArgumentException("Unknown codec " + codec);
+        };
+        value = new TimestampedValue(WeatherFixtures.response(days), System.currentTimeMillis());
+        encoded = serializer.serialize(value);
+        System.out.printf("%n%s, %d days: %d bytes%n", codec, days, encoded.length);
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        return serializer.serialize(value);
+    }
+
+    @Benchmark
+    public Object decode() {
+        return serializer.deserialize(encoded);
+    }
+}
@@ -0,0 +1,75 @@
+package vn.ttg.roadmap.weatherapiservice.codec;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import vn.ttg.roadmap.weatherapiservice.WeatherFixtures;
+import vn.ttg.roadmap.weatherapiservice.dto.WeatherResponse;
+
+/**
+ * Cost of encoding the body of a weather response with and without a field projection, then of gzip
+ * compressing it as the server does for large responses. The bytes on the wire of each combination are
+ * printed once per trial.
+ *
+ * @author ttg
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WeatherFieldProjectionBenchmark {
+
+    @Param({"1", "15"})
+    private int days;
+
+    @Param({"all", "datetime,tempmax,tempmin"})
+    private String fields;
+
+    private WeatherResponseJsonEncoder encoder;
+    private WeatherFieldProjection projection;
+    private WeatherResponse response;
+
+    @Setup
+    public void setUp() throws IOException {
+        encoder = new WeatherResponseJsonEncoder(Jackson2ObjectMapperBuilder.json().build(), new SimpleMeterRegistry(), 10_000);
+        projection = "all".equals(fields) ? WeatherFieldProjection.ALL : WeatherFieldProjection.parse(fields);
+        response = WeatherFixtures.response(days);
+        System.out.printf("%n%d days, fields=%s: %d bytes, %d bytes gzipped%n", days, fields, encode().length, encodeGzip().length);
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        // a new response per operation, as assembled from the cached days of a range
+        WeatherResponse copy = new WeatherResponse(response.getResolvedAddress(), response.getTimezone(),
+                response.getDescription(), response.getDays(), response.getAlerts());
+        return encoder.encode(encoder.project(copy, projection)).body();
+    }
+
+    @Benchmark
+    public byte[] encodeGzip() throws IOException {
+        byte[] body = encode();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 2);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(body);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,86 @@
+package vn.ttg.roadmap.weatherapiservice.codec;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+
+import reactor.core.publisher.Flux;
+import vn.ttg.roadmap.weatherapiservice.WeatherFixtures;
+import vn.ttg.roadmap.weatherapiservice.dto.WeatherResponse;
+
+/**
+ * Cost of decoding a weather API response body arriving in network sized chunks, with the Jackson decoder
+ * binding the whole body and with {@link WeatherResponseJsonDecoder} reading it incrementally.
+ *
+ * @author ttg
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WeatherResponseDecoderBenchmark {
+
+    private static final int CHUNK_SIZE = 8 * 1024;
+    private static final ResolvableType TYPE = ResolvableType.forClass(WeatherResponse.class);
+
+    @Param({"1", "15"})
+    private int days;
+
+    private List<byte[]> chunks;
+    private Jackson2JsonDecoder jacksonDecoder;
+    private WeatherResponseJsonDecoder streamingDecoder;
+
+    @Setup
+    public void setUp() {
+        byte[] body = WeatherFixtures.upstreamJson(days).getBytes(StandardCharsets.UTF_8);
+        chunks = new ArrayList<>();
+        for (int offset = 0; offset < body.length; offset += CHUNK_SIZE) {
+            chunks.add(Arrays.copyOfRange(body, offset, Math.min(offset + CHUNK_SIZE, body.length)));
+        }
+        jacksonDecoder = new Jackson2JsonDecoder(Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+                .build());
+        jacksonDecoder.setMaxInMemorySize(10 * 1024 * 1024);
+        streamingDecoder = new WeatherResponseJsonDecoder(new JsonFactory(), 10 * 1024 * 1024);
+    }
+
+    @Benchmark
+    public WeatherResponse jackson() {
+        return (WeatherResponse) jacksonDecoder.decodeToMono(body(), TYPE, MediaType.APPLICATION_JSON, Map.of()).block();
+    }
+
+    @Benchmark
+    public WeatherResponse streaming() {
+        return streamingDecoder.decodeToMono(body(), TYPE, MediaType.APPLICATION_JSON, Map.of()).block();
+    }
+
+    private Flux<DataBuffer> body() {
+        return Flux.fromIterable(chunks).map(DefaultDataBufferFactory.sharedInstance::wrap);
+    }
+}
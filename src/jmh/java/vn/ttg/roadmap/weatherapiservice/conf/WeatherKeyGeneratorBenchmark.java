@@ -0,0 +1,58 @@
+package vn.ttg.roadmap.weatherapiservice.conf;
+
+import java.lang.reflect.Method;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.cache.interceptor.KeyGenerator;
+
+import vn.ttg.roadmap.weatherapiservice.service.WeatherService;
+
+/**
+ * Cost of the weatherKeyGenerator, invoked on every cached service call.
+ *
+ * @author ttg
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WeatherKeyGeneratorBenchmark {
+
+    private KeyGenerator keyGenerator;
+    private Method currentMethod;
+    private Method forecastMethod;
+    private Object[] currentParams;
+    private Object[] forecastParams;
+
+    @Setup
+    public void setUp() throws NoSuchMethodException {
+        keyGenerator = new RedisCacheConfig().weatherKeyGenerator();
+        currentMethod = WeatherService.class.getMethod("getCurrentWeather", String.class);
+        forecastMethod = WeatherService.class.getMethod("getForecast", String.class, LocalDate.class, LocalDate.class);
+        currentParams = new Object[] {" Ho Chi Minh City "};
+        forecastParams = new Object[] {"Ho Chi Minh City", LocalDate.now(), LocalDate.now().plusDays(7)};
+    }
+
+    @Benchmark
+    public Object currentKey() {
+        return keyGenerator.generate(this, currentMethod, currentParams);
+    }
+
+    @Benchmark
+    public Object rangeKey() {
+        return keyGenerator.generate(this, forecastMethod, forecastParams);
+    }
+}
@@ -0,0 +1,65 @@
+package vn.ttg.roadmap.weatherapiservice.dto;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import vn.ttg.roadmap.weatherapiservice.WeatherFixtures;
+import vn.ttg.roadmap.weatherapiservice.codec.WeatherResponseJsonEncoder;
+
+/**
+ * Cost of rendering a WeatherResponse as the JSON body of an API response, with an ObjectMapper
+ * configured like the one of the running service, and of serving the body of a cached response
+ * again through {@link WeatherResponseJsonEncoder}.
+ *
+ * @author ttg
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WeatherResponseJsonBenchmark {
+
+    @Param({"1", "15"})
+    private int days;
+
+    private ObjectWriter writer;
+    private WeatherResponseJsonEncoder encoder;
+    private WeatherResponse response;
+
+    @Setup
+    public void setUp() {
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        writer = objectMapper.writerFor(WeatherResponse.class);
+        encoder = new WeatherResponseJsonEncoder(objectMapper, new SimpleMeterRegistry(), 10_000);
+        response = WeatherFixtures.response(days);
+    }
+
+    @Benchmark
+    public byte[] render() throws JsonProcessingException {
+        return writer.writeValueAsBytes(response);
+    }
+
+    @Benchmark
+    public byte[] renderCached() {
+        return encoder.encode(response).body();
+    }
+}
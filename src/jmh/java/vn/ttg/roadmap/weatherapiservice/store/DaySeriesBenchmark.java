@@ -0,0 +1,113 @@
+package vn.ttg.roadmap.weatherapiservice.store;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import vn.ttg.roadmap.weatherapiservice.WeatherFixtures;
+import vn.ttg.roadmap.weatherapiservice.cache.WeatherResponseRedisSerializer;
+import vn.ttg.roadmap.weatherapiservice.conf.RedisCacheConfig;
+import vn.ttg.roadmap.weatherapiservice.dto.DayWeather;
+
+/**
+ * Reads a range of days of a location as objects decoded one by one, as they are from the caches, and from a
+ * memory-mapped {@link DaySeries}, either materializing the days or averaging their temperatures from the
+ * columns. The size of both representations is printed once per trial.
+ *
+ * @author ttg
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DaySeriesBenchmark {
+
+    @Param({"15", "365"})
+    private int days;
+
+    private RedisSerializer<Object> codec;
+    private List<byte[]> encodedDays;
+    private Path file;
+    private DaySeries series;
+    private LocalDate startDate;
+    private LocalDate endDate;
+
+    @Setup
+    public void setUp() throws IOException {
+        codec = new WeatherResponseRedisSerializer(RedisCacheConfig.jsonCacheValueSerializer(Jackson2ObjectMapperBuilder.json().build()),
+                WeatherResponseRedisSerializer.Compression.LZ4, 1024);
+        List<DayWeather> dayList = WeatherFixtures.response(days).getDays();
+        encodedDays = new ArrayList<>(days);
+        dayList.forEach(day -> encodedDays.add(codec.serialize(day)));
+
+        file = Files.createTempFile("day-series", ".days");
+        DaySeries.write(file, "hanoi,vietnam", dayList);
+        series = DaySeries.open(file);
+        startDate = LocalDate.parse(dayList.get(0).getDatetime());
+        endDate = LocalDate.parse(dayList.get(days - 1).getDatetime());
+        System.out.printf("%n%d days: %d bytes as objects, %d bytes as a series%n", days,
+                encodedDays.stream().mapToInt(bytes -> bytes.length).sum(), Files.size(file));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public List<DayWeather> objectDays() {
+        List<DayWeather> range = new ArrayList<>(days);
+        encodedDays.forEach(bytes -> range.add((DayWeather) codec.deserialize(bytes)));
+        return range;
+    }
+
+    @Benchmark
+    public double objectMeanTempmax() {
+        double sum = 0;
+        for (DayWeather day : objectDays()) {
+            sum += day.getTempmax();
+        }
+        return sum / days;
+    }
+
+    @Benchmark
+    public int seriesDays() {
+        int length = 0;
+        for (DayWeather day : series.days(startDate, endDate)) {
+            length += day.getDatetime().length() + day.getConditions().length();
+        }
+        return length;
+    }
+
+    @Benchmark
+    public double seriesMeanTempmax() {
+        int from = series.indexOf(startDate);
+        int to = series.indexOf(endDate);
+        double sum = 0;
+        for (int i = from; i <= to; i++) {
+            sum += series.tempmax(i);
+        }
+        return sum / (to - from + 1);
+    }
+}
@@ -0,0 +1,87 @@
+package vn.ttg.roadmap.weatherapiservice.strategy;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import vn.ttg.roadmap.weatherapiservice.dto.CurrentWeatherRequest;
+import vn.ttg.roadmap.weatherapiservice.dto.HistoricalWeatherRequest;
+import vn.ttg.roadmap.weatherapiservice.dto.WeatherForecastRequest;
+import vn.ttg.roadmap.weatherapiservice.dto.WeatherRequest;
+import vn.ttg.roadmap.weatherapiservice.strategy.impl.WeatherDateRangeRequestValidationStrategy;
+import vn.ttg.roadmap.weatherapiservice.strategy.impl.WeatherForeCastRequestValidationStrategy;
+import vn.ttg.roadmap.weatherapiservice.strategy.impl.WeatherHistoricalRequestValidationStrategy;
+import vn.ttg.roadmap.weatherapiservice.strategy.impl.WeatherLocationRequestValidationStrategy;
+
+/**
+ * Cost of the validation chains run by the controller before every request.
+ *
+ * @author ttg
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WeatherRequestValidationBenchmark {
+
+    private static final List<WeatherRequestValidationContext.Type> CURRENT = List.of(
+            WeatherRequestValidationContext.Type.LOCATION);
+    private static final List<WeatherRequestValidationContext.Type> FORECAST = List.of(
+            WeatherRequestValidationContext.Type.LOCATION, WeatherRequestValidationContext.Type.DATE_RANGE, WeatherRequestValidationContext.Type.FORECAST);
+    private static final List<WeatherRequestValidationContext.Type> HISTORICAL = List.of(
+            WeatherRequestValidationContext.Type.LOCATION, WeatherRequestValidationContext.Type.DATE_RANGE, WeatherRequestValidationContext.Type.HISTORICAL);
+
+    private WeatherRequestValidationContext validationContext;
+    private WeatherRequest currentRequest;
+    private WeatherRequest forecastRequest;
+    private WeatherRequest historicalRequest;
+
+    @Setup
+    public void setUp() {
+        validationContext = new WeatherRequestValidationContext(List.of(
+                new WeatherLocationRequestValidationStrategy(),
+                new WeatherDateRangeRequestValidationStrategy(WeatherRequestValidationContext.Type.DATE_RANGE,
+                        WeatherDateRangeRequestValidationStrategy.WEATHER_API_MAX_DAYS),
+                new WeatherForeCastRequestValidationStrategy(),
+                new WeatherHistoricalRequestValidationStrategy()));
+        LocalDate today = LocalDate.now();
+        currentRequest = new CurrentWeatherRequest("Hanoi");
+        forecastRequest = new WeatherForecastRequest("Hanoi", today, today.plusDays(7));
+        historicalRequest = new HistoricalWeatherRequest("Hanoi", today.minusDays(14), today.minusDays(1));
+    }
+
+    @Benchmark
+    public void current(Blackhole blackhole) {
+        validate(CURRENT, currentRequest, blackhole);
+    }
+
+    @Benchmark
+    public void forecast(Blackhole blackhole) {
+        validate(FORECAST, forecastRequest, blackhole);
+    }
+
+    @Benchmark
+    public void historical(Blackhole blackhole) {
+        validate(HISTORICAL, historicalRequest, blackhole);
+    }
+
+    private void validate(List<WeatherRequestValidationContext.Type> types, WeatherRequest request, Blackhole blackhole) {
+        for (WeatherRequestValidationContext.Type type : types) {
+            blackhole.consume(validationContext.validate(type, request));
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package vn.ttg.roadmap.weatherapiservice.visitor;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import vn.ttg.roadmap.weatherapiservice.dto.CurrentWeatherRequest;
+import vn.ttg.roadmap.weatherapiservice.dto.HistoricalWeatherRequest;
+import vn.ttg.roadmap.weatherapiservice.dto.WeatherForecastRequest;
+import vn.ttg.roadmap.weatherapiservice.dto.WeatherRequest;
+
+/**
+ * Cost of the visitor dispatch of WeatherRequestDataExtractor. The requests of all three types are
+ * visited in turn so that the call sites stay megamorphic, as they are in the running service.
+ *
+ * @author ttg
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WeatherRequestDataExtractorBenchmark {
+
+    private WeatherRequest[] requests;
+
+    @Setup
+    public void setUp() {
+        LocalDate today = LocalDate.now();
+        requests = new WeatherRequest[] {
+                new CurrentWeatherRequest("Hanoi"),
+                new WeatherForecastRequest("Hanoi", today, today.plusDays(7)),
+                new HistoricalWeatherRequest("Hanoi", today.minusDays(14), today.minusDays(1))
+        };
+    }
+
+    @Benchmark
+    public void extractAll(Blackhole blackhole) {
+        for (WeatherRequest request : requests) {
+            blackhole.consume(WeatherRequestDataExtractor.getLocation(request));
+            blackhole.consume(WeatherRequestDataExtractor.getStartDate(request));
+            blackhole.consume(WeatherRequestDataExtractor.getEndDate(request));
+        }
+    }
+}
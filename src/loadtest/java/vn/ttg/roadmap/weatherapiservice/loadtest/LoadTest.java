@@ -0,0 +1,273 @@
+package vn.ttg.roadmap.weatherapiservice.loadtest;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.unit.DataSize;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.utility.DockerImageName;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import vn.ttg.roadmap.weatherapiservice.WeatherApiServiceApplication;
+
+/**
+ * End-to-end load test of the weather API service.
+ *
+ * <p>Starts Redis (a Testcontainers container unless {@code loadtest.redis-host} is set), a
+ * {@link StubWeatherApi} upstream and the service itself, then drives the current, forecast and historical
+ * endpoints open-loop at a fixed request rate with Zipf distributed locations. Latencies are measured from
+ * the scheduled send time, so a saturated service is not hidden by coordinated omission.</p>
+ *
+ * <p>Settings are read from system properties (defaults in brackets), program arguments are passed to the
+ * service, for instance {@code --cache.near.enabled=false}:</p>
+ * <ul>
+ *     <li>loadtest.rps [200], loadtest.duration [60s], loadtest.warmup [10s], loadtest.timeout [10s]</li>
+ *     <li>loadtest.locations [1000], loadtest.zipf-exponent [1.0], loadtest.mix [70,20,10] current,forecast,historical</li>
+ *     <li>loadtest.stub.latency [150ms], loadtest.stub.jitter [100ms], loadtest.stub.error-rate [0.01],
+ *     loadtest.stub.payload-size [4KB]</li>
+ *     <li>loadtest.redis-host, loadtest.redis-port [6379] to use an existing Redis instead of a container</li>
+ * </ul>
+ *
+ * @author ttg
+ */
+public class LoadTest {
+
+    private enum Endpoint {
+        CURRENT, FORECAST, HISTORICAL
+    }
+
+    private static final long MAX_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(1);
+
+    private final int rps = Integer.getInteger("loadtest.rps", 200);
+    private final Duration duration = duration("loadtest.duration", "60s");
+    private final Duration warmup = duration("loadtest.warmup", "10s");
+    private final Duration timeout = duration("loadtest.timeout", "10s");
+    private final int locations = Integer.getInteger("loadtest.locations", 1000);
+    private final double zipfExponent = Double.parseDouble(System.getProperty("loadtest.zipf-exponent", "1.0"));
+    private final int[] mix = parseMix(System.getProperty("loadtest.mix", "70,20,10"));
+
+    private final ZipfDistribution locationDistribution = new ZipfDistribution(locations, zipfExponent);
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+
+    private final Map<Endpoint, Histogram> latencies = new EnumMap<>(Endpoint.class);
+    private final Map<Endpoint, LongAdder> successes = new EnumMap<>(Endpoint.class);
+    private final Map<Endpoint, LongAdder> failures = new EnumMap<>(Endpoint.class);
+
+    private String baseUrl;
+
+    public static void main(String[] args) throws Exception {
+        new LoadTest().run(args);
+    }
+
+    private void run(String[] args) throws Exception {
+        GenericContainer<?> redis = null;
+        String redisHost = System.getProperty("loadtest.redis-host");
+        int redisPort = Integer.getInteger("loadtest.redis-port", 6379);
+        if (redisHost == null) {
+            redis = new GenericContainer<>(DockerImageName.parse("redis:7.2-alpine")).withExposedPorts(6379);
+            redis.start();
+            redisHost = redis.getHost();
+            redisPort = redis.getMappedPort(6379);
+        }
+
+        Duration stubLatency = duration("loadtest.stub.latency", "150ms");
+        Duration stubJitter = duration("loadtest.stub.jitter", "100ms");
+        double stubErrorRate = Double.parseDouble(System.getProperty("loadtest.stub.error-rate", "0.01"));
+        DataSize stubPayloadSize = DataSize.parse(System.getProperty("loadtest.stub.payload-size", "4KB"));
+
+        try (StubWeatherApi stub = new StubWeatherApi(stubLatency, stubJitter, stubErrorRate, (int) stubPayloadSize.toBytes());
+             ConfigurableApplicationContext context = startService(stub.getBaseUrl(), redisHost, redisPort, args)) {
+
+            baseUrl = "http://127.0.0.1:" + ((WebServerApplicationContext) context).getWebServer().getPort() + "/api/v1/weather";
+            System.out.printf("%nLoad test: %d req/s for %s after %s warm-up, %d locations (zipf %.2f), mix current/forecast/historical %d/%d/%d%n",
+                    rps, duration, warmup, locations, zipfExponent, mix[0], mix[1], mix[2]);
+            System.out.printf("Upstream stub: latency %s + 0..%s, error rate %.1f%%, payload %s%n",
+                    stubLatency, stubJitter, stubErrorRate * 100, stubPayloadSize);
+
+            reset();
+            drive(warmup);
+            reset();
+            MeterRegistry meterRegistry = context.getBean(MeterRegistry.class);
+            Map<String, Double> tierCountsBefore = tierCounts(meterRegistry);
+            long upstreamBefore = stub.getRequestCount();
+            long start = System.nanoTime();
+
+            drive(duration);
+
+            double seconds = (System.nanoTime() - start) / 1e9;
+            report(seconds, stub.getRequestCount() - upstreamBefore, tierCountsBefore, tierCounts(meterRegistry));
+        } finally {
+            if (redis != null) {
+                redis.stop();
+            }
+        }
+    }
+
+    /**
+     * Starts the service in this JVM. Settings are passed as system properties so that they win over the
+     * application yml files while program arguments can still override them.
+     */
+    private ConfigurableApplicationContext startService(String upstreamUrl, String redisHost, int redisPort, String[] args) {
+        System.setProperty("server.port", "0");
+        System.setProperty("weather.api.base-url", upstreamUrl);
+        System.setProperty("weather.api.key", "loadtest");
+        System.setProperty("spring.data.redis.host", redisHost);
+        System.setProperty("spring.data.redis.port", String.valueOf(redisPort));
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        System.setProperty("resilience4j.ratelimiter.instances.weather-api-per-second.limit-for-period", "1000000");
+        System.setProperty("resilience4j.ratelimiter.instances.weather-api-daily.limit-for-period", "1000000000");
+        System.setProperty("logging.level.root", "WARN");
+        // upstream errors are injected on purpose and counted in the report
+        System.setProperty("logging.level.vn.ttg.roadmap.weatherapiservice", "OFF");
+        System.setProperty("logging.level.org.springframework.cache", "WARN");
+        System.setProperty("logging.level.org.springframework.data.redis", "WARN");
+        return new SpringApplicationBuilder(WeatherApiServiceApplication.class).run(args);
+    }
+
+    /**
+     * Sends requests at the configured rate for the given duration and waits for the ones in flight.
+     */
+    private void drive(Duration phase) {
+        long periodNanos = TimeUnit.SECONDS.toNanos(1) / rps;
+        long start = System.nanoTime();
+        long end = start + phase.toNanos();
+        ConcurrentLinkedQueue<CompletableFuture<?>> inFlight = new ConcurrentLinkedQueue<>();
+
+        for (long intended = start; intended < end; intended += periodNanos) {
+            long wait = intended - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            inFlight.add(send(intended));
+            if (inFlight.size() > rps) {
+                inFlight.removeIf(CompletableFuture::isDone);
+            }
+        }
+        CompletableFuture.allOf(inFlight.toArray(CompletableFuture[]::new)).join();
+    }
+
+    private CompletableFuture<?> send(long intendedNanos) {
+        Endpoint endpoint = nextEndpoint();
+        HttpRequest request = HttpRequest.newBuilder(nextUri(endpoint)).timeout(timeout).GET().build();
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .handle((response, e) -> {
+                    long micros = Math.min((System.nanoTime() - intendedNanos) / 1000, MAX_LATENCY_MICROS);
+                    latencies.get(endpoint).recordValue(micros);
+                    (e == null && response.statusCode() == 200 ? successes : failures).get(endpoint).increment();
+                    return null;
+                });
+    }
+
+    private Endpoint nextEndpoint() {
+        int roll = ThreadLocalRandom.current().nextInt(mix[0] + mix[1] + mix[2]);
+        return roll < mix[0] ? Endpoint.CURRENT : roll < mix[0] + mix[1] ? Endpoint.FORECAST : Endpoint.HISTORICAL;
+    }
+
+    private URI nextUri(Endpoint endpoint) {
+        String location = "city-" + locationDistribution.sample();
+        LocalDate today = LocalDate.now();
+        return URI.create(switch (endpoint) {
+            case CURRENT -> baseUrl + "/current?location=" + location;
+            case FORECAST -> baseUrl + "/forecast?location=" + location + "&startDate=" + today + "&endDate=" + today.plusDays(6);
+            case HISTORICAL -> {
+                // one of the last four weeks, recent weeks being asked for more often
+                LocalDate startDate = today.minusDays(7L * (1 + Math.min(3, locationDistribution.sample() % 4)));
+                yield baseUrl + "/historical?location=" + location + "&startDate=" + startDate + "&endDate=" + startDate.plusDays(6);
+            }
+        });
+    }
+
+    private void reset() {
+        for (Endpoint endpoint : Endpoint.values()) {
+            latencies.put(endpoint, new ConcurrentHistogram(MAX_LATENCY_MICROS, 3));
+            successes.put(endpoint, new LongAdder());
+            failures.put(endpoint, new LongAdder());
+        }
+    }
+
+    private void report(double seconds, long upstreamCalls, Map<String, Double> tierCountsBefore, Map<String, Double> tierCountsAfter) {
+        System.out.printf("%n%-11s %9s %9s %8s %11s %9s %9s %9s %9s%n",
+                "endpoint", "requests", "ok", "errors", "req/s", "p50 ms", "p99 ms", "p999 ms", "max ms");
+        Histogram total = new Histogram(MAX_LATENCY_MICROS, 3);
+        long totalOk = 0;
+        long totalErrors = 0;
+        for (Endpoint endpoint : Endpoint.values()) {
+            Histogram histogram = latencies.get(endpoint);
+            long ok = successes.get(endpoint).sum();
+            long errors = failures.get(endpoint).sum();
+            printRow(endpoint.name().toLowerCase(), histogram, ok, errors, seconds);
+            total.add(histogram);
+            totalOk += ok;
+            totalErrors += errors;
+        }
+        printRow("all", total, totalOk, totalErrors, seconds);
+
+        long requests = totalOk + totalErrors;
+        System.out.printf("%nupstream calls: %d, cache hit ratio (requests served without an upstream call): %.2f%%%n",
+                upstreamCalls, requests == 0 ? 0 : 100.0 * Math.max(0, requests - upstreamCalls) / requests);
+        for (String tier : new String[] {"all tiers", "near", "remote"}) {
+            double hits = tierCountsAfter.getOrDefault(tier + ":hit", 0.0) - tierCountsBefore.getOrDefault(tier + ":hit", 0.0);
+            double misses = tierCountsAfter.getOrDefault(tier + ":miss", 0.0) - tierCountsBefore.getOrDefault(tier + ":miss", 0.0);
+            if (hits + misses > 0) {
+                System.out.printf("%s cache hit ratio: %.2f%% of %.0f lookups%n", tier, 100 * hits / (hits + misses), hits + misses);
+            }
+        }
+    }
+
+    private static void printRow(String name, Histogram histogram, long ok, long errors, double seconds) {
+        System.out.printf("%-11s %9d %9d %8d %11.1f %9.1f %9.1f %9.1f %9.1f%n", name, ok + errors, ok, errors, ok / seconds,
+                histogram.getValueAtPercentile(50) / 1000.0, histogram.getValueAtPercentile(99) / 1000.0,
+                histogram.getValueAtPercentile(99.9) / 1000.0, histogram.getMaxValue() / 1000.0);
+    }
+
+    /**
+     * Key lookup counts of all caches, keyed by "tier:result". The near and remote tiers are only
+     * reported when the near cache is enabled.
+     */
+    private static Map<String, Double> tierCounts(MeterRegistry meterRegistry) {
+        Map<String, Double> counts = new HashMap<>();
+        for (Counter counter : meterRegistry.find("cache.keys").counters()) {
+            counts.merge("all tiers:" + counter.getId().getTag("result"), counter.count(), Double::sum);
+        }
+        for (FunctionCounter counter : meterRegistry.find("cache.tier.gets").functionCounters()) {
+            counts.merge(counter.getId().getTag("tier") + ":" + counter.getId().getTag("result"), counter.count(), Double::sum);
+        }
+        return counts;
+    }
+
+    private static Duration duration(String property, String defaultValue) {
+        return DurationStyle.detectAndParse(System.getProperty(property, defaultValue));
+    }
+
+    private static int[] parseMix(String mix) {
+        String[] parts = mix.split(",");
+        if (parts.length != 3) {
+            throw new IllegalArgumentException("loadtest.mix must be three weights: current,forecast,historical");
+        }
+        return new int[] {Integer.parseInt(parts[0].trim()), Integer.parseInt(parts[1].trim()), Integer.parseInt(parts[2].trim())};
+    }
+}
@@ -0,0 +1,130 @@
+package vn.ttg.roadmap.weatherapiservice.loadtest;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Local stand-in for the Visual Crossing timeline API with configurable latency, error rate and payload size.
+ *
+ * <p>Serves {@code GET /timeline/{location}/{startDate}/{endDate}} with one day per date of the range.
+ * Each day description is padded so that a response is roughly the configured payload size.</p>
+ *
+ * @author ttg
+ */
+public class StubWeatherApi implements AutoCloseable {
+
+    private final Duration latency;
+    private final Duration jitter;
+    private final double errorRate;
+    private final int payloadSize;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+
+    /**
+     * @param latency base latency of every response
+     * @param jitter upper bound of the random latency added to the base latency
+     * @param errorRate share of the requests answered with 503, between 0 and 1
+     * @param payloadSize approximate size of a response body in bytes
+     */
+    public StubWeatherApi(Duration latency, Duration jitter, double errorRate, int payloadSize) throws IOException {
+        this.latency = latency;
+        this.jitter = jitter;
+        this.errorRate = errorRate;
+        this.payloadSize = payloadSize;
+        this.executor = Executors.newCachedThreadPool();
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+        this.server.createContext("/timeline/", this::handle);
+        this.server.setExecutor(executor);
+        this.server.start();
+    }
+
+    /**
+     * @return the base URL to configure as {@code weather.api.base-url}
+     */
+    public String getBaseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/timeline";
+    }
+
+    public long getRequestCount() {
+        return requests.sum();
+    }
+
+    public long getErrorCount() {
+        return errors.sum();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.increment();
+        try (exchange) {
+            sleep();
+            if (ThreadLocalRandom.current().nextDouble() < errorRate) {
+                errors.increment();
+                exchange.sendResponseHeaders(503, -1);
+                return;
+            }
+
+            // /timeline/{location}/{startDate}/{endDate}
+            String[] segments = exchange.getRequestURI().getPath().split("/");
+            if (segments.length < 5) {
+                exchange.sendResponseHeaders(400, -1);
+                return;
+            }
+            byte[] body = body(segments[2], LocalDate.parse(segments[3]), LocalDate.parse(segments[4]));
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    private byte[] body(String location, LocalDate startDate, LocalDate endDate) {
+        int dayCount = (int) Math.max(1, endDate.toEpochDay() - startDate.toEpochDay() + 1);
+        String description = "x".repeat(Math.max(0, payloadSize / dayCount - 120));
+
+        StringBuilder json = new StringBuilder(payloadSize + 256)
+                .append("{\"resolvedAddress\":\"").append(location)
+                .append("\",\"timezone\":\"Asia/Bangkok\",\"description\":\"Stubbed weather\",\"days\":[");
+        for (int i = 0; i < dayCount; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"datetime\":\"").append(startDate.plusDays(i))
+                    .append("\",\"tempmax\":31.4,\"tempmin\":22.8,\"conditions\":\"Partially cloudy\",\"description\":\"")
+                    .append(description).append("\"}");
+        }
+        return json.append("],\"alerts\":[]}").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void sleep() {
+        long millis = latency.toMillis() + (jitter.isZero() ? 0 : ThreadLocalRandom.current().nextLong(jitter.toMillis() + 1));
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
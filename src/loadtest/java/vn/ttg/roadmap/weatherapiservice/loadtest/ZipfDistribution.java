@@ -0,0 +1,36 @@
+package vn.ttg.roadmap.weatherapiservice.loadtest;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Zipf distribution over the ranks {@code 0..n-1}, rank {@code k} being drawn with a probability
+ * proportional to {@code 1 / (k + 1)^exponent}. An exponent of 0 is uniform, around 1 resembles the
+ * popularity of real world locations.
+ *
+ * @author ttg
+ */
+public class ZipfDistribution {
+
+    private final double[] cumulative;
+
+    public ZipfDistribution(int n, double exponent) {
+        cumulative = new double[n];
+        double sum = 0;
+        for (int k = 0; k < n; k++) {
+            sum += 1 / Math.pow(k + 1, exponent);
+            cumulative[k] = sum;
+        }
+        for (int k = 0; k < n; k++) {
+            cumulative[k] /= sum;
+        }
+    }
+
+    /**
+     * @return a random rank, 0 being the most popular
+     */
+    public int sample() {
+        int index = Arrays.binarySearch(cumulative, ThreadLocalRandom.current().nextDouble());
+        return Math.min(index >= 0 ? index : -index - 1, cumulative.length - 1);
+    }
+}
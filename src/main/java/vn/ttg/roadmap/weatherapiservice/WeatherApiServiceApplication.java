@@ -2,6 +2,7 @@ package vn.ttg.roadmap.weatherapiservice;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 /**
  * Main application class for the Weather API Service.
@@ -9,6 +10,7 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
  * @author ttg
  */
 @SpringBootApplication
+@EnableScheduling
 public class WeatherApiServiceApplication {
 
     public static void main(String[] args) {
@@ -0,0 +1,287 @@
+package vn.ttg.roadmap.weatherapiservice.cache;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.BiFunction;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import jakarta.annotation.PostConstruct;
+import vn.ttg.roadmap.weatherapiservice.dto.DayWeather;
+import vn.ttg.roadmap.weatherapiservice.dto.WeatherResponse;
+import vn.ttg.roadmap.weatherapiservice.exception.WeatherApiException;
+
+/**
+ * Day level cache layout for date range requests, so that overlapping ranges reuse each other.
+ *
+ * <p>Each {@link DayWeather} is cached under {@code location:date}, next to a {@code location:meta} entry
+ * holding the rest of the latest response of the location (resolved address, timezone, description and
+ * alerts). A range is assembled from the cached days with a single multi-key lookup, and only the missing
+ * days are fetched from the weather API. The days of a response are written with a single batch of
+ * pipelined writes, on the cache I/O executor rather than the thread completing the call. Missing days
+ * are grouped into contiguous sub-ranges, sub-ranges separated by no more than
+ * {@code cache.daily.merge-gap} cached days are merged into one call. When the weather API fails, the
+ * range is served from expired entries still within the stale-if-error window.</p>
+ *
+ * <p>The write times of the entries a range was assembled from are remembered with the range, weakly and
+ * within {@code cache.tracked-values}, so that the range can be told apart from one assembled from other
+ * writes of its days and its body encoded once per version of its entries.</p>
+ *
+ * <p><strong>Thread Safety:</strong> This class is thread-safe and can be used concurrently by multiple threads.</p>
+ *
+ * @author ttg
+ */
+@Component
+public class DailyWeatherCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DailyWeatherCache.class);
+
+    @Autowired
+    private CacheManager cacheManager;
+    @Autowired
+    private SingleFlight singleFlight;
+    @Autowired
+    private LocationAliasIndex locationAliasIndex;
+    @Autowired
+    private RefreshAheadCacheManager refreshAheadCacheManager;
+    @Autowired
+    @Qualifier("cacheIoExecutor")
+    private Executor cacheIoExecutor;
+
+    @Value("${cache.daily.merge-gap}")
+    private int mergeGap;
+    @Value("${cache.tracked-values}")
+    private long maxTrackedValues;
+
+    private Map<WeatherResponse, long[]> rangeWrittenAt;
+
+    @PostConstruct
+    void init() {
+        rangeWrittenAt = Caffeine.newBuilder().weakKeys().maximumSize(maxTrackedValues).<WeatherResponse, long[]>build().asMap();
+    }
+
+    /**
+     * Returns the weather of a location for a date range, fetching only the days missing from the cache.
+     *
+     * @param cacheName the cache holding the days
+     * @param location the location to get weather for
+     * @param startDate the first date of the range
+     * @param endDate the last date of the range
+     * @param fetcher fetches the weather of a sub-range from the weather API
+     * @return a future completing with the weather of the whole range
+     */
+    public CompletableFuture<WeatherResponse> getRange(String cacheName, String location, LocalDate startDate, LocalDate endDate,
+                                                       BiFunction<LocalDate, LocalDate, CompletableFuture<WeatherResponse>> fetcher) {
+        Cache cache = cacheManager.getCache(cacheName);
+        List<LocalDate> dates = startDate.datesUntil(endDate.plusDays(1)).toList();
+        List<String> keys = new ArrayList<>(dates.size() + 1);
+        keys.add(WeatherCacheKeys.meta(location));
+        dates.forEach(date -> keys.add(WeatherCacheKeys.day(location, date)));
+
+        List<Cache.ValueWrapper> cached = MultiGetCache.getAll(cache, keys);
+        WeatherResponse meta = valueOf(cached.get(0), WeatherResponse.class);
+        DayWeather[] days = new DayWeather[dates.size()];
+        for (int i = 0; i < days.length; i++) {
+            days[i] = valueOf(cached.get(i + 1), DayWeather.class);
+        }
+
+        List<int[]> missing = missingRanges(days);
+        if (missing.isEmpty()) {
+            if (meta != null) {
+                WeatherResponse range = assemble(meta, days);
+                track(cacheName, range, meta, days);
+                return CompletableFuture.completedFuture(range);
+            }
+            // the metadata expired before the days, refresh it with the smallest possible call
+            missing = List.of(new int[] {0, 0});
+        }
+        LOGGER.debug("Fetching {} sub-ranges of {} from {} to {}, {} of {} days cached", missing.size(), location, startDate, endDate,
+                Arrays.stream(days).filter(Objects::nonNull).count(), days.length);
+
+        List<CompletableFuture<WeatherResponse>> fetches = new ArrayList<>(missing.size());
+        for (int[] range : missing) {
+            LocalDate from = dates.get(range[0]);
+            LocalDate to = dates.get(range[1]);
+            fetches.add(singleFlight.executeAsync(cacheName + ":" + WeatherCacheKeys.range(location, from, to),
+                    () -> fetcher.apply(from, to).thenApplyAsync(response -> store(cache, location, response), cacheIoExecutor)));
+        }
+
+        // on failure the stale entries are read from Redis on the cache I/O executor, not on the event loop thread failing the call
+        return CompletableFuture.allOf(fetches.toArray(CompletableFuture[]::new)).thenApply(ignored -> {
+            WeatherResponse latest = meta;
+            for (CompletableFuture<WeatherResponse> fetch : fetches) {
+                WeatherResponse response = fetch.join();
+                if (response != null) {
+                    latest = response;
+                    fill(days, startDate, response);
+                }
+            }
+            if (latest == null) {
+                return null;
+            }
+            WeatherResponse range = assemble(latest, days);
+            // the metadata of a fetched response was written with its days
+            track(cacheName, range, latest == meta || latest.getDays() == null || latest.getDays().isEmpty()
+                    ? meta : latest.getDays().get(0), days);
+            return range;
+        }).exceptionallyAsync(e -> staleRange(cacheName, keys, e), cacheIoExecutor);
+    }
+
+    /**
+     * Returns the write times of the cache entries a range returned by {@link #getRange} was assembled
+     * from: its metadata first, then each of its days in order.
+     *
+     * @param range a range returned by getRange
+     * @return epoch milliseconds at which the entries were written, or null when they are not all known,
+     *         as for ranges served from stale entries
+     */
+    public long[] getWrittenAt(WeatherResponse range) {
+        return range != null ? rangeWrittenAt.get(range) : null;
+    }
+
+    /**
+     * Remembers the write times of the entries of an assembled range, metaValue being the cached value
+     * written along with its metadata, when every one of them is known.
+     */
+    private void track(String cacheName, WeatherResponse range, Object metaValue, DayWeather[] days) {
+        long[] writtenAt = new long[days.length + 1];
+        Long metaWrittenAt = refreshAheadCacheManager.getWrittenAt(cacheName, metaValue);
+        if (metaWrittenAt == null) {
+            return;
+        }
+        writtenAt[0] = metaWrittenAt;
+        for (int i = 0; i < days.length; i++) {
+            Long dayWrittenAt = refreshAheadCacheManager.getWrittenAt(cacheName, days[i]);
+            if (dayWrittenAt == null) {
+                return;
+            }
+            writtenAt[i + 1] = dayWrittenAt;
+        }
+        rangeWrittenAt.put(range, writtenAt);
+    }
+
+    /**
+     * Serves the range from expired entries when the weather API failed and the metadata and every day
+     * of the range are still within the stale-if-error window of the cache, otherwise rethrows the failure.
+     */
+    private WeatherResponse staleRange(String cacheName, List<String> keys, Throwable throwable) {
+        Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
+        if (cause instanceof WeatherApiException e && e.getErrorCode().isWeatherApiFailure()) {
+            List<Cache.ValueWrapper> stale = refreshAheadCacheManager.getAllStale(cacheName, keys);
+            WeatherResponse meta = valueOf(stale.get(0), WeatherResponse.class);
+            DayWeather[] days = new DayWeather[keys.size() - 1];
+            for (int i = 0; i < days.length; i++) {
+                days[i] = valueOf(stale.get(i + 1), DayWeather.class);
+            }
+            if (meta != null && Arrays.stream(days).allMatch(Objects::nonNull)) {
+                LOGGER.warn("Weather API unavailable, serving stale {} entries for key: {}", cacheName, keys.get(0));
+                return assemble(meta, days);
+            }
+        }
+        throw throwable instanceof CompletionException completionException ? completionException : new CompletionException(throwable);
+    }
+
+    /**
+     * Index ranges of the missing days, contiguous missing days and gaps of up to mergeGap cached days
+     * being merged into a single range.
+     */
+    private List<int[]> missingRanges(DayWeather[] days) {
+        List<int[]> ranges = new ArrayList<>();
+        for (int i = 0; i < days.length; i++) {
+            if (days[i] != null) {
+                continue;
+            }
+            int[] last = ranges.isEmpty() ? null : ranges.get(ranges.size() - 1);
+            if (last != null && i - last[1] - 1 <= mergeGap) {
+                last[1] = i;
+            } else {
+                ranges.add(new int[] {i, i});
+            }
+        }
+        return ranges;
+    }
+
+    /**
+     * Caches every day of an upstream response and the metadata of the location in a single batch, under
+     * the canonical location of the response so that every alias of the location shares them.
+     */
+    private WeatherResponse store(Cache cache, String requestedLocation, WeatherResponse response) {
+        if (response == null) {
+            return null;
+        }
+        String location = locationAliasIndex.learn(requestedLocation, response);
+        Map<String, Object> entries = new LinkedHashMap<>();
+        entries.put(WeatherCacheKeys.meta(location), new WeatherResponse(response.getResolvedAddress(), response.getTimezone(),
+                response.getDescription(), null, response.getAlerts()));
+        if (response.getDays() != null) {
+            for (DayWeather day : response.getDays()) {
+                LocalDate date = dateOf(day);
+                if (date != null) {
+                    entries.put(WeatherCacheKeys.day(location, date), day);
+                }
+            }
+        }
+        MultiGetCache.putAll(cache, entries);
+        return response;
+    }
+
+    private static void fill(DayWeather[] days, LocalDate startDate, WeatherResponse response) {
+        if (response == null || response.getDays() == null) {
+            return;
+        }
+        for (DayWeather day : response.getDays()) {
+            LocalDate date = dateOf(day);
+            if (date == null) {
+                continue;
+            }
+            long index = date.toEpochDay() - startDate.toEpochDay();
+            if (index >= 0 && index < days.length && days[(int) index] == null) {
+                days[(int) index] = day;
+            }
+        }
+    }
+
+    /**
+     * Builds a new response so that the cached metadata is never modified.
+     */
+    private static WeatherResponse assemble(WeatherResponse meta, DayWeather[] days) {
+        List<DayWeather> list = new ArrayList<>(days.length);
+        for (DayWeather day : days) {
+            if (day != null) {
+                list.add(day);
+            }
+        }
+        return new WeatherResponse(meta.getResolvedAddress(), meta.getTimezone(), meta.getDescription(), list, meta.getAlerts());
+    }
+
+    private static LocalDate dateOf(DayWeather day) {
+        try {
+            return day != null && day.getDatetime() != null ? LocalDate.parse(day.getDatetime()) : null;
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private static <T> T valueOf(Cache.ValueWrapper wrapper, Class<T> type) {
+        Object value = wrapper != null ? wrapper.get() : null;
+        return type.isInstance(value) ? type.cast(value) : null;
+    }
+}
@@ -0,0 +1,162 @@
+package vn.ttg.roadmap.weatherapiservice.cache;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.text.Normalizer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import vn.ttg.roadmap.weatherapiservice.dto.WeatherResponse;
+
+/**
+ * Maps equivalent spellings of a location to a single canonical location, so that they share cache
+ * entries and weather API calls.
+ *
+ * <p>Locations are first normalized: lower cased, diacritics removed, whitespace collapsed and dropped
+ * around commas, and latitude/longitude pairs rounded to {@code weather.location.coordinate-precision}
+ * decimals. The alias index then maps a normalized location to the normalized resolved address the
+ * weather API returned for it, so that "Ha Noi" and "hanoi,vn" both end up on "hanoi,vietnam" once each
+ * of them has been fetched once. The index is bounded by {@code weather.location.aliases.max-size}.</p>
+ *
+ * <p>Lookups are counted in the {@code weather.location.lookups} meter tagged with {@code result}
+ * (alias when the index mapped the location to another one, direct otherwise), the size of the index
+ * is published as the {@code weather.location.aliases} gauge.</p>
+ *
+ * <p><strong>Thread Safety:</strong> This class is thread-safe and can be used concurrently by multiple threads.</p>
+ *
+ * @author ttg
+ */
+@Component
+public class LocationAliasIndex {
+
+    private static final Pattern COORDINATES = Pattern.compile("([+-]?\\d{1,3}(?:\\.\\d+)?),([+-]?\\d{1,3}(?:\\.\\d+)?)");
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+
+    private final int coordinatePrecision;
+    private final Cache<String, String> aliases;
+    private final Counter aliasCounter;
+    private final Counter directCounter;
+
+    public LocationAliasIndex(MeterRegistry meterRegistry,
+                              @Value("${weather.location.coordinate-precision}") int coordinatePrecision,
+                              @Value("${weather.location.aliases.max-size}") long maxAliases) {
+        this.coordinatePrecision = coordinatePrecision;
+        this.aliases = Caffeine.newBuilder().maximumSize(maxAliases).build();
+        this.aliasCounter = lookupCounter(meterRegistry, "alias");
+        this.directCounter = lookupCounter(meterRegistry, "direct");
+        Gauge.builder("weather.location.aliases", aliases, Cache::estimatedSize)
+                .description("Number of location aliases learned from the weather API")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Returns the canonical form of a location, to be used both for the cache keys and the weather API call.
+     *
+     * @param location the location as requested
+     * @return the canonical location
+     */
+    public String canonicalize(String location) {
+        String normalized = normalize(location);
+        String canonical = aliases.getIfPresent(normalized);
+        if (canonical == null) {
+            directCounter.increment();
+            return normalized;
+        }
+        aliasCounter.increment();
+        return canonical;
+    }
+
+    /**
+     * Follows the alias index from an already canonical location, without counting a lookup. Locations
+     * canonicalized before their alias was learned are mapped to the location they turned out to be.
+     *
+     * @param location a canonical location
+     * @return the location it is an alias of, or the location itself
+     */
+    public String resolve(String location) {
+        String canonical = aliases.getIfPresent(location);
+        return canonical != null ? canonical : location;
+    }
+
+    /**
+     * Records the resolved address of a weather API response as the canonical form of the requested location.
+     *
+     * @param location the location the weather API was called with
+     * @param response the response of the weather API
+     * @return the canonical location of the response
+     */
+    public String learn(String location, WeatherResponse response) {
+        String normalized = normalize(location);
+        if (response == null || response.getResolvedAddress() == null || response.getResolvedAddress().isBlank()) {
+            return normalized;
+        }
+        String canonical = normalize(response.getResolvedAddress());
+        if (!canonical.equals(normalized)) {
+            aliases.put(normalized, canonical);
+        }
+        return canonical;
+    }
+
+    /**
+     * Normalizes a location in a single pass, only locations with non ASCII characters go through
+     * Unicode decomposition first.
+     */
+    String normalize(String location) {
+        String value = String.valueOf(location);
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) >= 0x80) {
+                value = MARKS.matcher(Normalizer.normalize(value, Normalizer.Form.NFD)).replaceAll("")
+                        .replace('đ', 'd').replace('Đ', 'D');
+                break;
+            }
+        }
+
+        StringBuilder builder = new StringBuilder(value.length());
+        boolean pendingSpace = false;
+        boolean coordinates = true;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (Character.isWhitespace(c)) {
+                pendingSpace = builder.length() > 0;
+                continue;
+            }
+            if (pendingSpace && c != ',' && builder.charAt(builder.length() - 1) != ',') {
+                builder.append(' ');
+            }
+            pendingSpace = false;
+            char lower = Character.toLowerCase(c);
+            coordinates &= (lower >= '0' && lower <= '9') || lower == '.' || lower == ',' || lower == '-' || lower == '+';
+            builder.append(lower);
+        }
+        String normalized = builder.toString();
+        return coordinates ? roundCoordinates(normalized) : normalized;
+    }
+
+    private String roundCoordinates(String location) {
+        Matcher matcher = COORDINATES.matcher(location);
+        if (!matcher.matches()) {
+            return location;
+        }
+        return round(matcher.group(1)) + "," + round(matcher.group(2));
+    }
+
+    private String round(String coordinate) {
+        return new BigDecimal(coordinate).setScale(coordinatePrecision, RoundingMode.HALF_UP).stripTrailingZeros().toPlainString();
+    }
+
+    private static Counter lookupCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("weather.location.lookups")
+                .description("Location lookups, alias ones being deduplicated onto another location")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
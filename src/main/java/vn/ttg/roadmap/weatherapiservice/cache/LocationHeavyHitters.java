@@ -0,0 +1,103 @@
+package vn.ttg.roadmap.weatherapiservice.cache;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Approximate request counts of the most requested locations, a Space-Saving style heavy hitters sketch.
+ *
+ * <p>At most {@code weather.warmup.tracked-locations} locations are counted. When the limit is reached
+ * the least requested half is dropped, and locations tracked afterwards start from the highest dropped
+ * count so that a popular location is never undercounted. Counts are halved by {@link #decay()} so
+ * that the ranking follows changes in traffic.</p>
+ *
+ * <p>Recording is lock free, only dropping and decaying counts are serialized.</p>
+ *
+ * <p><strong>Thread Safety:</strong> This class is thread-safe and can be used concurrently by multiple threads.</p>
+ *
+ * @author ttg
+ */
+@Component
+public class LocationHeavyHitters {
+
+    private final int capacity;
+    private final Map<String, LongAdder> counts = new ConcurrentHashMap<>();
+    private volatile long floor;
+
+    public LocationHeavyHitters(@Value("${weather.warmup.tracked-locations}") int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Counts a request of the given location.
+     *
+     * @param location the canonical location
+     */
+    public void record(String location) {
+        LongAdder count = counts.get(location);
+        if (count == null) {
+            if (counts.size() >= capacity) {
+                dropLeastRequested();
+            }
+            count = counts.computeIfAbsent(location, key -> {
+                LongAdder initial = new LongAdder();
+                initial.add(floor);
+                return initial;
+            });
+        }
+        count.increment();
+    }
+
+    /**
+     * @param n the number of locations to return
+     * @return the n most requested locations, most requested first
+     */
+    public List<String> top(int n) {
+        return snapshot().stream()
+                .limit(n)
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    /**
+     * Halves every count, increments racing with the decay may be lost.
+     */
+    public synchronized void decay() {
+        counts.forEach((location, count) -> {
+            long value = count.sumThenReset();
+            if (value > 1) {
+                count.add(value / 2);
+            } else {
+                counts.remove(location, count);
+            }
+        });
+        floor /= 2;
+    }
+
+    private synchronized void dropLeastRequested() {
+        if (counts.size() < capacity) {
+            return;
+        }
+        List<Map.Entry<String, Long>> entries = snapshot();
+        long dropped = floor;
+        for (Map.Entry<String, Long> entry : entries.subList(capacity / 2, entries.size())) {
+            counts.remove(entry.getKey());
+            dropped = Math.max(dropped, entry.getValue());
+        }
+        floor = dropped;
+    }
+
+    private List<Map.Entry<String, Long>> snapshot() {
+        List<Map.Entry<String, Long>> entries = new ArrayList<>(counts.size());
+        counts.forEach((location, count) -> entries.add(Map.entry(location, count.sum())));
+        entries.sort(Map.Entry.<String, Long>comparingByValue(Comparator.reverseOrder()));
+        return entries;
+    }
+}
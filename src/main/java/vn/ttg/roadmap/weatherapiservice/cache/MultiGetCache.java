@@ -0,0 +1,62 @@
+package vn.ttg.roadmap.weatherapiservice.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.cache.Cache;
+
+/**
+ * Cache able to look up and write many keys in a single operation, such as a Redis MGET or pipelined SETs.
+ *
+ * @author ttg
+ */
+public interface MultiGetCache {
+
+    /**
+     * Looks up all the given keys at once.
+     *
+     * @param keys the keys to look up
+     * @return the value wrappers in the order of the keys, null for the keys that are not present
+     */
+    List<Cache.ValueWrapper> getAll(List<?> keys);
+
+    /**
+     * Writes all the given entries at once.
+     *
+     * @param entries the keys and their values to write
+     */
+    void putAll(Map<?, ?> entries);
+
+    /**
+     * Looks up all the given keys in a single operation when the cache supports it, one by one otherwise.
+     *
+     * @param cache the cache to look up
+     * @param keys the keys to look up
+     * @return the value wrappers in the order of the keys, null for the keys that are not present
+     */
+    static List<Cache.ValueWrapper> getAll(Cache cache, List<?> keys) {
+        if (cache instanceof MultiGetCache multiGetCache) {
+            return multiGetCache.getAll(keys);
+        }
+        List<Cache.ValueWrapper> values = new ArrayList<>(keys.size());
+        for (Object key : keys) {
+            values.add(cache.get(key));
+        }
+        return values;
+    }
+
+    /**
+     * Writes all the given entries in a single operation when the cache supports it, one by one otherwise.
+     *
+     * @param cache the cache to write to
+     * @param entries the keys and their values to write
+     */
+    static void putAll(Cache cache, Map<?, ?> entries) {
+        if (cache instanceof MultiGetCache multiGetCache) {
+            multiGetCache.putAll(entries);
+            return;
+        }
+        entries.forEach(cache::put);
+    }
+}
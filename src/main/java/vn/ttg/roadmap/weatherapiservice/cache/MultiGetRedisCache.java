@@ -0,0 +1,89 @@
+package vn.ttg.roadmap.weatherapiservice.cache;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+
+import org.springframework.data.redis.cache.RedisCache;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.cache.RedisCacheWriter;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+
+/**
+ * A RedisCache that looks up many keys with a single MGET round-trip and writes many entries with pipelined
+ * SETs, metered in {@link RedisRoundTrips}.
+ *
+ * @author ttg
+ */
+public class MultiGetRedisCache extends RedisCache implements MultiGetCache {
+
+    private final RedisConnectionFactory connectionFactory;
+    private final RedisRoundTrips roundTrips;
+
+    public MultiGetRedisCache(String name, RedisCacheWriter cacheWriter, RedisCacheConfiguration cacheConfiguration,
+                              RedisConnectionFactory connectionFactory, RedisRoundTrips roundTrips) {
+        super(name, cacheWriter, cacheConfiguration);
+        this.connectionFactory = connectionFactory;
+        this.roundTrips = roundTrips;
+    }
+
+    @Override
+    public List<ValueWrapper> getAll(List<?> keys) {
+        if (keys.isEmpty()) {
+            return new ArrayList<>();
+        }
+        byte[][] redisKeys = new byte[keys.size()][];
+        for (int i = 0; i < keys.size(); i++) {
+            redisKeys[i] = serializeCacheKey(createCacheKey(keys.get(i)));
+        }
+
+        List<byte[]> redisValues = roundTrips.sync("mget", () -> {
+            try (RedisConnection connection = connectionFactory.getConnection()) {
+                return connection.stringCommands().mGet(redisKeys);
+            }
+        });
+
+        List<ValueWrapper> values = new ArrayList<>(keys.size());
+        for (int i = 0; i < keys.size(); i++) {
+            byte[] redisValue = redisValues != null ? redisValues.get(i) : null;
+            values.add(redisValue != null ? toValueWrapper(deserializeCacheValue(redisValue)) : null);
+        }
+        return values;
+    }
+
+    /**
+     * Writes the entries with pipelined SETs when the cache writer supports it, waiting for their replies,
+     * otherwise with one put per entry.
+     */
+    @Override
+    public void putAll(Map<?, ?> entries) {
+        if (!(getCacheWriter() instanceof WriteBehindRedisCacheWriter writer)) {
+            entries.forEach(this::put);
+            return;
+        }
+        List<byte[]> keys = new ArrayList<>(entries.size());
+        List<byte[]> values = new ArrayList<>(entries.size());
+        List<Duration> ttls = new ArrayList<>(entries.size());
+        entries.forEach((key, value) -> {
+            Object cacheValue = preProcessCacheValue(value);
+            if (cacheValue == null) {
+                // null values are skipped rather than failing the writes of the whole batch
+                return;
+            }
+            keys.add(serializeCacheKey(createCacheKey(key)));
+            values.add(serializeCacheValue(cacheValue));
+            ttls.add(getCacheConfiguration().getTtlFunction().getTimeToLive(key, value));
+        });
+        if (keys.isEmpty()) {
+            return;
+        }
+        try {
+            writer.storeAll(getName(), keys, values, ttls).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+}
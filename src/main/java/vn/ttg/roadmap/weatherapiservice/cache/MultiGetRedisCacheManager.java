@@ -0,0 +1,34 @@
+package vn.ttg.roadmap.weatherapiservice.cache;
+
+import java.util.Map;
+
+import org.springframework.data.redis.cache.RedisCache;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.cache.RedisCacheWriter;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+
+/**
+ * A RedisCacheManager creating {@link MultiGetRedisCache} instances.
+ *
+ * @author ttg
+ */
+public class MultiGetRedisCacheManager extends RedisCacheManager {
+
+    private final RedisConnectionFactory connectionFactory;
+    private final RedisRoundTrips roundTrips;
+
+    public MultiGetRedisCacheManager(RedisCacheWriter cacheWriter, RedisCacheConfiguration defaultCacheConfiguration,
+                                     Map<String, RedisCacheConfiguration> initialCacheConfigurations,
+                                     RedisConnectionFactory connectionFactory, RedisRoundTrips roundTrips) {
+        super(cacheWriter, defaultCacheConfiguration, initialCacheConfigurations);
+        this.connectionFactory = connectionFactory;
+        this.roundTrips = roundTrips;
+    }
+
+    @Override
+    protected RedisCache createRedisCache(String name, RedisCacheConfiguration cacheConfiguration) {
+        return new MultiGetRedisCache(name, getCacheWriter(),
+                cacheConfiguration != null ? cacheConfiguration : getDefaultCacheConfiguration(), connectionFactory, roundTrips);
+    }
+}
@@ -0,0 +1,161 @@
+package vn.ttg.roadmap.weatherapiservice.cache;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Meters the round-trips of the weather caches to Redis.
+ *
+ * <p>Every command is timed in the {@code cache.redis.commands} meter tagged with {@code command} (get, mget,
+ * set, ...) and {@code mode}: sync when the caller blocks for the reply, async when it is handed a future.
+ * Each HTTP request gets a {@link Tally}, bound to the threads serving it: the request threads by
+ * {@link #bind(Tally)}, the tasks of executors decorated by {@link #propagate(Runnable)} and of executors
+ * returned by {@link #propagating(Executor)}, such as the completions of weather API calls. The commands sent
+ * from these threads are tallied and, once the request is complete, recorded in the
+ * {@code cache.redis.round-trips} distribution, telling how many round-trips to Redis serving a request took.</p>
+ *
+ * <p><strong>Thread Safety:</strong> This class is thread-safe and can be used concurrently by multiple threads.</p>
+ *
+ * @author ttg
+ */
+@Component
+public class RedisRoundTrips {
+
+    private static final ThreadLocal<Tally> REQUEST_ROUND_TRIPS = new ThreadLocal<>();
+
+    private final MeterRegistry meterRegistry;
+    private final DistributionSummary perRequest;
+
+    public RedisRoundTrips(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        this.perRequest = DistributionSummary.builder("cache.redis.round-trips")
+                .description("Redis round-trips per HTTP request")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Runs a command waiting for its reply.
+     *
+     * @param command the Redis command, such as get or mget
+     * @param call the call sending the command and returning its reply
+     * @return the reply
+     */
+    public <T> T sync(String command, Supplier<T> call) {
+        tally();
+        return timer(command, "sync").record(call);
+    }
+
+    /**
+     * Times a command whose reply is handed over as a future, from its sending to its reply.
+     *
+     * @param command the Redis command, such as set
+     * @param call the call sending the command
+     * @return the future reply
+     */
+    public <T> CompletableFuture<T> async(String command, Supplier<CompletableFuture<T>> call) {
+        tally();
+        Timer timer = timer(command, "async");
+        Timer.Sample sample = Timer.start(meterRegistry);
+        return call.get().whenComplete((reply, error) -> sample.stop(timer));
+    }
+
+    /**
+     * Binds the tally of a request to the current thread, until {@link #unbind()}.
+     *
+     * @param tally the tally of the request served by the current thread
+     */
+    public void bind(Tally tally) {
+        REQUEST_ROUND_TRIPS.set(tally);
+    }
+
+    /**
+     * Stops tallying the round-trips of the current thread.
+     */
+    public void unbind() {
+        REQUEST_ROUND_TRIPS.remove();
+    }
+
+    /**
+     * Records the round-trips of a complete request.
+     *
+     * @param tally the tally of the request
+     */
+    public void record(Tally tally) {
+        perRequest.record(tally.count.get());
+    }
+
+    /**
+     * Decorates a task so that it runs with the tally of the thread submitting it, for use as the
+     * {@code TaskDecorator} of the executors running the work of requests.
+     *
+     * @param task the task submitted
+     * @return the task running with the tally of the submitting thread
+     */
+    public Runnable propagate(Runnable task) {
+        return bound(REQUEST_ROUND_TRIPS.get(), task);
+    }
+
+    /**
+     * Returns an executor running its tasks with the tally of the current thread, whichever thread submits
+     * them, so that the completion of a call started by a request, submitted from an event loop thread,
+     * still tallies towards the request.
+     *
+     * @param executor the executor running the tasks
+     * @return the executor binding the tally of the current thread to its tasks
+     */
+    public Executor propagating(Executor executor) {
+        Tally tally = REQUEST_ROUND_TRIPS.get();
+        return tally == null ? executor : task -> executor.execute(bound(tally, task));
+    }
+
+    private static Runnable bound(Tally tally, Runnable task) {
+        if (tally == null) {
+            return task;
+        }
+        return () -> {
+            Tally previous = REQUEST_ROUND_TRIPS.get();
+            REQUEST_ROUND_TRIPS.set(tally);
+            try {
+                task.run();
+            } finally {
+                if (previous != null) {
+                    REQUEST_ROUND_TRIPS.set(previous);
+                } else {
+                    REQUEST_ROUND_TRIPS.remove();
+                }
+            }
+        };
+    }
+
+    private static void tally() {
+        Tally tally = REQUEST_ROUND_TRIPS.get();
+        if (tally != null) {
+            tally.count.incrementAndGet();
+        }
+    }
+
+    private Timer timer(String command, String mode) {
+        return Timer.builder("cache.redis.commands")
+                .description("Redis commands sent by the weather caches")
+                .tag("command", command)
+                .tag("mode", mode)
+                .register(meterRegistry);
+    }
+
+    /**
+     * The round-trips to Redis of one HTTP request, counted from every thread serving it.
+     */
+    public static final class Tally {
+
+        private final AtomicInteger count = new AtomicInteger();
+    }
+}
@@ -0,0 +1,346 @@
+package vn.ttg.roadmap.weatherapiservice.cache;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.SimpleValueWrapper;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+/**
+ * A Cache implementation that decides freshness itself instead of relying on the TTL of the
+ * delegate cache, enabling refresh-ahead and stale-if-error.
+ *
+ * <p>Values are stored as {@link TimestampedValue}. The delegate keeps entries for the logical TTL
+ * plus the stale-if-error window, while this cache treats entries older than the logical TTL as
+ * misses. Hits within the refresh-ahead window before expiry are served immediately and trigger a
+ * single background refresh of the key. Logically expired entries can still be read through
+ * {@link #getStale(Object)} while they are within the stale-if-error window.</p>
+ *
+ * <p>The write times of the fresh values served or written are kept by identity of the value, at most
+ * maxTrackedValues of them, so that callers can tell when the value they were given was written without
+ * reading the entry again. Writes, evictions and clears are reported to the {@link ChangeListener}.</p>
+ *
+ * <p><strong>Thread Safety:</strong> This class is thread-safe and can be used concurrently by multiple threads.</p>
+ *
+ * @author ttg
+ */
+public class RefreshAheadCache implements Cache, MultiGetCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RefreshAheadCache.class);
+
+    /**
+     * Set on the refreshing thread so that the refresh sees a miss and reloads the value.
+     */
+    private static final ThreadLocal<Boolean> BYPASS = new ThreadLocal<>();
+
+
+    private final Cache delegate;
+    private final long ttlMillis;
+    private final long refreshAheadMillis;
+    private final long staleIfErrorMillis;
+    private final Consumer<Object> refresher;
+    private final Executor executor;
+    private final ChangeListener listener;
+    private final Set<Object> refreshing = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Write times of the fresh values served or written, held weakly, by identity of the value.
+     */
+    private final Map<Object, Long> writtenAt;
+
+    /**
+     * Values handed out by {@link #getStale(Object)}, they must not be written back as fresh values
+     * when callers return them from a cached method. Held weakly, by identity of the value.
+     */
+    private final Map<Object, Boolean> staleHandouts = Collections.synchronizedMap(new WeakHashMap<>());
+
+    /**
+     * @param delegate the cache holding the timestamped values, its TTL must cover ttl plus staleIfError
+     * @param ttl the logical TTL after which values are considered expired
+     * @param refreshAhead the window before expiry in which hits trigger a background refresh, zero disables it
+     * @param staleIfError the window after expiry in which values are still available as stale
+     * @param refresher reloads the value of a key, invoked on the executor, null disables refresh-ahead
+     * @param executor the executor running the background refreshes
+     * @param maxTrackedValues the maximum number of values whose write time is kept
+     * @param listener notified of the keys written, evicted or cleared
+     */
+    public RefreshAheadCache(Cache delegate, Duration ttl, Duration refreshAhead, Duration staleIfError,
+                             Consumer<Object> refresher, Executor executor, long maxTrackedValues, ChangeListener listener) {
+        this.delegate = delegate;
+        this.ttlMillis = ttl.toMillis();
+        this.refreshAheadMillis = refresher != null ? refreshAhead.toMillis() : 0;
+        this.staleIfErrorMillis = staleIfError.toMillis();
+        this.refresher = refresher;
+        this.executor = executor;
+        this.listener = listener;
+        this.writtenAt = Caffeine.newBuilder().weakKeys().maximumSize(maxTrackedValues).<Object, Long>build().asMap();
+    }
+
+    /**
+     * Runs the given action so that lookups on the current thread miss, forcing cached methods
+     * to reload and re-put their value.
+     */
+    public static void bypass(Runnable action) {
+        BYPASS.set(Boolean.TRUE);
+        try {
+            action.run();
+        } finally {
+            BYPASS.remove();
+        }
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return delegate.getNativeCache();
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        if (BYPASS.get() != null) {
+            return null;
+        }
+        return fresh(key, delegate.get(key));
+    }
+
+    @Override
+    public CompletableFuture<?> retrieve(Object key) {
+        if (BYPASS.get() != null) {
+            return null;
+        }
+        CompletableFuture<?> result = delegate.retrieve(key);
+        if (result == null) {
+            return null;
+        }
+        return result.thenApply(stored -> fresh(key, stored instanceof ValueWrapper wrapper || stored == null
+                ? (ValueWrapper) stored : new SimpleValueWrapper(stored)));
+    }
+
+    @Override
+    public List<ValueWrapper> getAll(List<?> keys) {
+        List<ValueWrapper> values = new ArrayList<>(keys.size());
+        if (BYPASS.get() != null) {
+            keys.forEach(key -> values.add(null));
+            return values;
+        }
+        List<ValueWrapper> stored = MultiGetCache.getAll(delegate, keys);
+        for (int i = 0; i < keys.size(); i++) {
+            values.add(fresh(keys.get(i), stored.get(i)));
+        }
+        return values;
+    }
+
+    private ValueWrapper fresh(Object key, ValueWrapper wrapper) {
+        if (wrapper == null || !(wrapper.get() instanceof TimestampedValue entry)) {
+            // absent, or written before values were timestamped
+            return wrapper;
+        }
+
+        long age = entry.ageMillis(System.currentTimeMillis());
+        if (age >= ttlMillis) {
+            return null;
+        }
+        if (age >= ttlMillis - refreshAheadMillis) {
+            scheduleRefresh(key);
+        }
+        writtenAt.put(entry.getValue(), entry.getWrittenAt());
+        return new SimpleValueWrapper(entry.getValue());
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Class<T> type) {
+        ValueWrapper wrapper = get(key);
+        Object value = wrapper != null ? wrapper.get() : null;
+        if (value != null && type != null && !type.isInstance(value)) {
+            throw new IllegalStateException("Cached value is not of required type [" + type.getName() + "]: " + value);
+        }
+        return (T) value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        ValueWrapper wrapper = get(key);
+        if (wrapper != null) {
+            return (T) wrapper.get();
+        }
+        T value;
+        try {
+            value = valueLoader.call();
+        } catch (Exception e) {
+            throw new ValueRetrievalException(key, valueLoader, e);
+        }
+        put(key, value);
+        return value;
+    }
+
+    /**
+     * Returns when a value served as fresh by this cache or written to it was written, so that callers can
+     * tell when it expires without reading its entry again. Values served as stale are not tracked.
+     *
+     * @param value the value, as returned by a lookup or given to a write
+     * @return epoch milliseconds at which the value was written, or null if it is not tracked
+     */
+    public Long getWrittenAt(Object value) {
+        return value != null ? writtenAt.get(value) : null;
+    }
+
+    /**
+     * Returns the value of the key even if it is logically expired, as long as it is still
+     * within the stale-if-error window.
+     *
+     * @param key the key to look up
+     * @return the possibly stale value, or null if there is none
+     */
+    public ValueWrapper getStale(Object key) {
+        ValueWrapper wrapper = delegate.get(key);
+        if (wrapper == null || !(wrapper.get() instanceof TimestampedValue entry)) {
+            return wrapper;
+        }
+        if (entry.ageMillis(System.currentTimeMillis()) >= ttlMillis + staleIfErrorMillis) {
+            return null;
+        }
+        staleHandouts.put(entry.getValue(), Boolean.TRUE);
+        return new SimpleValueWrapper(entry.getValue());
+    }
+
+    /**
+     * Multi-key variant of {@link #getStale(Object)}, looking all the keys up at once.
+     *
+     * @param keys the keys to look up
+     * @return the possibly stale values, in the order of the keys, null for the keys without one
+     */
+    public List<ValueWrapper> getAllStale(List<?> keys) {
+        List<ValueWrapper> stored = MultiGetCache.getAll(delegate, keys);
+        List<ValueWrapper> values = new ArrayList<>(keys.size());
+        long now = System.currentTimeMillis();
+        for (ValueWrapper wrapper : stored) {
+            if (wrapper == null || !(wrapper.get() instanceof TimestampedValue entry)) {
+                values.add(wrapper);
+            } else if (entry.ageMillis(now) >= ttlMillis + staleIfErrorMillis) {
+                values.add(null);
+            } else {
+                staleHandouts.put(entry.getValue(), Boolean.TRUE);
+                values.add(new SimpleValueWrapper(entry.getValue()));
+            }
+        }
+        return values;
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        if (value == null || staleHandouts.containsKey(value)) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        delegate.put(key, new TimestampedValue(value, now));
+        written(key, value, now);
+    }
+
+    @Override
+    public void putAll(Map<?, ?> entries) {
+        long now = System.currentTimeMillis();
+        Map<Object, Object> timestamped = new LinkedHashMap<>(entries.size() * 2);
+        entries.forEach((key, value) -> {
+            if (value != null && !staleHandouts.containsKey(value)) {
+                timestamped.put(key, new TimestampedValue(value, now));
+            }
+        });
+        if (!timestamped.isEmpty()) {
+            MultiGetCache.putAll(delegate, timestamped);
+            timestamped.forEach((key, entry) -> written(key, ((TimestampedValue) entry).getValue(), now));
+        }
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        if (value == null || staleHandouts.containsKey(value)) {
+            return unwrap(delegate.get(key));
+        }
+        long now = System.currentTimeMillis();
+        ValueWrapper existing = delegate.putIfAbsent(key, new TimestampedValue(value, now));
+        if (existing == null) {
+            written(key, value, now);
+        }
+        return unwrap(existing);
+    }
+
+    private static ValueWrapper unwrap(ValueWrapper wrapper) {
+        return wrapper != null && wrapper.get() instanceof TimestampedValue entry ? new SimpleValueWrapper(entry.getValue()) : wrapper;
+    }
+
+    @Override
+    public void evict(Object key) {
+        delegate.evict(key);
+        listener.changed(getName(), key, System.currentTimeMillis());
+    }
+
+    @Override
+    public void clear() {
+        delegate.clear();
+        listener.changed(getName(), null, System.currentTimeMillis());
+    }
+
+    private void written(Object key, Object value, long now) {
+        if (value != null) {
+            writtenAt.put(value, now);
+        }
+        listener.changed(getName(), key, now);
+    }
+
+    private void scheduleRefresh(Object key) {
+        if (!refreshing.add(key)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    bypass(() -> refresher.accept(key));
+                    LOGGER.debug("cache.refresh name={}, key={}", getName(), key);
+                } catch (RuntimeException e) {
+                    LOGGER.warn("cache.refresh name={}, key={}, error={}", getName(), key, e.getMessage());
+                } finally {
+                    refreshing.remove(key);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            refreshing.remove(key);
+            LOGGER.debug("cache.refresh name={}, key={}, rejected", getName(), key);
+        }
+    }
+
+    /**
+     * Notified of the changes of the entries of a cache, on the thread changing them.
+     */
+    @FunctionalInterface
+    public interface ChangeListener {
+
+        /**
+         * @param cacheName the name of the cache
+         * @param key the key written or evicted, null when the whole cache was cleared
+         * @param changedAt epoch milliseconds at which the change was made, the write time of a written value
+         */
+        void changed(String cacheName, Object key, long changedAt);
+    }
+}
@@ -0,0 +1,151 @@
+package vn.ttg.roadmap.weatherapiservice.cache;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+
+/**
+ * A CacheManager that wraps the caches of another CacheManager with {@link RefreshAheadCache}
+ * according to a per cache name policy. Caches without a policy are returned unchanged.
+ *
+ * @author ttg
+ */
+public class RefreshAheadCacheManager implements CacheManager {
+
+    private final CacheManager delegate;
+    private final Map<String, Policy> policies;
+    private final Executor executor;
+    private final long maxTrackedValues;
+    private final Map<String, RefreshAheadCache> caches = new ConcurrentHashMap<>();
+    private final List<RefreshAheadCache.ChangeListener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * @param delegate the CacheManager whose caches are wrapped
+     * @param policies the freshness policies by cache name
+     * @param executor the executor running the background refreshes
+     * @param maxTrackedValues the maximum number of values whose write time is kept, per cache
+     */
+    public RefreshAheadCacheManager(CacheManager delegate, Map<String, Policy> policies, Executor executor, long maxTrackedValues) {
+        this.delegate = delegate;
+        this.policies = Map.copyOf(policies);
+        this.executor = executor;
+        this.maxTrackedValues = maxTrackedValues;
+    }
+
+    /**
+     * Registers a listener notified of the entries written, evicted or cleared through the wrapped caches.
+     *
+     * @param listener the listener
+     */
+    public void addChangeListener(RefreshAheadCache.ChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Retrieves a cache by name, wrapped for refresh-ahead when a policy is configured for it.
+     *
+     * @param name the name of the cache
+     * @return the wrapped cache, the delegate cache, or null if no cache with the given name exists
+     */
+    @Override
+    public Cache getCache(String name) {
+        RefreshAheadCache cache = caches.get(name);
+        if (cache != null) {
+            return cache;
+        }
+        Cache target = delegate.getCache(name);
+        Policy policy = policies.get(name);
+        if (target == null || policy == null) {
+            return target;
+        }
+        return caches.computeIfAbsent(name, key -> new RefreshAheadCache(target, policy.ttl(), policy.refreshAhead(),
+                policy.staleIfError(), policy.refresher(), executor, maxTrackedValues, this::changed));
+    }
+
+    /**
+     * Returns the names of all caches managed by the delegate CacheManager.
+     *
+     * @return a collection of cache names
+     */
+    @Override
+    public Collection<String> getCacheNames() {
+        return new ArrayList<>(delegate.getCacheNames());
+    }
+
+    /**
+     * Returns when a value served as fresh from a cache or written to it was written, see
+     * {@link RefreshAheadCache#getWrittenAt(Object)}.
+     *
+     * @param name the name of the cache
+     * @param value the value, as returned by a lookup or given to a write
+     * @return epoch milliseconds at which the value was written, or null if it is not tracked or the cache has no policy
+     */
+    public Long getWrittenAt(String name, Object value) {
+        RefreshAheadCache cache = caches.get(name);
+        return cache != null ? cache.getWrittenAt(value) : null;
+    }
+
+    /**
+     * @param name the name of the cache
+     * @return the logical TTL of the values of the cache, or null if it has no policy
+     */
+    public Duration getTtl(String name) {
+        Policy policy = policies.get(name);
+        return policy != null ? policy.ttl() : null;
+    }
+
+    /**
+     * Looks up a value that may be past its TTL but is still within the stale-if-error window.
+     *
+     * @param name the name of the cache
+     * @param key the key to look up
+     * @return the possibly stale value, or null if there is none
+     */
+    public Cache.ValueWrapper getStale(String name, Object key) {
+        Cache cache = getCache(name);
+        if (cache instanceof RefreshAheadCache refreshAheadCache) {
+            return refreshAheadCache.getStale(key);
+        }
+        return null;
+    }
+
+    /**
+     * Multi-key variant of {@link #getStale(String, Object)}.
+     *
+     * @param name the name of the cache
+     * @param keys the keys to look up
+     * @return the possibly stale values, in the order of the keys, null for the keys without one
+     */
+    public List<Cache.ValueWrapper> getAllStale(String name, List<?> keys) {
+        Cache cache = getCache(name);
+        if (cache instanceof RefreshAheadCache refreshAheadCache) {
+            return refreshAheadCache.getAllStale(keys);
+        }
+        return Arrays.asList(new Cache.ValueWrapper[keys.size()]);
+    }
+
+    private void changed(String cacheName, Object key, long changedAt) {
+        listeners.forEach(listener -> listener.changed(cacheName, key, changedAt));
+    }
+
+    /**
+     * Freshness policy of a cache.
+     *
+     * @param ttl the logical TTL of the values
+     * @param refreshAhead the window before expiry in which hits trigger a background refresh
+     * @param staleIfError the window after expiry in which values are still available as stale
+     * @param refresher reloads the value of a key, null disables refresh-ahead
+     */
+    public record Policy(Duration ttl, Duration refreshAhead, Duration staleIfError, Consumer<Object> refresher) {
+    }
+}
@@ -0,0 +1,119 @@
+package vn.ttg.roadmap.weatherapiservice.cache;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Collapses concurrent loads of the same key into a single execution.
+ *
+ * <p>The first caller of a key runs the loader, every other caller arriving while it is in flight
+ * waits for and shares its result or exception. Nothing is remembered once the load completes,
+ * caching the result is left to the caller.</p>
+ *
+ * <p>Executions are counted in the {@code cache.load.singleflight} meter tagged with
+ * {@code result} (leader, collapsed).</p>
+ *
+ * <p><strong>Thread Safety:</strong> This class is thread-safe and can be used concurrently by multiple threads.</p>
+ *
+ * @author ttg
+ */
+@Component
+public class SingleFlight {
+
+    private final ConcurrentMap<Object, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final Counter leaderCounter;
+    private final Counter collapsedCounter;
+
+    public SingleFlight(MeterRegistry meterRegistry) {
+        this.leaderCounter = Counter.builder("cache.load.singleflight")
+                .description("Loads executed on behalf of concurrent callers of the same key")
+                .tag("result", "leader")
+                .register(meterRegistry);
+        this.collapsedCounter = Counter.builder("cache.load.singleflight")
+                .description("Loads executed on behalf of concurrent callers of the same key")
+                .tag("result", "collapsed")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Runs the loader for the given key unless a load of the same key is already in flight,
+     * in which case the result of that load is awaited and returned instead.
+     *
+     * @param key the key identifying the load
+     * @param loader the loader to run when no load of the key is in flight
+     * @return the loaded value
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(Object key, Supplier<T> loader) {
+        CompletableFuture<Object> call = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(key, call);
+        if (existing != null) {
+            collapsedCounter.increment();
+            return (T) await(existing);
+        }
+
+        leaderCounter.increment();
+        try {
+            T value = loader.get();
+            call.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            call.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, call);
+        }
+    }
+
+    /**
+     * Non-blocking variant of {@link #execute(Object, Supplier)}: starts the load for the given key
+     * unless a load of the same key is already in flight, in which case that load is shared.
+     *
+     * @param key the key identifying the load
+     * @param loader starts the load when no load of the key is in flight
+     * @return a future completing with the loaded value
+     */
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> executeAsync(Object key, Supplier<CompletableFuture<T>> loader) {
+        CompletableFuture<Object> call = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(key, call);
+        if (existing != null) {
+            collapsedCounter.increment();
+            return (CompletableFuture<T>) existing.thenApply(value -> value);
+        }
+
+        leaderCounter.increment();
+        call.whenComplete((value, ex) -> inFlight.remove(key, call));
+        try {
+            loader.get().whenComplete((value, ex) -> {
+                if (ex != null) {
+                    call.completeExceptionally(ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex);
+                } else {
+                    call.complete(value);
+                }
+            });
+        } catch (RuntimeException | Error e) {
+            call.completeExceptionally(e);
+        }
+        return (CompletableFuture<T>) call.thenApply(value -> value);
+    }
+
+    private static Object await(CompletableFuture<Object> call) {
+        try {
+            return call.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package vn.ttg.roadmap.weatherapiservice.cache;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Envelope stored in the cache instead of the bare value, recording when the value was written
+ * so that freshness can be decided independently of the physical TTL of the cache entry.
+ *
+ * @author ttg
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class TimestampedValue {
+
+    /**
+     * The cached value.
+     */
+    private Object value;
+
+    /**
+     * Epoch milliseconds at which the value was written to the cache.
+     */
+    private long writtenAt;
+
+    public long ageMillis(long now) {
+        return now - writtenAt;
+    }
+}
@@ -0,0 +1,230 @@
+package vn.ttg.roadmap.weatherapiservice.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.SimpleValueWrapper;
+
+/**
+ * A Cache implementation that serves reads from an in-process near cache (L1) and only
+ * falls back to the delegate cache (L2, usually Redis) on L1 misses.
+ *
+ * <p>Writes and evictions go to both tiers. Hit and miss counts are kept per tier so that
+ * the effectiveness of the near cache can be monitored.</p>
+ *
+ * <p><strong>Thread Safety:</strong> This class is thread-safe and can be used concurrently by multiple threads.</p>
+ *
+ * @author ttg
+ */
+public class TwoTierCache implements Cache, MultiGetCache {
+
+    private final Cache delegate;
+    private final com.github.benmanes.caffeine.cache.Cache<NearCacheKey, Object> nearCache;
+
+    private final LongAdder nearHits = new LongAdder();
+    private final LongAdder nearMisses = new LongAdder();
+    private final LongAdder remoteHits = new LongAdder();
+    private final LongAdder remoteMisses = new LongAdder();
+
+    public TwoTierCache(Cache delegate, com.github.benmanes.caffeine.cache.Cache<NearCacheKey, Object> nearCache) {
+        this.delegate = delegate;
+        this.nearCache = nearCache;
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return delegate.getNativeCache();
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        NearCacheKey nearKey = nearKey(key);
+        Object value = nearCache.getIfPresent(nearKey);
+        if (value != null) {
+            nearHits.increment();
+            return new SimpleValueWrapper(value);
+        }
+        nearMisses.increment();
+
+        ValueWrapper wrapper = delegate.get(key);
+        if (wrapper == null || wrapper.get() == null) {
+            remoteMisses.increment();
+            return wrapper;
+        }
+        remoteHits.increment();
+        nearCache.put(nearKey, wrapper.get());
+        return wrapper;
+    }
+
+    @Override
+    public List<ValueWrapper> getAll(List<?> keys) {
+        List<ValueWrapper> values = new ArrayList<>(keys.size());
+        List<Integer> missIndexes = new ArrayList<>();
+        List<Object> missKeys = new ArrayList<>();
+        for (int i = 0; i < keys.size(); i++) {
+            Object value = nearCache.getIfPresent(nearKey(keys.get(i)));
+            if (value != null) {
+                nearHits.increment();
+                values.add(new SimpleValueWrapper(value));
+            } else {
+                nearMisses.increment();
+                values.add(null);
+                missIndexes.add(i);
+                missKeys.add(keys.get(i));
+            }
+        }
+        if (missKeys.isEmpty()) {
+            return values;
+        }
+
+        List<ValueWrapper> remoteValues = MultiGetCache.getAll(delegate, missKeys);
+        for (int i = 0; i < missKeys.size(); i++) {
+            ValueWrapper wrapper = remoteValues.get(i);
+            if (wrapper == null || wrapper.get() == null) {
+                remoteMisses.increment();
+                continue;
+            }
+            remoteHits.increment();
+            nearCache.put(nearKey(missKeys.get(i)), wrapper.get());
+            values.set(missIndexes.get(i), wrapper);
+        }
+        return values;
+    }
+
+    @Override
+    public CompletableFuture<?> retrieve(Object key) {
+        NearCacheKey nearKey = nearKey(key);
+        Object value = nearCache.getIfPresent(nearKey);
+        if (value != null) {
+            nearHits.increment();
+            return CompletableFuture.completedFuture(new SimpleValueWrapper(value));
+        }
+        nearMisses.increment();
+
+        CompletableFuture<?> result = delegate.retrieve(key);
+        if (result == null) {
+            remoteMisses.increment();
+            return null;
+        }
+        return result.thenApply(stored -> {
+            Object remoteValue = stored instanceof ValueWrapper wrapper ? wrapper.get() : stored;
+            if (remoteValue == null) {
+                remoteMisses.increment();
+            } else {
+                remoteHits.increment();
+                nearCache.put(nearKey, remoteValue);
+            }
+            return stored;
+        });
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Class<T> type) {
+        ValueWrapper wrapper = get(key);
+        Object value = wrapper != null ? wrapper.get() : null;
+        if (value != null && type != null && !type.isInstance(value)) {
+            throw new IllegalStateException("Cached value is not of required type [" + type.getName() + "]: " + value);
+        }
+        return (T) value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        NearCacheKey nearKey = nearKey(key);
+        Object value = nearCache.getIfPresent(nearKey);
+        if (value != null) {
+            nearHits.increment();
+            return (T) value;
+        }
+        nearMisses.increment();
+
+        T loaded = delegate.get(key, valueLoader);
+        if (loaded != null) {
+            nearCache.put(nearKey, loaded);
+        }
+        return loaded;
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        delegate.put(key, value);
+        if (value != null) {
+            nearCache.put(nearKey(key), value);
+        } else {
+            nearCache.invalidate(nearKey(key));
+        }
+    }
+
+    @Override
+    public void putAll(Map<?, ?> entries) {
+        MultiGetCache.putAll(delegate, entries);
+        entries.forEach((key, value) -> {
+            if (value != null) {
+                nearCache.put(nearKey(key), value);
+            } else {
+                nearCache.invalidate(nearKey(key));
+            }
+        });
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        ValueWrapper existing = delegate.putIfAbsent(key, value);
+        Object current = existing != null ? existing.get() : value;
+        if (current != null) {
+            nearCache.put(nearKey(key), current);
+        }
+        return existing;
+    }
+
+    @Override
+    public void evict(Object key) {
+        delegate.evict(key);
+        nearCache.invalidate(nearKey(key));
+    }
+
+    @Override
+    public void clear() {
+        delegate.clear();
+        nearCache.asMap().keySet().removeIf(nearKey -> nearKey.cacheName().equals(getName()));
+    }
+
+    public long getNearHitCount() {
+        return nearHits.sum();
+    }
+
+    public long getNearMissCount() {
+        return nearMisses.sum();
+    }
+
+    public long getRemoteHitCount() {
+        return remoteHits.sum();
+    }
+
+    public long getRemoteMissCount() {
+        return remoteMisses.sum();
+    }
+
+    private NearCacheKey nearKey(Object key) {
+        return new NearCacheKey(getName(), key);
+    }
+
+    /**
+     * Key of an entry in the shared near cache, scoped by the owning cache name so that
+     * several caches can share one memory bound.
+     */
+    public record NearCacheKey(String cacheName, Object key) {
+    }
+}
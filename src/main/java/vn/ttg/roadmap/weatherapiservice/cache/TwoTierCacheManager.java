@@ -0,0 +1,163 @@
+package vn.ttg.roadmap.weatherapiservice.cache;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToDoubleFunction;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.util.unit.DataSize;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import vn.ttg.roadmap.weatherapiservice.dto.DayWeather;
+import vn.ttg.roadmap.weatherapiservice.dto.WeatherAlert;
+import vn.ttg.roadmap.weatherapiservice.dto.WeatherResponse;
+
+/**
+ * A CacheManager that composes a bounded in-process near cache in front of another CacheManager.
+ *
+ * <p>All near caches share a single Caffeine instance bounded by the estimated heap size of
+ * the cached values, while each cache name keeps its own near TTL. Caches without a near TTL
+ * are returned from the delegate unchanged.</p>
+ *
+ * <p>Per tier hit and miss counts are published as the {@code cache.tier.gets} meter tagged
+ * with {@code cache}, {@code tier} (near, remote) and {@code result} (hit, miss).</p>
+ *
+ * @author ttg
+ */
+public class TwoTierCacheManager implements CacheManager {
+
+    private static final int DEFAULT_ENTRY_WEIGHT = 1024;
+
+    private final CacheManager delegate;
+    private final Map<String, Duration> nearTtls;
+    private final MeterRegistry meterRegistry;
+    private final com.github.benmanes.caffeine.cache.Cache<TwoTierCache.NearCacheKey, Object> nearCache;
+    private final Map<String, TwoTierCache> caches = new ConcurrentHashMap<>();
+
+    /**
+     * @param delegate the remote CacheManager consulted on near cache misses
+     * @param nearTtls near cache TTL per cache name, callers must keep them no longer than the remote TTL
+     * @param maxSize upper bound of the estimated heap size of all near cache entries
+     * @param meterRegistry registry to publish per tier counters to
+     */
+    public TwoTierCacheManager(CacheManager delegate, Map<String, Duration> nearTtls, DataSize maxSize, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.nearTtls = Map.copyOf(nearTtls);
+        this.meterRegistry = meterRegistry;
+        this.nearCache = Caffeine.newBuilder()
+                .maximumWeight(maxSize.toBytes())
+                .weigher((TwoTierCache.NearCacheKey key, Object value) -> estimateSize(value))
+                .expireAfter(new PerCacheExpiry(this.nearTtls))
+                .build();
+    }
+
+    /**
+     * Retrieves a cache by name, fronted by the near cache when a near TTL is configured for it.
+     *
+     * @param name the name of the cache
+     * @return the two tier cache, the delegate cache, or null if no cache with the given name exists
+     */
+    @Override
+    public Cache getCache(String name) {
+        TwoTierCache cache = caches.get(name);
+        if (cache != null) {
+            return cache;
+        }
+        Cache remote = delegate.getCache(name);
+        if (remote == null || !nearTtls.containsKey(name)) {
+            return remote;
+        }
+        return caches.computeIfAbsent(name, key -> register(new TwoTierCache(remote, nearCache)));
+    }
+
+    /**
+     * Returns the names of all caches managed by the delegate CacheManager.
+     *
+     * @return a collection of cache names
+     */
+    @Override
+    public Collection<String> getCacheNames() {
+        return new ArrayList<>(delegate.getCacheNames());
+    }
+
+    private TwoTierCache register(TwoTierCache cache) {
+        registerCounter(cache, "near", "hit", TwoTierCache::getNearHitCount);
+        registerCounter(cache, "near", "miss", TwoTierCache::getNearMissCount);
+        registerCounter(cache, "remote", "hit", TwoTierCache::getRemoteHitCount);
+        registerCounter(cache, "remote", "miss", TwoTierCache::getRemoteMissCount);
+        return cache;
+    }
+
+    private void registerCounter(TwoTierCache cache, String tier, String result, ToDoubleFunction<TwoTierCache> count) {
+        FunctionCounter.builder("cache.tier.gets", cache, count)
+                .description("Number of cache lookups answered by each cache tier")
+                .tag("cache", cache.getName())
+                .tag("tier", tier)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Rough estimate of the retained heap size of a cached value, in bytes.
+     */
+    static int estimateSize(Object value) {
+        if (value instanceof TimestampedValue timestamped) {
+            return 24 + estimateSize(timestamped.getValue());
+        }
+        if (value instanceof DayWeather day) {
+            return sizeOf(day);
+        }
+        if (!(value instanceof WeatherResponse response)) {
+            return DEFAULT_ENTRY_WEIGHT;
+        }
+        long size = 64 + sizeOf(response.getResolvedAddress()) + sizeOf(response.getTimezone()) + sizeOf(response.getDescription());
+        if (response.getDays() != null) {
+            for (DayWeather day : response.getDays()) {
+                size += sizeOf(day);
+            }
+        }
+        if (response.getAlerts() != null) {
+            for (WeatherAlert alert : response.getAlerts()) {
+                size += 32 + sizeOf(alert.getEvent()) + sizeOf(alert.getDescription());
+            }
+        }
+        return (int) Math.min(size, Integer.MAX_VALUE);
+    }
+
+    private static int sizeOf(DayWeather day) {
+        return 56 + sizeOf(day.getDatetime()) + sizeOf(day.getConditions()) + sizeOf(day.getDescription());
+    }
+
+    private static int sizeOf(String value) {
+        return value == null ? 0 : 40 + value.length();
+    }
+
+    /**
+     * Expires near cache entries after the near TTL of the cache they belong to.
+     */
+    private record PerCacheExpiry(Map<String, Duration> ttls) implements Expiry<TwoTierCache.NearCacheKey, Object> {
+
+        @Override
+        public long expireAfterCreate(TwoTierCache.NearCacheKey key, Object value, long currentTime) {
+            return ttls.getOrDefault(key.cacheName(), Duration.ZERO).toNanos();
+        }
+
+        @Override
+        public long expireAfterUpdate(TwoTierCache.NearCacheKey key, Object value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(TwoTierCache.NearCacheKey key, Object value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package vn.ttg.roadmap.weatherapiservice.cache;
+
+import java.time.LocalDate;
+
+/**
+ * Utility class building the keys of the weather caches.
+ * Keys are based on the request parameters:
+ * - For current weather: "location:today"
+ * - For forecast/historical ranges: "location:startDate:endDate"
+ * - For the days of forecast/historical caches: "location:date" and "location:meta"
+ * Locations are used as given and are expected canonical, as returned by {@link LocationAliasIndex},
+ * whose normalization is the only one applied to locations so that every path builds the same keys.
+ *
+ * @author ttg
+ */
+public class WeatherCacheKeys {
+
+    private static final String CURRENT_SUFFIX = ":today";
+    private static final String META_SUFFIX = ":meta";
+
+    private WeatherCacheKeys() {}
+
+    public static String current(String location) {
+        return location + CURRENT_SUFFIX;
+    }
+
+    /**
+     * Extracts the location of a current weather key.
+     */
+    public static String currentLocation(Object key) {
+        String value = String.valueOf(key);
+        return value.endsWith(CURRENT_SUFFIX) ? value.substring(0, value.length() - CURRENT_SUFFIX.length()) : value;
+    }
+
+    public static String range(String location, LocalDate startDate, LocalDate endDate) {
+        return location + ":" + startDate + ":" + endDate;
+    }
+
+    public static String day(String location, LocalDate date) {
+        return location + ":" + date;
+    }
+
+    /**
+     * Key of the location level data (resolved address, timezone, description, alerts) of a day level cache.
+     */
+    public static String meta(String location) {
+        return location + META_SUFFIX;
+    }
+}
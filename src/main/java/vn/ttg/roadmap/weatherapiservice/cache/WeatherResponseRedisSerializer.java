@@ -0,0 +1,390 @@
+package vn.ttg.roadmap.weatherapiservice.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4SafeDecompressor;
+import vn.ttg.roadmap.weatherapiservice.dto.DayWeather;
+import vn.ttg.roadmap.weatherapiservice.dto.WeatherAlert;
+import vn.ttg.roadmap.weatherapiservice.dto.WeatherResponse;
+
+/**
+ * A RedisSerializer writing {@link WeatherResponse} and {@link DayWeather} values, bare or wrapped in a
+ * {@link TimestampedValue}, in a compact binary format instead of JSON with embedded class names.
+ *
+ * <p>Layout: a magic byte, a format version, a flags byte and the payload. Payloads larger than the
+ * compression threshold are LZ4 compressed. Strings are written as a varint length followed by UTF-8
+ * bytes, lists as a varint count, both shifted by one so that zero stands for null.</p>
+ *
+ * <p>Other values, and values written by the JSON serializer before this codec was introduced, are handled
+ * by the fallback serializer, so both formats can be read during a rolling upgrade. With binary writes
+ * disabled every value is written by the fallback serializer while binary values are still read, so that
+ * the codec can be rolled back without flushing the cache. Binary values of an unknown version read as
+ * cache misses and are overwritten on the next load. Compressed payloads declaring a decompressed size
+ * over {@value #MAX_PAYLOAD_SIZE} bytes, or over the maximum ratio of LZ4, are rejected before allocating.</p>
+ *
+ * <p><strong>Thread Safety:</strong> This class is thread-safe and can be used concurrently by multiple threads.</p>
+ *
+ * @author ttg
+ */
+public class WeatherResponseRedisSerializer implements RedisSerializer<Object> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(WeatherResponseRedisSerializer.class);
+
+    // never the first byte of a JSON document
+    static final byte MAGIC = (byte) 0xB1;
+    static final byte VERSION = 1;
+
+    private static final int FLAG_LZ4 = 1;
+    private static final int HEADER_SIZE = 3;
+    static final int MAX_PAYLOAD_SIZE = 16 * 1024 * 1024;
+    // LZ4 cannot expand a byte into more than 255 bytes
+    private static final int MAX_LZ4_RATIO = 255;
+
+    private static final byte TYPE_RESPONSE = 1;
+    private static final byte TYPE_TIMESTAMPED_RESPONSE = 2;
+    private static final byte TYPE_DAY = 3;
+    private static final byte TYPE_TIMESTAMPED_DAY = 4;
+
+    /**
+     * Compression applied to payloads larger than the compression threshold.
+     */
+    public enum Compression {
+        NONE, LZ4
+    }
+
+    private final RedisSerializer<Object> fallback;
+    private final boolean binaryWrites;
+    private final Compression compression;
+    private final int compressionThreshold;
+    private final LZ4Compressor compressor;
+    private final LZ4SafeDecompressor decompressor;
+
+    /**
+     * @param fallback serializer for values that are not weather responses and for legacy entries
+     * @param compression compression applied to payloads larger than the threshold
+     * @param compressionThreshold payload size in bytes above which payloads are compressed
+     */
+    public WeatherResponseRedisSerializer(RedisSerializer<Object> fallback, Compression compression, int compressionThreshold) {
+        this(fallback, true, compression, compressionThreshold);
+    }
+
+    /**
+     * @param fallback serializer for values that are not weather responses and for legacy entries
+     * @param binaryWrites whether weather responses are written in the binary format, otherwise every value is
+     *                     written by the fallback serializer and binary values are only read
+     * @param compression compression applied to payloads larger than the threshold
+     * @param compressionThreshold payload size in bytes above which payloads are compressed
+     */
+    public WeatherResponseRedisSerializer(RedisSerializer<Object> fallback, boolean binaryWrites, Compression compression,
+                                          int compressionThreshold) {
+        this.fallback = fallback;
+        this.binaryWrites = binaryWrites;
+        this.compression = compression;
+        this.compressionThreshold = compressionThreshold;
+        LZ4Factory factory = LZ4Factory.safeInstance();
+        this.compressor = factory.fastCompressor();
+        this.decompressor = factory.safeDecompressor();
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        if (!binaryWrites) {
+            return fallback.serialize(value);
+        }
+        Output out = new Output(512);
+        if (value instanceof WeatherResponse response) {
+            out.writeByte(TYPE_RESPONSE);
+            writeResponse(out, response);
+        } else if (value instanceof TimestampedValue timestamped && timestamped.getValue() instanceof WeatherResponse response) {
+            out.writeByte(TYPE_TIMESTAMPED_RESPONSE);
+            out.writeLong(timestamped.getWrittenAt());
+            writeResponse(out, response);
+        } else if (value instanceof DayWeather day) {
+            out.writeByte(TYPE_DAY);
+            writeDay(out, day);
+        } else if (value instanceof TimestampedValue timestamped && timestamped.getValue() instanceof DayWeather day) {
+            out.writeByte(TYPE_TIMESTAMPED_DAY);
+            out.writeLong(timestamped.getWrittenAt());
+            writeDay(out, day);
+        } else {
+            return fallback.serialize(value);
+        }
+
+        int payloadSize = out.size() - HEADER_SIZE;
+        if (compression == Compression.LZ4 && payloadSize > compressionThreshold) {
+            byte[] compressed = new byte[HEADER_SIZE + 5 + compressor.maxCompressedLength(payloadSize)];
+            Output header = new Output(compressed);
+            header.writeHeader(FLAG_LZ4);
+            header.writeVarInt(payloadSize);
+            int length = compressor.compress(out.buffer(), HEADER_SIZE, payloadSize, compressed, header.size(), compressed.length - header.size());
+            return Arrays.copyOf(compressed, header.size() + length);
+        }
+        out.setHeader(0);
+        return out.toByteArray();
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        if (bytes[0] != MAGIC) {
+            return fallback.deserialize(bytes);
+        }
+        if (bytes.length < HEADER_SIZE || bytes[1] != VERSION) {
+            LOGGER.warn("Ignoring cache value of unsupported binary format version {}", bytes.length > 1 ? bytes[1] : -1);
+            return null;
+        }
+
+        try {
+            Input in = new Input(bytes, HEADER_SIZE, bytes.length);
+            if ((bytes[2] & FLAG_LZ4) != 0) {
+                int payloadSize = in.readVarInt();
+                int compressedSize = bytes.length - in.position();
+                if (payloadSize < 0 || payloadSize > MAX_PAYLOAD_SIZE || payloadSize > (long) compressedSize * MAX_LZ4_RATIO) {
+                    throw new SerializationException("Invalid decompressed size " + payloadSize + " of cache value");
+                }
+                byte[] payload = new byte[payloadSize];
+                if (decompressor.decompress(bytes, in.position(), compressedSize, payload, 0) != payloadSize) {
+                    throw new SerializationException("Truncated compressed cache value");
+                }
+                in = new Input(payload, 0, payloadSize);
+            }
+            byte type = in.readByte();
+            if (type == TYPE_RESPONSE) {
+                return readResponse(in);
+            } else if (type == TYPE_TIMESTAMPED_RESPONSE) {
+                long writtenAt = in.readLong();
+                return new TimestampedValue(readResponse(in), writtenAt);
+            } else if (type == TYPE_DAY) {
+                return readDay(in);
+            } else if (type == TYPE_TIMESTAMPED_DAY) {
+                long writtenAt = in.readLong();
+                return new TimestampedValue(readDay(in), writtenAt);
+            }
+            throw new SerializationException("Unknown cache value type " + type);
+        } catch (RuntimeException e) {
+            throw e instanceof SerializationException se ? se : new SerializationException("Cannot deserialize cache value", e);
+        }
+    }
+
+    private static void writeResponse(Output out, WeatherResponse response) {
+        out.writeString(response.getResolvedAddress());
+        out.writeString(response.getTimezone());
+        out.writeString(response.getDescription());
+
+        List<DayWeather> days = response.getDays();
+        out.writeVarInt(days == null ? 0 : days.size() + 1);
+        if (days != null) {
+            for (DayWeather day : days) {
+                writeDay(out, day);
+            }
+        }
+
+        List<WeatherAlert> alerts = response.getAlerts();
+        out.writeVarInt(alerts == null ? 0 : alerts.size() + 1);
+        if (alerts != null) {
+            for (WeatherAlert alert : alerts) {
+                out.writeString(alert.getEvent());
+                out.writeString(alert.getDescription());
+            }
+        }
+    }
+
+    private static WeatherResponse readResponse(Input in) {
+        WeatherResponse response = new WeatherResponse();
+        response.setResolvedAddress(in.readString());
+        response.setTimezone(in.readString());
+        response.setDescription(in.readString());
+
+        int dayCount = in.readVarInt();
+        if (dayCount > 0) {
+            List<DayWeather> days = new ArrayList<>(Math.min(dayCount - 1, 1024));
+            for (int i = 1; i < dayCount; i++) {
+                days.add(readDay(in));
+            }
+            response.setDays(days);
+        }
+
+        int alertCount = in.readVarInt();
+        if (alertCount > 0) {
+            List<WeatherAlert> alerts = new ArrayList<>(Math.min(alertCount - 1, 1024));
+            for (int i = 1; i < alertCount; i++) {
+                alerts.add(new WeatherAlert(in.readString(), in.readString()));
+            }
+            response.setAlerts(alerts);
+        }
+        return response;
+    }
+
+    private static void writeDay(Output out, DayWeather day) {
+        out.writeString(day.getDatetime());
+        out.writeDouble(day.getTempmax());
+        out.writeDouble(day.getTempmin());
+        out.writeString(day.getConditions());
+        out.writeString(day.getDescription());
+    }
+
+    private static DayWeather readDay(Input in) {
+        return new DayWeather(in.readString(), in.readDouble(), in.readDouble(), in.readString(), in.readString());
+    }
+
+    /**
+     * Growable output buffer, the header bytes are reserved up front.
+     */
+    private static final class Output {
+
+        private byte[] buffer;
+        private int position;
+
+        Output(int capacity) {
+            this(new byte[capacity]);
+            position = HEADER_SIZE;
+        }
+
+        Output(byte[] buffer) {
+            this.buffer = buffer;
+        }
+
+        void writeHeader(int flags) {
+            writeByte(MAGIC);
+            writeByte(VERSION);
+            writeByte((byte) flags);
+        }
+
+        void setHeader(int flags) {
+            buffer[0] = MAGIC;
+            buffer[1] = VERSION;
+            buffer[2] = (byte) flags;
+        }
+
+        void writeByte(byte value) {
+            ensureCapacity(1);
+            buffer[position++] = value;
+        }
+
+        void writeVarInt(int value) {
+            ensureCapacity(5);
+            while ((value & ~0x7F) != 0) {
+                buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[position++] = (byte) value;
+        }
+
+        void writeLong(long value) {
+            ensureCapacity(8);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                buffer[position++] = (byte) (value >>> shift);
+            }
+        }
+
+        void writeDouble(double value) {
+            writeLong(Double.doubleToRawLongBits(value));
+        }
+
+        void writeString(String value) {
+            if (value == null) {
+                writeVarInt(0);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(bytes.length + 1);
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, buffer, position, bytes.length);
+            position += bytes.length;
+        }
+
+        int size() {
+            return position;
+        }
+
+        byte[] buffer() {
+            return buffer;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, position);
+        }
+
+        private void ensureCapacity(int extra) {
+            if (position + extra > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + extra));
+            }
+        }
+    }
+
+    private static final class Input {
+
+        private final byte[] buffer;
+        private final int limit;
+        private int position;
+
+        Input(byte[] buffer, int offset, int limit) {
+            this.buffer = buffer;
+            this.position = offset;
+            this.limit = limit;
+        }
+
+        int position() {
+            return position;
+        }
+
+        byte readByte() {
+            require(1);
+            return buffer[position++];
+        }
+
+        int readVarInt() {
+            int value = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                byte b = readByte();
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new SerializationException("Malformed varint in cache value");
+        }
+
+        long readLong() {
+            require(8);
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                value = (value << 8) | (buffer[position++] & 0xFF);
+            }
+            return value;
+        }
+
+        double readDouble() {
+            return Double.longBitsToDouble(readLong());
+        }
+
+        String readString() {
+            int length = readVarInt();
+            if (length == 0) {
+                return null;
+            }
+            require(length - 1);
+            String value = new String(buffer, position, length - 1, StandardCharsets.UTF_8);
+            position += length - 1;
+            return value;
+        }
+
+        private void require(int count) {
+            if (count < 0 || position + count > limit) {
+                throw new SerializationException("Truncated cache value");
+            }
+        }
+    }
+}
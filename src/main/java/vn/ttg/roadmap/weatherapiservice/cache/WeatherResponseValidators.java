@@ -0,0 +1,208 @@
+package vn.ttg.roadmap.weatherapiservice.cache;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * HTTP validators of the responses served from the weather caches, so that conditional requests are
+ * answered without reading the cache.
+ *
+ * <p>A validator records the entity tag of the body served for a cache key and variant, when the cache entry was
+ * written and when it expires, taken from the write time the {@link RefreshAheadCache} tracks for the value
+ * served and the TTL of its cache. While the entry is fresh, a request whose If-None-Match header holds the
+ * entity tag is answered from the validator alone: no cache lookup, no deserialization, no encoding. The
+ * validators of a key are dropped when the key is written again, such as by a refresh-ahead, evicted or
+ * cleared through the caches of this process, and validators of values written before the latest write of
+ * their key are not recorded. Validators are kept in process, for at most
+ * {@code weather.response.validators.max-size} keys, and not modified answers are counted in the
+ * {@code weather.response.not-modified} meter.</p>
+ *
+ * <p><strong>Thread Safety:</strong> This class is thread-safe and can be used concurrently by multiple threads.</p>
+ *
+ * @author ttg
+ */
+@Component
+public class WeatherResponseValidators {
+
+    private final RefreshAheadCacheManager refreshAheadCacheManager;
+    private final Cache<String, KeyValidators> validators;
+    private final Counter notModifiedCounter;
+
+    public WeatherResponseValidators(RefreshAheadCacheManager refreshAheadCacheManager, MeterRegistry meterRegistry,
+                                     @Value("${weather.response.validators.max-size}") long maxSize) {
+        this.refreshAheadCacheManager = refreshAheadCacheManager;
+        this.validators = Caffeine.newBuilder().maximumSize(maxSize).build();
+        this.notModifiedCounter = Counter.builder("weather.response.not-modified")
+                .description("Conditional weather requests answered as not modified from the response validators")
+                .register(meterRegistry);
+        refreshAheadCacheManager.addChangeListener(this::changed);
+    }
+
+    /**
+     * Returns the validator of a fresh cache entry when the If-None-Match header of a request holds its entity tag.
+     *
+     * @param cacheName the cache the response is served from
+     * @param key the cache key of the response
+     * @param variant the representation of the cached value served, such as the fields it was restricted to
+     * @param ifNoneMatch the If-None-Match header of the request, may be null
+     * @return the validator to answer not modified with, or null when the response has to be served
+     */
+    public Validator match(String cacheName, Object key, String variant, String ifNoneMatch) {
+        if (ifNoneMatch == null) {
+            return null;
+        }
+        KeyValidators keyValidators = validators.getIfPresent(indexKey(cacheName, key));
+        Validator validator = keyValidators != null ? keyValidators.variants().get(variant) : null;
+        if (validator == null || !validator.isFresh(System.currentTimeMillis()) || !matches(ifNoneMatch, validator.etag())) {
+            return null;
+        }
+        notModifiedCounter.increment();
+        return validator;
+    }
+
+    /**
+     * Returns the validator of a response served from a cache, recording it when it is new.
+     *
+     * @param cacheName the cache the response is served from
+     * @param key the cache key of the response
+     * @param variant the representation of the cached value served, such as the fields it was restricted to
+     * @param value the cached value the response was served from, as returned by the cache
+     * @param etag the entity tag of the body served
+     * @return the validator, or null when the value is not that of a fresh cache entry, as when a stale value was served
+     */
+    public Validator validate(String cacheName, Object key, String variant, Object value, String etag) {
+        Long writtenAt = refreshAheadCacheManager.getWrittenAt(cacheName, value);
+        Duration ttl = refreshAheadCacheManager.getTtl(cacheName);
+        if (writtenAt == null || ttl == null || writtenAt + ttl.toMillis() <= System.currentTimeMillis()) {
+            return null;
+        }
+        Validator validator = new Validator(etag, writtenAt, writtenAt + ttl.toMillis());
+        validators.asMap().compute(indexKey(cacheName, key), (indexKey, keyValidators) -> {
+            if (keyValidators == null || keyValidators.writtenAt() < writtenAt) {
+                keyValidators = new KeyValidators(writtenAt, new ConcurrentHashMap<>());
+            }
+            // a value written before the latest write of the key is served once, without recording it
+            if (keyValidators.writtenAt() == writtenAt) {
+                keyValidators.variants().put(variant, validator);
+            }
+            return keyValidators;
+        });
+        return validator;
+    }
+
+    /**
+     * Returns the validator of a response assembled from several entries of a cache, such as the days of a
+     * range: it was last modified when its latest entry was written and expires with its earliest entry. It is
+     * not recorded, the entries being written on their own keys rather than on the one of the response.
+     *
+     * @param cacheName the cache the entries of the response are read from
+     * @param writtenAt epoch milliseconds at which each entry was written, may be null when unknown
+     * @param etag the entity tag of the body served
+     * @return the validator, or null when the entries are not all those of fresh cache entries
+     */
+    public Validator validate(String cacheName, long[] writtenAt, String etag) {
+        Duration ttl = refreshAheadCacheManager.getTtl(cacheName);
+        if (writtenAt == null || writtenAt.length == 0 || ttl == null) {
+            return null;
+        }
+        long earliest = Long.MAX_VALUE;
+        long latest = Long.MIN_VALUE;
+        for (long entryWrittenAt : writtenAt) {
+            earliest = Math.min(earliest, entryWrittenAt);
+            latest = Math.max(latest, entryWrittenAt);
+        }
+        Validator validator = new Validator(etag, latest, earliest + ttl.toMillis());
+        return validator.isFresh(System.currentTimeMillis()) ? validator : null;
+    }
+
+    /**
+     * Whether a request is to be answered not modified by the validator of the response it asks for,
+     * counting it when so.
+     *
+     * @param validator the validator of the response, may be null when it is not that of fresh cache entries
+     * @param ifNoneMatch the If-None-Match header of the request, may be null
+     * @return true when the If-None-Match header holds the entity tag of the fresh validator
+     */
+    public boolean matches(Validator validator, String ifNoneMatch) {
+        if (validator == null || ifNoneMatch == null || !matches(ifNoneMatch, validator.etag())) {
+            return false;
+        }
+        notModifiedCounter.increment();
+        return true;
+    }
+
+    /**
+     * Drops the validators of a key written, evicted or cleared, remembering when so that validators of
+     * the values written before are not recorded afterwards.
+     */
+    private void changed(String cacheName, Object key, long changedAt) {
+        if (key == null) {
+            String prefix = cacheName + "::";
+            validators.asMap().keySet().removeIf(indexKey -> indexKey.startsWith(prefix));
+            return;
+        }
+        validators.asMap().compute(indexKey(cacheName, key), (indexKey, keyValidators) ->
+                keyValidators != null && keyValidators.writtenAt() >= changedAt
+                        ? keyValidators : new KeyValidators(changedAt, new ConcurrentHashMap<>()));
+    }
+
+    private static String indexKey(String cacheName, Object key) {
+        return cacheName + "::" + key;
+    }
+
+    /**
+     * Whether an If-None-Match header, a list of entity tags or "*", holds the given entity tag, comparing
+     * them weakly as If-None-Match requires.
+     */
+    private static boolean matches(String ifNoneMatch, String etag) {
+        String opaqueTag = opaqueTag(etag);
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*") || opaqueTag(tag).equals(opaqueTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String opaqueTag(String etag) {
+        return etag.startsWith("W/") ? etag.substring(2) : etag;
+    }
+
+    /**
+     * Validators of the variants of a cache key, recorded for the value written at writtenAt.
+     */
+    private record KeyValidators(long writtenAt, Map<String, Validator> variants) {
+    }
+
+    /**
+     * Validator of a cached response.
+     *
+     * @param etag the entity tag of the body
+     * @param lastModified epoch milliseconds at which the cache entry was written
+     * @param expiresAt epoch milliseconds at which the cache entry expires
+     */
+    public record Validator(String etag, long lastModified, long expiresAt) {
+
+        public boolean isFresh(long now) {
+            return now < expiresAt;
+        }
+
+        /**
+         * @return the whole seconds left before the cache entry expires
+         */
+        public long maxAgeSeconds(long now) {
+            return Math.max(0, (expiresAt - now) / 1000);
+        }
+    }
+}
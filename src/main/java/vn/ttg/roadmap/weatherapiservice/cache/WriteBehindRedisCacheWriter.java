@@ -0,0 +1,170 @@
+package vn.ttg.roadmap.weatherapiservice.cache;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.cache.CacheStatistics;
+import org.springframework.data.redis.cache.CacheStatisticsCollector;
+import org.springframework.data.redis.cache.RedisCacheWriter;
+
+/**
+ * A RedisCacheWriter sending the SET of a {@code put} without waiting for its reply, so that writing a
+ * cache entry is off the request path, and metering every command in {@link RedisRoundTrips}.
+ *
+ * <p>Writes go through {@link RedisCacheWriter#store}, which with Lettuce sends SET with the TTL of the
+ * entry on the connection shared by all commands. The many writes of a request, such as the days of a
+ * forecast, are thus written back to back on that connection and their replies read as they come,
+ * pipelined rather than one round-trip each. At most {@code maxPendingWrites} writes wait for their
+ * reply, further writes are sent synchronously until some of them are answered. Failed writes are
+ * logged and otherwise ignored, as a failed synchronous write would be by the caches.</p>
+ *
+ * <p><strong>Thread Safety:</strong> This class is thread-safe and can be used concurrently by multiple threads.</p>
+ *
+ * @author ttg
+ */
+public class WriteBehindRedisCacheWriter implements RedisCacheWriter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(WriteBehindRedisCacheWriter.class);
+
+    private final RedisCacheWriter delegate;
+    private final RedisRoundTrips roundTrips;
+    private final int maxPendingWrites;
+    private final Semaphore pendingWrites;
+
+    /**
+     * @param delegate the writer sending the commands, supporting asynchronous stores
+     * @param roundTrips the meter of the commands sent
+     * @param maxPendingWrites the bound of the writes waiting for their reply, zero writes synchronously
+     */
+    public WriteBehindRedisCacheWriter(RedisCacheWriter delegate, RedisRoundTrips roundTrips, int maxPendingWrites) {
+        this.delegate = delegate;
+        this.roundTrips = roundTrips;
+        this.maxPendingWrites = maxPendingWrites;
+        this.pendingWrites = new Semaphore(delegate.supportsAsyncRetrieve() ? maxPendingWrites : 0);
+    }
+
+    @Override
+    public byte[] get(String name, byte[] key) {
+        return roundTrips.sync("get", () -> delegate.get(name, key));
+    }
+
+    @Override
+    public byte[] get(String name, byte[] key, Duration ttl) {
+        return roundTrips.sync("get", () -> delegate.get(name, key, ttl));
+    }
+
+    @Override
+    public byte[] get(String name, byte[] key, Supplier<byte[]> valueLoader, Duration ttl, boolean timeToIdleEnabled) {
+        return roundTrips.sync("get", () -> delegate.get(name, key, valueLoader, ttl, timeToIdleEnabled));
+    }
+
+    @Override
+    public boolean supportsAsyncRetrieve() {
+        return delegate.supportsAsyncRetrieve();
+    }
+
+    @Override
+    public CompletableFuture<byte[]> retrieve(String name, byte[] key, Duration ttl) {
+        return roundTrips.async("get", () -> delegate.retrieve(name, key, ttl));
+    }
+
+    @Override
+    public void put(String name, byte[] key, byte[] value, Duration ttl) {
+        if (!pendingWrites.tryAcquire()) {
+            roundTrips.sync("set", () -> {
+                delegate.put(name, key, value, ttl);
+                return null;
+            });
+            return;
+        }
+        try {
+            store(name, key, value, ttl).whenComplete((reply, error) -> {
+                pendingWrites.release();
+                if (error != null) {
+                    LOGGER.warn("cache.put name={}, error={}", name, error.getMessage());
+                }
+            });
+        } catch (RuntimeException e) {
+            pendingWrites.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> store(String name, byte[] key, byte[] value, Duration ttl) {
+        return roundTrips.async("set", () -> delegate.store(name, key, value, ttl));
+    }
+
+    /**
+     * Writes many entries, sending their SETs back to back on the shared connection so that they are
+     * answered in about a single round-trip, metered as one {@code mset}. Without asynchronous stores the
+     * entries are written one SET at a time.
+     *
+     * @param name the name of the cache
+     * @param keys the keys of the entries
+     * @param values the values of the entries, in the order of the keys
+     * @param ttls the time to live of the entries, in the order of the keys
+     * @return a future completing once every entry is written
+     */
+    public CompletableFuture<Void> storeAll(String name, List<byte[]> keys, List<byte[]> values, List<Duration> ttls) {
+        if (!delegate.supportsAsyncRetrieve()) {
+            for (int i = 0; i < keys.size(); i++) {
+                int index = i;
+                roundTrips.sync("set", () -> {
+                    delegate.put(name, keys.get(index), values.get(index), ttls.get(index));
+                    return null;
+                });
+            }
+            return CompletableFuture.completedFuture(null);
+        }
+        return roundTrips.async("mset", () -> {
+            CompletableFuture<?>[] writes = new CompletableFuture<?>[keys.size()];
+            for (int i = 0; i < writes.length; i++) {
+                writes[i] = delegate.store(name, keys.get(i), values.get(i), ttls.get(i));
+            }
+            return CompletableFuture.allOf(writes);
+        });
+    }
+
+    @Override
+    public byte[] putIfAbsent(String name, byte[] key, byte[] value, Duration ttl) {
+        return roundTrips.sync("setnx", () -> delegate.putIfAbsent(name, key, value, ttl));
+    }
+
+    @Override
+    public void remove(String name, byte[] key) {
+        roundTrips.sync("del", () -> {
+            delegate.remove(name, key);
+            return null;
+        });
+    }
+
+    @Override
+    public void clean(String name, byte[] pattern) {
+        roundTrips.sync("clean", () -> {
+            delegate.clean(name, pattern);
+            return null;
+        });
+    }
+
+    @Override
+    public CacheStatistics getCacheStatistics(String cacheName) {
+        return delegate.getCacheStatistics(cacheName);
+    }
+
+    @Override
+    public void clearStatistics(String name) {
+        delegate.clearStatistics(name);
+    }
+
+    @Override
+    public RedisCacheWriter withStatisticsCollector(CacheStatisticsCollector cacheStatisticsCollector) {
+        return new WriteBehindRedisCacheWriter(delegate.withStatisticsCollector(cacheStatisticsCollector), roundTrips,
+                maxPendingWrites);
+    }
+}
@@ -0,0 +1,13 @@
+package vn.ttg.roadmap.weatherapiservice.codec;
+
+/**
+ * The JSON body of a WeatherResponse, encoded once, with the entity tag derived from it. The entity tag is
+ * weak since the body may be sent gzip compressed or not, which also lets the server compress it.
+ *
+ * @param body the UTF-8 JSON body, never to be modified
+ * @param etag the weak entity tag of the body
+ *
+ * @author ttg
+ */
+public record EncodedWeatherResponse(byte[] body, String etag) {
+}
@@ -0,0 +1,53 @@
+package vn.ttg.roadmap.weatherapiservice.codec;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import vn.ttg.roadmap.weatherapiservice.dto.WeatherResponse;
+
+/**
+ * A copy of a WeatherResponse restricted to some of the fields of its days, carrying its projected body.
+ *
+ * <p>The copy shares the fields of the response it was projected from, the projection lives in its body
+ * only. It is written as that body by {@link WeatherResponseHttpMessageConverter} and, embedded in another
+ * body or by any other writer, by its Jackson serializer, so that it is never written with the fields left
+ * out by the projection.</p>
+ *
+ * @author ttg
+ */
+@JsonSerialize(using = ProjectedWeatherResponse.Serializer.class)
+final class ProjectedWeatherResponse extends WeatherResponse {
+
+    private final EncodedWeatherResponse encoded;
+
+    ProjectedWeatherResponse(WeatherResponse response, EncodedWeatherResponse encoded) {
+        super(response.getResolvedAddress(), response.getTimezone(), response.getDescription(), response.getDays(),
+                response.getAlerts());
+        this.encoded = encoded;
+    }
+
+    EncodedWeatherResponse encoded() {
+        return encoded;
+    }
+
+    /**
+     * Writes a projected response as its projected body.
+     */
+    static class Serializer extends StdSerializer<ProjectedWeatherResponse> {
+
+        Serializer() {
+            super(ProjectedWeatherResponse.class);
+        }
+
+        @Override
+        public void serialize(ProjectedWeatherResponse response, JsonGenerator generator, SerializerProvider provider)
+                throws IOException {
+            generator.writeRawValue(new String(response.encoded().body(), StandardCharsets.UTF_8));
+        }
+    }
+}
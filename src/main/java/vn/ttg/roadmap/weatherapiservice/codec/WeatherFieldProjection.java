@@ -0,0 +1,77 @@
+package vn.ttg.roadmap.weatherapiservice.codec;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import vn.ttg.roadmap.weatherapiservice.exception.WeatherApiException;
+import vn.ttg.roadmap.weatherapiservice.exception.WeatherErrorCode;
+
+/**
+ * The fields of the days to include in a weather response, as requested with the {@code fields} parameter,
+ * for instance {@code fields=datetime,tempmax,tempmin}. The location level fields are always included.
+ *
+ * @param mask the bits of the included fields, in the order of {@link #DAY_FIELDS}
+ *
+ * @author ttg
+ */
+public record WeatherFieldProjection(int mask) {
+
+    /**
+     * The fields of a day, in the order of their bits.
+     */
+    public static final List<String> DAY_FIELDS = List.of("datetime", "tempmax", "tempmin", "conditions", "description");
+
+    public static final WeatherFieldProjection ALL = new WeatherFieldProjection((1 << DAY_FIELDS.size()) - 1);
+
+    /**
+     * Parses a comma separated list of day fields.
+     *
+     * @param fields the requested fields, null or blank for all of them
+     * @return the projection
+     * @throws WeatherApiException with {@link WeatherErrorCode#INVALID_FIELDS} when a field is unknown
+     */
+    public static WeatherFieldProjection parse(String fields) {
+        if (fields == null || fields.isBlank()) {
+            return ALL;
+        }
+        int mask = 0;
+        for (String field : fields.split(",")) {
+            String name = field.trim();
+            if (name.isEmpty()) {
+                continue;
+            }
+            int index = DAY_FIELDS.indexOf(name);
+            if (index < 0) {
+                throw new WeatherApiException(WeatherErrorCode.INVALID_FIELDS,
+                        String.format("Unknown field '%s', fields must be among %s", name, String.join(",", DAY_FIELDS)));
+            }
+            mask |= 1 << index;
+        }
+        return mask == 0 ? ALL : new WeatherFieldProjection(mask);
+    }
+
+    public boolean isAll() {
+        return mask == ALL.mask;
+    }
+
+    /**
+     * @return the names of the included fields
+     */
+    public List<String> fieldNames() {
+        List<String> names = new ArrayList<>(DAY_FIELDS.size());
+        for (int i = 0; i < DAY_FIELDS.size(); i++) {
+            if ((mask & (1 << i)) != 0) {
+                names.add(DAY_FIELDS.get(i));
+            }
+        }
+        return names;
+    }
+
+    /**
+     * @return the fields as a request parameter value, also identifying the projection in cache keys
+     */
+    @Override
+    public String toString() {
+        return String.join(",", fieldNames());
+    }
+}
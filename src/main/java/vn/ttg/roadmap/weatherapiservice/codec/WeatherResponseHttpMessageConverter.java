@@ -0,0 +1,56 @@
+package vn.ttg.roadmap.weatherapiservice.codec;
+
+import java.io.IOException;
+
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+
+import vn.ttg.roadmap.weatherapiservice.dto.WeatherResponse;
+
+/**
+ * An HttpMessageConverter writing WeatherResponse bodies as the bytes of {@link WeatherResponseJsonEncoder},
+ * with their Content-Length, so that responses served from the cache are not serialized again on every hit.
+ * Reading is left to the Jackson converter.
+ *
+ * <p><strong>Thread Safety:</strong> This class is thread-safe and can be used concurrently by multiple threads.</p>
+ *
+ * @author ttg
+ */
+public class WeatherResponseHttpMessageConverter extends AbstractHttpMessageConverter<WeatherResponse> {
+
+    private final WeatherResponseJsonEncoder encoder;
+
+    public WeatherResponseHttpMessageConverter(WeatherResponseJsonEncoder encoder) {
+        super(MediaType.APPLICATION_JSON);
+        this.encoder = encoder;
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        // projected copies are written as their projected body
+        return WeatherResponse.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    protected boolean canRead(MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected WeatherResponse readInternal(Class<? extends WeatherResponse> clazz, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("WeatherResponse bodies are not read by this converter", inputMessage);
+    }
+
+    @Override
+    protected Long getContentLength(WeatherResponse response, MediaType contentType) {
+        return (long) encoder.bodyOf(response).length;
+    }
+
+    @Override
+    protected void writeInternal(WeatherResponse response, HttpOutputMessage outputMessage) throws IOException {
+        outputMessage.getBody().write(encoder.bodyOf(response));
+    }
+}
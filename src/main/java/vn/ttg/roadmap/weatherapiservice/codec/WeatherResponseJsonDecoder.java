@@ -0,0 +1,289 @@
+package vn.ttg.roadmap.weatherapiservice.codec;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.reactivestreams.Publisher;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.DecodingException;
+import org.springframework.core.codec.Decoder;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferLimitException;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.MediaType;
+import org.springframework.util.MimeType;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteBufferFeeder;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import vn.ttg.roadmap.weatherapiservice.dto.DayWeather;
+import vn.ttg.roadmap.weatherapiservice.dto.WeatherAlert;
+import vn.ttg.roadmap.weatherapiservice.dto.WeatherResponse;
+
+/**
+ * A Decoder reading {@link WeatherResponse} from the weather API incrementally, with a non-blocking Jackson
+ * parser fed with each network buffer as it arrives.
+ *
+ * <p>Only the fields of {@link WeatherResponse}, {@link DayWeather} and {@link WeatherAlert} are extracted,
+ * everything else, the hourly data of each day in particular, is skipped token by token without being
+ * materialized. Network buffers are released as soon as they are parsed, so the body is never held in
+ * memory as a whole, and the decoder fails once more than the maximum response size was read.</p>
+ *
+ * <p><strong>Thread Safety:</strong> This class is thread-safe and can be used concurrently by multiple threads.</p>
+ *
+ * @author ttg
+ */
+public class WeatherResponseJsonDecoder implements Decoder<WeatherResponse> {
+
+    private static final List<MimeType> MIME_TYPES = List.of(MediaType.APPLICATION_JSON, new MediaType("application", "*+json"));
+
+    private final JsonFactory jsonFactory;
+    private final long maxResponseSize;
+
+    public WeatherResponseJsonDecoder(JsonFactory jsonFactory, long maxResponseSize) {
+        this.jsonFactory = jsonFactory;
+        this.maxResponseSize = maxResponseSize;
+    }
+
+    @Override
+    public boolean canDecode(ResolvableType elementType, MimeType mimeType) {
+        return WeatherResponse.class == elementType.toClass()
+                && (mimeType == null || MIME_TYPES.stream().anyMatch(supported -> supported.isCompatibleWith(mimeType)));
+    }
+
+    @Override
+    public List<MimeType> getDecodableMimeTypes() {
+        return MIME_TYPES;
+    }
+
+    @Override
+    public Flux<WeatherResponse> decode(Publisher<DataBuffer> inputStream, ResolvableType elementType,
+                                        MimeType mimeType, Map<String, Object> hints) {
+        return Flux.from(decodeToMono(inputStream, elementType, mimeType, hints));
+    }
+
+    @Override
+    public Mono<WeatherResponse> decodeToMono(Publisher<DataBuffer> inputStream, ResolvableType elementType,
+                                              MimeType mimeType, Map<String, Object> hints) {
+        return Mono.defer(() -> {
+            Reader reader = new Reader(createParser(), maxResponseSize);
+            return Flux.from(inputStream)
+                    .<Void>handle((buffer, sink) -> {
+                        try {
+                            reader.feed(buffer);
+                        } finally {
+                            DataBufferUtils.release(buffer);
+                        }
+                    })
+                    .then(Mono.fromCallable(reader::finish))
+                    .doOnDiscard(DataBuffer.class, DataBufferUtils::release);
+        });
+    }
+
+    private JsonParser createParser() {
+        try {
+            return jsonFactory.createNonBlockingByteBufferParser();
+        } catch (IOException e) {
+            throw new DecodingException("Cannot create JSON parser", e);
+        }
+    }
+
+    /**
+     * Where the reader is within the weather API response.
+     */
+    private enum State {
+        START, ROOT, DAYS, DAY, ALERTS, ALERT, DONE
+    }
+
+    /**
+     * Builds a WeatherResponse from the tokens of one response, as they become available.
+     */
+    private static final class Reader {
+
+        private final JsonParser parser;
+        private final ByteBufferFeeder feeder;
+        private final long maxResponseSize;
+        private long bytesRead;
+
+        private State state = State.START;
+        private int skipDepth;
+        private String field;
+        private final WeatherResponse response = new WeatherResponse();
+        private final List<DayWeather> days = new ArrayList<>();
+        private List<WeatherAlert> alerts;
+        private DayWeather day;
+        private WeatherAlert alert;
+
+        Reader(JsonParser parser, long maxResponseSize) {
+            this.parser = parser;
+            this.feeder = (ByteBufferFeeder) parser.getNonBlockingInputFeeder();
+            this.maxResponseSize = maxResponseSize;
+        }
+
+        void feed(DataBuffer buffer) {
+            bytesRead += buffer.readableByteCount();
+            if (bytesRead > maxResponseSize) {
+                throw new DataBufferLimitException("Weather API response exceeds the limit of " + maxResponseSize + " bytes");
+            }
+            try (DataBuffer.ByteBufferIterator iterator = buffer.readableByteBuffers()) {
+                while (iterator.hasNext()) {
+                    ByteBuffer byteBuffer = iterator.next();
+                    feeder.feedInput(byteBuffer);
+                    parseAvailableTokens();
+                }
+            } catch (IOException e) {
+                throw new DecodingException("Invalid weather API response: " + e.getMessage(), e);
+            }
+        }
+
+        WeatherResponse finish() {
+            try {
+                feeder.endOfInput();
+                parseAvailableTokens();
+                parser.close();
+            } catch (IOException e) {
+                throw new DecodingException("Invalid weather API response: " + e.getMessage(), e);
+            }
+            if (state != State.DONE) {
+                throw new DecodingException("Incomplete weather API response");
+            }
+            response.setDays(days);
+            response.setAlerts(alerts);
+            return response;
+        }
+
+        private void parseAvailableTokens() throws IOException {
+            JsonToken token;
+            while ((token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+                onToken(token);
+            }
+        }
+
+        private void onToken(JsonToken token) throws IOException {
+            if (skipDepth > 0) {
+                if (token.isStructStart()) {
+                    skipDepth++;
+                } else if (token.isStructEnd()) {
+                    skipDepth--;
+                }
+                return;
+            }
+            if (token == JsonToken.FIELD_NAME) {
+                field = parser.currentName();
+                return;
+            }
+            switch (state) {
+                case START -> {
+                    if (token != JsonToken.START_OBJECT) {
+                        throw new DecodingException("Weather API response is not a JSON object");
+                    }
+                    state = State.ROOT;
+                }
+                case ROOT -> onRootToken(token);
+                case DAYS -> {
+                    if (token == JsonToken.START_OBJECT) {
+                        day = new DayWeather();
+                        state = State.DAY;
+                    } else if (token == JsonToken.END_ARRAY) {
+                        state = State.ROOT;
+                    } else {
+                        skip(token);
+                    }
+                }
+                case DAY -> onDayToken(token);
+                case ALERTS -> {
+                    if (token == JsonToken.START_OBJECT) {
+                        alert = new WeatherAlert();
+                        state = State.ALERT;
+                    } else if (token == JsonToken.END_ARRAY) {
+                        state = State.ROOT;
+                    } else {
+                        skip(token);
+                    }
+                }
+                case ALERT -> onAlertToken(token);
+                case DONE -> throw new DecodingException("Unexpected content after the weather API response");
+            }
+        }
+
+        private void onRootToken(JsonToken token) throws IOException {
+            if (token == JsonToken.END_OBJECT) {
+                state = State.DONE;
+            } else if ("days".equals(field) && token == JsonToken.START_ARRAY) {
+                state = State.DAYS;
+            } else if ("alerts".equals(field) && token == JsonToken.START_ARRAY) {
+                alerts = new ArrayList<>();
+                state = State.ALERTS;
+            } else if ("resolvedAddress".equals(field)) {
+                response.setResolvedAddress(text(token));
+            } else if ("timezone".equals(field)) {
+                response.setTimezone(text(token));
+            } else if ("description".equals(field)) {
+                response.setDescription(text(token));
+            } else {
+                skip(token);
+            }
+        }
+
+        private void onDayToken(JsonToken token) throws IOException {
+            if (token == JsonToken.END_OBJECT) {
+                days.add(day);
+                state = State.DAYS;
+            } else if ("datetime".equals(field)) {
+                day.setDatetime(text(token));
+            } else if ("tempmax".equals(field)) {
+                day.setTempmax(number(token));
+            } else if ("tempmin".equals(field)) {
+                day.setTempmin(number(token));
+            } else if ("conditions".equals(field)) {
+                day.setConditions(text(token));
+            } else if ("description".equals(field)) {
+                day.setDescription(text(token));
+            } else {
+                skip(token);
+            }
+        }
+
+        private void onAlertToken(JsonToken token) throws IOException {
+            if (token == JsonToken.END_OBJECT) {
+                alerts.add(alert);
+                state = State.ALERTS;
+            } else if ("event".equals(field)) {
+                alert.setEvent(text(token));
+            } else if ("description".equals(field)) {
+                alert.setDescription(text(token));
+            } else {
+                skip(token);
+            }
+        }
+
+        private void skip(JsonToken token) {
+            if (token.isStructStart()) {
+                skipDepth = 1;
+            }
+        }
+
+        private String text(JsonToken token) throws IOException {
+            if (token.isStructStart()) {
+                skipDepth = 1;
+                return null;
+            }
+            return token == JsonToken.VALUE_NULL ? null : parser.getText();
+        }
+
+        private double number(JsonToken token) throws IOException {
+            if (token.isStructStart()) {
+                skipDepth = 1;
+                return 0;
+            }
+            return token.isNumeric() ? parser.getDoubleValue() : 0;
+        }
+    }
+}
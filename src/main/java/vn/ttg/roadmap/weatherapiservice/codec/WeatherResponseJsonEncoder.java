@@ -0,0 +1,256 @@
+package vn.ttg.roadmap.weatherapiservice.codec;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.annotation.JsonFilter;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import net.jpountz.xxhash.XXHash64;
+import net.jpountz.xxhash.XXHashFactory;
+import vn.ttg.roadmap.weatherapiservice.dto.DayWeather;
+import vn.ttg.roadmap.weatherapiservice.dto.WeatherResponse;
+import vn.ttg.roadmap.weatherapiservice.exception.WeatherApiException;
+import vn.ttg.roadmap.weatherapiservice.exception.WeatherErrorCode;
+
+/**
+ * Encodes WeatherResponse bodies to JSON with the application ObjectMapper, once per response instance.
+ *
+ * <p>Encoded bodies are remembered by the identity of the response they were encoded from, and weakly,
+ * so that a response held by the near cache is encoded on its first hit only and every later hit is
+ * served from the same bytes, while responses built for a single request are forgotten with them. The
+ * remembered bodies are bounded by {@code weather.response.encoded.max-size}. Encodings are counted in
+ * the {@code weather.response.encodings} meter tagged with {@code result} (hit when the body was reused,
+ * miss when it was encoded).</p>
+ *
+ * <p>A hit served from Redis is decoded into a new response instance. Bodies of cached responses are
+ * therefore also remembered by the cache entry they were served from and the write times of the values
+ * they were read from, within the same bound: a new instance of a version of an entry encoded before
+ * adopts its bytes instead of being encoded again, and a new write of the entry replaces them.</p>
+ *
+ * <p>Responses restricted to some of the fields of their days by a {@link WeatherFieldProjection} are
+ * encoded with a filter on the days, and handed out as a {@link ProjectedWeatherResponse} copy carrying
+ * its projected body, so that the copy is written as projected whichever converter or serializer writes
+ * it. The copies are remembered by the identity of the response and their projection, weakly and within
+ * the same bound, so that a cached response is encoded once per projection requested.</p>
+ *
+ * <p><strong>Thread Safety:</strong> This class is thread-safe and can be used concurrently by multiple threads.</p>
+ *
+ * @author ttg
+ */
+@Component
+public class WeatherResponseJsonEncoder {
+
+    private static final XXHash64 HASH = XXHashFactory.fastestJavaInstance().hash64();
+    private static final String DAY_FILTER = "dayFields";
+
+    private final ObjectWriter writer;
+    private final ObjectWriter[] projectionWriters;
+    private final Cache<WeatherResponse, EncodedWeatherResponse> encoded;
+    private final Cache<WeatherResponse, AtomicReferenceArray<ProjectedWeatherResponse>> projections;
+    private final Cache<String, VersionedBodies> versioned;
+    private final Counter hitCounter;
+    private final Counter missCounter;
+
+    public WeatherResponseJsonEncoder(ObjectMapper objectMapper, MeterRegistry meterRegistry,
+                                      @Value("${weather.response.encoded.max-size}") long maxSize) {
+        this.writer = objectMapper.writerFor(WeatherResponse.class);
+        this.projectionWriters = projectionWriters(objectMapper);
+        this.encoded = Caffeine.newBuilder().weakKeys().maximumSize(maxSize).build();
+        this.projections = Caffeine.newBuilder().weakKeys().maximumSize(maxSize).build();
+        this.versioned = Caffeine.newBuilder().maximumSize(maxSize).build();
+        this.hitCounter = encodingCounter(meterRegistry, "hit");
+        this.missCounter = encodingCounter(meterRegistry, "miss");
+    }
+
+    /**
+     * Returns the JSON body of a response, encoding it unless this very instance was encoded before.
+     *
+     * @param response the response, not to be modified once encoded
+     * @return the encoded body and its entity tag
+     */
+    public EncodedWeatherResponse encode(WeatherResponse response) {
+        if (response instanceof ProjectedWeatherResponse projected) {
+            return projected.encoded();
+        }
+        EncodedWeatherResponse body = encoded.getIfPresent(response);
+        if (body != null) {
+            hitCounter.increment();
+            return body;
+        }
+        missCounter.increment();
+        body = encodeBody(writer, response);
+        encoded.put(response, body);
+        return body;
+    }
+
+    /**
+     * Restricts a response to some of the fields of its days.
+     *
+     * @param response the response, not to be modified
+     * @param projection the fields of the days to keep
+     * @return the response itself when all the fields are kept, otherwise a copy of it encoded with the
+     *         projection, the same one unless this very instance was not projected so before
+     */
+    public WeatherResponse project(WeatherResponse response, WeatherFieldProjection projection) {
+        if (projection.isAll()) {
+            return response;
+        }
+        AtomicReferenceArray<ProjectedWeatherResponse> copies = projections.get(response,
+                key -> new AtomicReferenceArray<>(projectionWriters.length));
+        ProjectedWeatherResponse copy = copies.get(projection.mask());
+        if (copy != null) {
+            hitCounter.increment();
+            return copy;
+        }
+        missCounter.increment();
+        copy = new ProjectedWeatherResponse(response, encodeBody(projectionWriters[projection.mask()], response));
+        // a copy projected concurrently is replaced, both being written alike
+        copies.set(projection.mask(), copy);
+        return copy;
+    }
+
+    /**
+     * Restricts a cached response to some of the fields of its days, reusing the body encoded for the same
+     * version of the cache entry it was served from when this very instance was not encoded before, as
+     * when the entry was read again from Redis.
+     *
+     * @param response the response, not to be modified
+     * @param projection the fields of the days to keep
+     * @param entry the cache entry the response was served from, such as its cache name and key
+     * @param version the write times of the cached values the response was read from, or null if unknown
+     * @return the response itself when all the fields are kept, otherwise a copy of it encoded with the projection
+     */
+    public WeatherResponse project(WeatherResponse response, WeatherFieldProjection projection, String entry, long[] version) {
+        if (version == null) {
+            return project(response, projection);
+        }
+        WeatherResponse known = projectedBefore(response, projection);
+        if (known != null) {
+            hitCounter.increment();
+            return known;
+        }
+        EncodedWeatherResponse body = versionedBody(entry, version, projection);
+        if (body != null) {
+            hitCounter.increment();
+            return adopt(response, projection, body);
+        }
+        WeatherResponse projected = project(response, projection);
+        EncodedWeatherResponse encodedBody = encode(projected);
+        // bodies of another version of the entry are replaced, whether they were written before or after it
+        versioned.asMap().compute(entry, (key, current) -> {
+            VersionedBodies updated = current != null && Arrays.equals(current.version(), version)
+                    ? current : new VersionedBodies(version.clone(), new AtomicReferenceArray<>(projectionWriters.length));
+            updated.bodies().set(projection.mask(), encodedBody);
+            return updated;
+        });
+        return projected;
+    }
+
+    /**
+     * Returns the entity tag of the body encoded for a version of a cache entry and projection, so that
+     * conditional requests are matched before the response is projected and encoded.
+     *
+     * @param entry the cache entry the response was served from, such as its cache name and key
+     * @param version the write times of the cached values the response was read from, or null if unknown
+     * @param projection the fields of the days kept
+     * @return the entity tag, or null when no body was encoded for this version and projection
+     */
+    public String etagOf(String entry, long[] version, WeatherFieldProjection projection) {
+        EncodedWeatherResponse body = version != null ? versionedBody(entry, version, projection) : null;
+        return body != null ? body.etag() : null;
+    }
+
+    private EncodedWeatherResponse versionedBody(String entry, long[] version, WeatherFieldProjection projection) {
+        VersionedBodies bodies = versioned.getIfPresent(entry);
+        return bodies != null && Arrays.equals(bodies.version(), version) ? bodies.bodies().get(projection.mask()) : null;
+    }
+
+    /**
+     * Returns the response or copy of it projected and encoded before, null if there is none.
+     */
+    private WeatherResponse projectedBefore(WeatherResponse response, WeatherFieldProjection projection) {
+        if (projection.isAll()) {
+            return encoded.getIfPresent(response) != null ? response : null;
+        }
+        AtomicReferenceArray<ProjectedWeatherResponse> copies = projections.getIfPresent(response);
+        return copies != null ? copies.get(projection.mask()) : null;
+    }
+
+    /**
+     * Remembers a body encoded from another instance of the same version of a cache entry as the body of a response.
+     */
+    private WeatherResponse adopt(WeatherResponse response, WeatherFieldProjection projection, EncodedWeatherResponse body) {
+        if (projection.isAll()) {
+            encoded.put(response, body);
+            return response;
+        }
+        ProjectedWeatherResponse copy = new ProjectedWeatherResponse(response, body);
+        projections.get(response, key -> new AtomicReferenceArray<>(projectionWriters.length)).set(projection.mask(), copy);
+        return copy;
+    }
+
+    /**
+     * Returns the body of a response encoded before without counting it again, the converter looking the
+     * body up once more for the response it writes.
+     */
+    byte[] bodyOf(WeatherResponse response) {
+        if (response instanceof ProjectedWeatherResponse projected) {
+            return projected.encoded().body();
+        }
+        EncodedWeatherResponse body = encoded.getIfPresent(response);
+        return body != null ? body.body() : encode(response).body();
+    }
+
+    private static EncodedWeatherResponse encodeBody(ObjectWriter writer, WeatherResponse response) {
+        try {
+            byte[] json = writer.writeValueAsBytes(response);
+            return new EncodedWeatherResponse(json, "W/\"" + Long.toHexString(HASH.hash(json, 0, json.length, 0)) + '"');
+        } catch (JsonProcessingException e) {
+            throw new WeatherApiException(WeatherErrorCode.UNEXPECTED_ERROR, "Cannot encode weather response", e);
+        }
+    }
+
+    /**
+     * Writers of every projection, indexed by its mask, with a copy of the ObjectMapper filtering the days.
+     */
+    private static ObjectWriter[] projectionWriters(ObjectMapper objectMapper) {
+        ObjectMapper projectionMapper = objectMapper.copy().addMixIn(DayWeather.class, DayFieldsMixIn.class);
+        ObjectWriter[] writers = new ObjectWriter[WeatherFieldProjection.ALL.mask() + 1];
+        for (int mask = 0; mask < writers.length; mask++) {
+            SimpleFilterProvider filters = new SimpleFilterProvider().addFilter(DAY_FILTER,
+                    SimpleBeanPropertyFilter.filterOutAllExcept(new HashSet<>(new WeatherFieldProjection(mask).fieldNames())));
+            writers[mask] = projectionMapper.writerFor(WeatherResponse.class).with(filters);
+        }
+        return writers;
+    }
+
+    private static Counter encodingCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("weather.response.encodings")
+                .description("JSON encodings of weather responses, reused or encoded")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Bodies encoded from a version of a cache entry, indexed by the mask of their projection.
+     */
+    private record VersionedBodies(long[] version, AtomicReferenceArray<EncodedWeatherResponse> bodies) {
+    }
+
+    @JsonFilter(DAY_FILTER)
+    private interface DayFieldsMixIn {
+    }
+}
@@ -2,7 +2,12 @@ package vn.ttg.roadmap.weatherapiservice.conf;
 
 import java.time.Duration;
 import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.function.Consumer;
 
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
@@ -15,16 +20,29 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
 import org.springframework.data.redis.cache.RedisCacheConfiguration;
 import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.cache.RedisCacheWriter;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.util.unit.DataSize;
 
 import com.fasterxml.jackson.annotation.JsonTypeInfo;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import vn.ttg.roadmap.weatherapiservice.cache.MultiGetRedisCacheManager;
+import vn.ttg.roadmap.weatherapiservice.cache.RedisRoundTrips;
+import vn.ttg.roadmap.weatherapiservice.cache.RefreshAheadCacheManager;
+import vn.ttg.roadmap.weatherapiservice.cache.TwoTierCacheManager;
+import vn.ttg.roadmap.weatherapiservice.cache.WeatherCacheKeys;
+import vn.ttg.roadmap.weatherapiservice.cache.WeatherResponseRedisSerializer;
+import vn.ttg.roadmap.weatherapiservice.cache.WriteBehindRedisCacheWriter;
 import vn.ttg.roadmap.weatherapiservice.listener.LoggingCacheManager;
+import vn.ttg.roadmap.weatherapiservice.service.WeatherService;
 
 /**
  * Configuration class for Redis caching
@@ -38,15 +56,48 @@ public class RedisCacheConfig {
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Value("${cache.ttl.weathers-current}")
+    private Duration currentTtl;
+    @Value("${cache.ttl.weathers-forecast}")
+    private Duration forecastTtl;
+    @Value("${cache.ttl.weathers-historical}")
+    private Duration historicalTtl;
+
+    @Value("${cache.near.enabled}")
+    private boolean nearEnabled;
+    @Value("${cache.near.max-size}")
+    private DataSize nearMaxSize;
+    @Value("${cache.near.ttl.weathers-current}")
+    private Duration nearCurrentTtl;
+    @Value("${cache.near.ttl.weathers-forecast}")
+    private Duration nearForecastTtl;
+    @Value("${cache.near.ttl.weathers-historical}")
+    private Duration nearHistoricalTtl;
+
+    @Value("${cache.refresh-ahead.enabled}")
+    private boolean refreshAheadEnabled;
+    @Value("${cache.refresh-ahead.weathers-current}")
+    private Duration currentRefreshAhead;
+    @Value("${cache.stale-if-error.weathers-current}")
+    private Duration currentStaleIfError;
+    @Value("${cache.stale-if-error.weathers-forecast}")
+    private Duration forecastStaleIfError;
+    @Value("${cache.stale-if-error.weathers-historical}")
+    private Duration historicalStaleIfError;
+    @Value("${cache.tracked-values}")
+    private long trackedValues;
+
     /**
      * Configure the RedisCacheConfiguration with custom key and value serializers.
-     * The value serializer uses GenericJackson2JsonRedisSerializer with an custom ObjectMapper
+     * Weather responses are written with the compact binary {@link WeatherResponseRedisSerializer}
+     * unless {@code cache.codec.binary} is disabled. Other values, and entries written before the
+     * binary codec was enabled, go through GenericJackson2JsonRedisSerializer with an custom ObjectMapper
      * that has default typing activated to handle polymorphic types.
      * <p>
      * // Without type info (default)
      * {"resolvedAddress": "London", "description": "Sunny"}
      * <p>
-     * // With type info (this configuration), prevent ClassCastException when reading from cache.
+     * // With type info (JSON fallback), prevent ClassCastException when reading from cache.
      * {
      *   "@class": "vn.ttg.roadmap.weatherapiservice.dto.WeatherResponse",
      *   "resolvedAddress": "London",
@@ -55,29 +106,55 @@ public class RedisCacheConfig {
      *
      */
     @Bean
-    public RedisCacheConfiguration cacheConfiguration() {
+    public RedisCacheConfiguration cacheConfiguration(
+            @Value("${cache.codec.binary}") boolean binaryCodec,
+            @Value("${cache.codec.compression}") WeatherResponseRedisSerializer.Compression compression,
+            @Value("${cache.codec.compression-threshold}") DataSize compressionThreshold) {
+
+        // binary entries stay readable with the binary codec disabled, so that it can be rolled back
+        RedisSerializer<Object> valueSerializer = new WeatherResponseRedisSerializer(jsonCacheValueSerializer(objectMapper), binaryCodec,
+                compression, (int) compressionThreshold.toBytes());
+
+        return RedisCacheConfiguration.defaultCacheConfig()
+                .disableCachingNullValues()
+                .serializeKeysWith(RedisSerializationContext.SerializationPair.fromSerializer(new StringRedisSerializer()))
+                .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(valueSerializer));
+    }
 
+    /**
+     * JSON serializer embedding the class name of every non final value.
+     */
+    public static RedisSerializer<Object> jsonCacheValueSerializer(ObjectMapper objectMapper) {
         ObjectMapper cacheMapper = objectMapper.copy();
         cacheMapper.activateDefaultTyping(
                 cacheMapper.getPolymorphicTypeValidator(),
                 ObjectMapper.DefaultTyping.NON_FINAL,
                 JsonTypeInfo.As.PROPERTY
         );
-        var valueSerializer = new GenericJackson2JsonRedisSerializer(cacheMapper);
-
-        return RedisCacheConfiguration.defaultCacheConfig()
-                .disableCachingNullValues()
-                .serializeKeysWith(RedisSerializationContext.SerializationPair.fromSerializer(new StringRedisSerializer()))
-                .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(valueSerializer));
+        return new GenericJackson2JsonRedisSerializer(cacheMapper);
     }
 
+    /**
+     * Redis CacheManager of the weather caches. Lookups of many keys are sent as a single MGET, and entries
+     * are written without waiting for the reply of their SET, at most {@code cache.redis.max-pending-writes}
+     * of them at a time. All commands share the multiplexed Lettuce connection and are metered by
+     * {@link RedisRoundTrips}.
+     */
     @Bean(name = "delegateRedisCacheManager")
-    public RedisCacheManager delegateRedisCacheManager(RedisConnectionFactory connectionFactory, RedisCacheConfiguration baseConfig, RedisCacheManagerBuilderCustomizer customizer) {
+    public RedisCacheManager delegateRedisCacheManager(RedisConnectionFactory connectionFactory, RedisCacheConfiguration baseConfig,
+                                                       RedisCacheManagerBuilderCustomizer customizer, RedisRoundTrips roundTrips,
+                                                       @Value("${cache.redis.max-pending-writes}") int maxPendingWrites) {
         RedisCacheManager.RedisCacheManagerBuilder builder = RedisCacheManager
                 .builder(connectionFactory)
                 .cacheDefaults(baseConfig);
         customizer.customize(builder);
-        return builder.build();
+
+        // same caches as the builder would create, but able to look up many keys with a single MGET
+        Map<String, RedisCacheConfiguration> cacheConfigurations = new HashMap<>();
+        builder.getConfiguredCaches().forEach(name -> cacheConfigurations.put(name, builder.getCacheConfigurationFor(name).orElse(baseConfig)));
+        RedisCacheWriter cacheWriter = new WriteBehindRedisCacheWriter(RedisCacheWriter.nonLockingRedisCacheWriter(connectionFactory),
+                roundTrips, maxPendingWrites);
+        return new MultiGetRedisCacheManager(cacheWriter, baseConfig, cacheConfigurations, connectionFactory, roundTrips);
     }
 
     /**
@@ -89,12 +166,16 @@ public class RedisCacheConfig {
             @Value("${cache.ttl.weathers-current}") Duration currentTtl,
             @Value("${cache.ttl.weathers-forecast}") Duration forecastTtl,
             @Value("${cache.ttl.weathers-historical}") Duration historicalTtl,
+            @Value("${cache.stale-if-error.weathers-current}") Duration currentStaleIfError,
+            @Value("${cache.stale-if-error.weathers-forecast}") Duration forecastStaleIfError,
+            @Value("${cache.stale-if-error.weathers-historical}") Duration historicalStaleIfError,
             RedisCacheConfiguration baseConfig) {
 
+        // entries outlive their TTL by the stale-if-error window, freshness is decided by RefreshAheadCache
         return builder -> builder
-                .withCacheConfiguration("weathers-current", baseConfig.entryTtl(currentTtl))
-                .withCacheConfiguration("weathers-forecast", baseConfig.entryTtl(forecastTtl))
-                .withCacheConfiguration("weathers-historical", baseConfig.entryTtl(historicalTtl));
+                .withCacheConfiguration("weathers-current", baseConfig.entryTtl(currentTtl.plus(currentStaleIfError)))
+                .withCacheConfiguration("weathers-forecast", baseConfig.entryTtl(forecastTtl.plus(forecastStaleIfError)))
+                .withCacheConfiguration("weathers-historical", baseConfig.entryTtl(historicalTtl.plus(historicalStaleIfError)));
     }
 
     /**
@@ -106,11 +187,11 @@ public class RedisCacheConfig {
     @Bean("weatherKeyGenerator")
     public KeyGenerator weatherKeyGenerator() {
         return (target, method, params) -> {
-            String location = String.valueOf(params[0]).trim().toLowerCase();
-            if (params.length == 3 && params[1] instanceof LocalDate && params[2] instanceof LocalDate) {
-                return location + ":" + params[1] + ":" + params[2];
+            String location = String.valueOf(params[0]);
+            if (params.length == 3 && params[1] instanceof LocalDate startDate && params[2] instanceof LocalDate endDate) {
+                return WeatherCacheKeys.range(location, startDate, endDate);
             }
-            return location + ":today";
+            return WeatherCacheKeys.current(location);
         };
     }
 
@@ -132,13 +213,84 @@ public class RedisCacheConfig {
     }
 
     /**
-     * Primary CacheManager that wraps the delegate RedisCacheManager to add logging functionality.
-     * This allows monitoring cache hits and misses.
+     * Executor running the background refreshes of entries nearing expiry.
+     */
+    @Bean(name = "cacheRefreshExecutor")
+    public ThreadPoolTaskExecutor cacheRefreshExecutor(@Value("${cache.refresh-ahead.pool-size}") int poolSize) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(1000);
+        executor.setThreadNamePrefix("cache-refresh-");
+        return executor;
+    }
+
+    /**
+     * Executor running the blocking cache operations that follow weather API calls, such as reading stale
+     * entries when a call fails, so that they never run on the event loop thread completing the call.
+     * Once its queue is full, the operations run on the completing thread. Operations carry the Redis
+     * round-trips tally of the request submitting them.
+     */
+    @Bean(name = "cacheIoExecutor")
+    public ThreadPoolTaskExecutor cacheIoExecutor(@Value("${cache.io.pool-size}") int poolSize, RedisRoundTrips roundTrips) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(10000);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setThreadNamePrefix("cache-io-");
+        executor.setTaskDecorator(roundTrips::propagate);
+        return executor;
+    }
+
+    /**
+     * CacheManager deciding freshness of the weather caches on top of Redis.
+     * <p>
+     * When the near cache is enabled, a bounded in-process tier is composed in front of Redis so that
+     * hot entries are served from memory and Redis is only touched on near cache misses. Near TTLs are
+     * capped to the Redis TTL of the same cache.
+     * <p>
+     * Current weather entries are refreshed in the background when read within the refresh-ahead window
+     * before expiry. Entries of every cache remain available as stale values for the stale-if-error
+     * window of the cache after expiry.
+     */
+    @Bean
+    public RefreshAheadCacheManager refreshAheadCacheManager(
+            @Qualifier("delegateRedisCacheManager") RedisCacheManager delegate,
+            @Qualifier("cacheRefreshExecutor") ThreadPoolTaskExecutor cacheRefreshExecutor,
+            ObjectProvider<WeatherService> weatherService,
+            MeterRegistry meterRegistry) {
+
+        CacheManager remote = delegate;
+        if (nearEnabled) {
+            Map<String, Duration> nearTtls = Map.of(
+                    "weathers-current", min(nearCurrentTtl, currentTtl),
+                    "weathers-forecast", min(nearForecastTtl, forecastTtl),
+                    "weathers-historical", min(nearHistoricalTtl, historicalTtl));
+            remote = new TwoTierCacheManager(delegate, nearTtls, nearMaxSize, meterRegistry);
+        }
+
+        Consumer<Object> currentRefresher = refreshAheadEnabled
+                ? key -> weatherService.getObject().getCurrentWeather(WeatherCacheKeys.currentLocation(key))
+                : null;
+        Map<String, RefreshAheadCacheManager.Policy> policies = Map.of(
+                "weathers-current", new RefreshAheadCacheManager.Policy(currentTtl, currentRefreshAhead, currentStaleIfError, currentRefresher),
+                "weathers-forecast", new RefreshAheadCacheManager.Policy(forecastTtl, Duration.ZERO, forecastStaleIfError, null),
+                "weathers-historical", new RefreshAheadCacheManager.Policy(historicalTtl, Duration.ZERO, historicalStaleIfError, null));
+        return new RefreshAheadCacheManager(remote, policies, cacheRefreshExecutor, trackedValues);
+    }
+
+    /**
+     * Primary CacheManager that wraps the RefreshAheadCacheManager to add logging and metrics functionality.
+     * This allows monitoring cache hits, misses and latencies through the actuator metrics endpoint.
      */
     @Bean
     @Primary
-    public CacheManager cacheManager(@Qualifier("delegateRedisCacheManager") RedisCacheManager delegate) {
-        return new LoggingCacheManager(delegate);
+    public CacheManager cacheManager(RefreshAheadCacheManager delegate, MeterRegistry meterRegistry) {
+        return new LoggingCacheManager(delegate, meterRegistry);
     }
-}
 
+    private static Duration min(Duration a, Duration b) {
+        return a.compareTo(b) <= 0 ? a : b;
+    }
+}
@@ -0,0 +1,35 @@
+package vn.ttg.roadmap.weatherapiservice.conf;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import vn.ttg.roadmap.weatherapiservice.strategy.WeatherRequestValidationContext;
+import vn.ttg.roadmap.weatherapiservice.strategy.impl.WeatherDateRangeRequestValidationStrategy;
+
+/**
+ * Configuration of the validation strategies declared once per validation type.
+ *
+ * @author ttg
+ */
+@Configuration
+public class WeatherRequestValidationConfig {
+
+    /**
+     * Date ranges loaded in a single weather API call.
+     */
+    @Bean
+    public WeatherDateRangeRequestValidationStrategy dateRangeRequestValidationStrategy() {
+        return new WeatherDateRangeRequestValidationStrategy(WeatherRequestValidationContext.Type.DATE_RANGE,
+                WeatherDateRangeRequestValidationStrategy.WEATHER_API_MAX_DAYS);
+    }
+
+    /**
+     * Date ranges fetched in windows or read from the historical store.
+     */
+    @Bean
+    public WeatherDateRangeRequestValidationStrategy chunkedDateRangeRequestValidationStrategy(
+            @Value("${weather.historical.chunked.max-days}") int maxDays) {
+        return new WeatherDateRangeRequestValidationStrategy(WeatherRequestValidationContext.Type.CHUNKED_DATE_RANGE, maxDays);
+    }
+}
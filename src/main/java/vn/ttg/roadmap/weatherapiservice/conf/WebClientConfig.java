@@ -0,0 +1,91 @@
+package vn.ttg.roadmap.weatherapiservice.conf;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import com.fasterxml.jackson.core.JsonFactory;
+
+import io.netty.channel.ChannelOption;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+import vn.ttg.roadmap.weatherapiservice.codec.WeatherResponseJsonDecoder;
+
+/**
+ * Configuration class for the non-blocking WebClient used to call the weather API.
+ * Connections are pooled and kept alive per remote host, and responses are decoded off the request threads,
+ * incrementally as they arrive when {@code weather.api.streaming-decoder} is enabled.
+ *
+ *  @author ttg
+ */
+@Configuration
+public class WebClientConfig {
+
+    @Value("${weather.api.connect-timeout}")
+    private Duration connectTimeout;
+
+    @Value("${weather.api.read-timeout}")
+    private Duration readTimeout;
+
+    @Value("${weather.api.compression}")
+    private boolean compression;
+
+    @Value("${weather.api.http2}")
+    private boolean http2;
+
+    @Value("${weather.api.max-response-size}")
+    private DataSize maxResponseSize;
+
+    @Value("${weather.api.streaming-decoder}")
+    private boolean streamingDecoder;
+
+    /**
+     * Connection pool of the weather API client. Reactor Netty keeps one pool per remote host,
+     * so the connection limits apply per host.
+     */
+    @Bean(destroyMethod = "dispose")
+    ConnectionProvider weatherApiConnectionProvider(
+            @Value("${weather.api.pool.max-connections}") int maxConnections,
+            @Value("${weather.api.pool.pending-acquire-max-count}") int pendingAcquireMaxCount,
+            @Value("${weather.api.pool.pending-acquire-timeout}") Duration pendingAcquireTimeout,
+            @Value("${weather.api.pool.max-idle-time}") Duration maxIdleTime,
+            @Value("${weather.api.pool.max-life-time}") Duration maxLifeTime) {
+        return ConnectionProvider.builder("weather-api")
+                .maxConnections(maxConnections)
+                .pendingAcquireMaxCount(pendingAcquireMaxCount)
+                .pendingAcquireTimeout(pendingAcquireTimeout)
+                .maxIdleTime(maxIdleTime)
+                .maxLifeTime(maxLifeTime)
+                .evictInBackground(maxIdleTime)
+                .metrics(true)
+                .build();
+    }
+
+    @Bean
+    WebClient weatherApiWebClient(WebClient.Builder builder, ConnectionProvider weatherApiConnectionProvider) {
+        HttpClient httpClient = HttpClient.create(weatherApiConnectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) connectTimeout.toMillis())
+                .option(ChannelOption.SO_KEEPALIVE, true)
+                .responseTimeout(readTimeout)
+                .keepAlive(true)
+                .compress(compression);
+        if (http2) {
+            httpClient = httpClient.protocol(HttpProtocol.H2, HttpProtocol.HTTP11);
+        }
+        return builder
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .codecs(codecs -> {
+                    codecs.defaultCodecs().maxInMemorySize((int) maxResponseSize.toBytes());
+                    if (streamingDecoder) {
+                        codecs.customCodecs().register(new WeatherResponseJsonDecoder(new JsonFactory(), maxResponseSize.toBytes()));
+                    }
+                })
+                .build();
+    }
+}
@@ -0,0 +1,79 @@
+package vn.ttg.roadmap.weatherapiservice.conf;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import vn.ttg.roadmap.weatherapiservice.cache.RedisRoundTrips;
+
+import vn.ttg.roadmap.weatherapiservice.codec.WeatherResponseHttpMessageConverter;
+import vn.ttg.roadmap.weatherapiservice.codec.WeatherResponseJsonEncoder;
+
+/**
+ * Configuration class for Spring MVC. Weather responses are written from their pre-encoded JSON bytes,
+ * ahead of the Jackson converter which still writes every other body. The Redis round-trips of each
+ * request are tallied into the {@code cache.redis.round-trips} meter, over every dispatch of the request
+ * and recorded once it is complete.
+ *
+ *  @author ttg
+ */
+@Configuration
+public class WebMvcConfig implements WebMvcConfigurer {
+
+    private static final String ROUND_TRIPS_ATTRIBUTE = WebMvcConfig.class.getName() + ".ROUND_TRIPS";
+
+    @Autowired
+    private WeatherResponseJsonEncoder weatherResponseJsonEncoder;
+    @Autowired
+    private RedisRoundTrips redisRoundTrips;
+
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.add(0, new WeatherResponseHttpMessageConverter(weatherResponseJsonEncoder));
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new AsyncHandlerInterceptor() {
+            @Override
+            public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+                if (request.getDispatcherType() == DispatcherType.ERROR) {
+                    return true;
+                }
+                // an async dispatch carries on with the tally of the initial dispatch
+                RedisRoundTrips.Tally tally = (RedisRoundTrips.Tally) request.getAttribute(ROUND_TRIPS_ATTRIBUTE);
+                if (tally == null) {
+                    tally = new RedisRoundTrips.Tally();
+                    request.setAttribute(ROUND_TRIPS_ATTRIBUTE, tally);
+                }
+                redisRoundTrips.bind(tally);
+                return true;
+            }
+
+            @Override
+            public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+                redisRoundTrips.unbind();
+            }
+
+            @Override
+            public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+                redisRoundTrips.unbind();
+                if (request.getDispatcherType() == DispatcherType.ERROR || request.isAsyncStarted()) {
+                    return;
+                }
+                if (request.getAttribute(ROUND_TRIPS_ATTRIBUTE) instanceof RedisRoundTrips.Tally tally) {
+                    request.removeAttribute(ROUND_TRIPS_ATTRIBUTE);
+                    redisRoundTrips.record(tally);
+                }
+            }
+        });
+    }
+}
@@ -2,6 +2,7 @@ package vn.ttg.roadmap.weatherapiservice.controller;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.converter.HttpMessageNotReadableException;
@@ -10,6 +11,7 @@ import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.MissingServletRequestParameterException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.context.request.async.AsyncRequestNotUsableException;
 import org.springframework.web.method.annotation.MethodArgumentTypeMismatchException;
 
 import vn.ttg.roadmap.weatherapiservice.dto.ErrorResponse;
@@ -33,13 +35,19 @@ public class WeatherExceptionHandler {
     private static final Logger LOGGER = LoggerFactory.getLogger(WeatherExceptionHandler.class);
 
     /**
-     * Handle WeatherApiException - custom business logic exceptions
+     * Handle WeatherApiException - custom business logic exceptions. Calls over the weather API budget and
+     * calls rejected while the weather API is unavailable are expected under load, they are answered with
+     * 429 Too Many Requests or 503 Service Unavailable and logged without a stack trace
      */
     @ExceptionHandler(WeatherApiException.class)
     public ResponseEntity<ErrorResponse> handleWeatherApiException(WeatherApiException ex) {
-        LOGGER.error("Weather API exception: {} [{}]", ex.getMessage(), ex.getErrorCode(), ex);
-
         HttpStatus status = HttpStatus.valueOf(ex.getHttpStatusCode());
+        if (status == HttpStatus.TOO_MANY_REQUESTS || status == HttpStatus.SERVICE_UNAVAILABLE) {
+            LOGGER.warn("Weather API exception: {} [{}]", ex.getMessage(), ex.getErrorCode());
+        } else {
+            LOGGER.error("Weather API exception: {} [{}]", ex.getMessage(), ex.getErrorCode(), ex);
+        }
+
         ErrorResponse errorResponse = new ErrorResponse(
                 status.value(),
                 ex.getErrorCodeString(),
@@ -47,7 +55,11 @@ public class WeatherExceptionHandler {
                 LocalDateTime.now()
         );
 
-        return ResponseEntity.badRequest().body(errorResponse);
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(status);
+        if (ex.getRetryAfter() != null) {
+            response.header(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, (ex.getRetryAfter().toMillis() + 999) / 1000)));
+        }
+        return response.body(errorResponse);
     }
 
     /**
@@ -157,6 +169,14 @@ public class WeatherExceptionHandler {
         return ResponseEntity.badRequest().body(errorResponse);
     }
 
+    /**
+     * Handle clients gone while their response is streamed, such as closed subscriptions, nothing can be written to them
+     */
+    @ExceptionHandler(AsyncRequestNotUsableException.class)
+    public void handleAsyncRequestNotUsable(AsyncRequestNotUsableException ex) {
+        LOGGER.debug("Client disconnected: {}", ex.getMessage());
+    }
+
     /**
      * Handle all other exceptions
      */
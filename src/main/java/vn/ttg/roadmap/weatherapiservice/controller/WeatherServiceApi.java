@@ -1,23 +1,45 @@
 package vn.ttg.roadmap.weatherapiservice.controller;
 
 import java.time.LocalDate;
+import java.util.concurrent.CompletableFuture;
 
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.util.MultiValueMap;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 
+import jakarta.validation.Valid;
+import reactor.core.publisher.Flux;
+import vn.ttg.roadmap.weatherapiservice.dto.WeatherAggregateResponse;
+import vn.ttg.roadmap.weatherapiservice.dto.WeatherBatchItemResponse;
+import vn.ttg.roadmap.weatherapiservice.dto.WeatherBatchRequest;
 import vn.ttg.roadmap.weatherapiservice.dto.WeatherResponse;
 
 /**
  * Rest controller for weather API service
  *
+ * <p>Endpoints complete asynchronously, the request thread is released while weather data is fetched.
+ * The current, forecast and historical endpoints take an optional {@code fields} parameter restricting the
+ * days to some of their fields, for instance {@code fields=datetime,tempmax,tempmin}, applied to the cached
+ * weather.</p>
+ *
  * <p>This controller provides HTTP endpoints for weather API including:</p>
  * <ul>
  *     <li>GET /api/v1/weather/current - Get current weather</li>
+ *     <li>GET /api/v1/weather/current/subscribe - Subscribe to the current weather of locations</li>
  *     <li>GET /api/v1/weather/forecast - Get weather forecast</li>
  *     <li>GET /api/v1/weather/historical - Get weather historical</li>
+ *     <li>GET /api/v1/weather/historical/stream - Stream weather historical of long date ranges</li>
+ *     <li>GET /api/v1/weather/aggregate - Get weather statistics over a date range</li>
+ *     <li>POST /api/v1/weather/batch - Get weather of many locations at once</li>
  * </ul>
  *
  * @author ttg
@@ -26,36 +48,110 @@ import vn.ttg.roadmap.weatherapiservice.dto.WeatherResponse;
 public interface WeatherServiceApi {
 
     /**
-     * Get current date weather for a specific location
+     * Get current date weather for a specific location. The response carries an ETag, its Last-Modified
+     * time and a Cache-Control max-age up to the expiry of the cached weather, a request whose
+     * If-None-Match holds the ETag of the cached weather is answered with 304 Not Modified.
      * @param location Location name (city, country or coordinates)
+     * @param fields Comma separated fields of the days to include, all of them when omitted
+     * @param ifNoneMatch Entity tags of the weather held by the client, optional
      * @return WeatherResponse containing current date weather data
      */
     @GetMapping("/current")
-    ResponseEntity<WeatherResponse> getCurrentWeather(@RequestParam String location);
+    CompletableFuture<ResponseEntity<WeatherResponse>> getCurrentWeather(
+            @RequestParam String location,
+            @RequestParam(required = false) String fields,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch);
 
     /**
-     * Get weather forecast for a specific location and date range
+     * Subscribe to the current weather of some locations as server-sent events. The current weather of
+     * each location is sent on subscription, then every time its cached current weather changes, as an
+     * event named after the location as requested, whose id is the ETag of the weather. Idle
+     * subscriptions are sent a heartbeat comment. Locations are given as repeated {@code location} parameters,
+     * each taken as is so that a location such as {@code Hanoi,Vietnam} or coordinates may hold commas.
+     * @param parameters The request parameters, holding the location names (city, country or coordinates)
+     * @return the current weather of the locations as it changes
+     */
+    @GetMapping(value = "/current/subscribe", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    Flux<ServerSentEvent<WeatherResponse>> subscribeCurrentWeather(@RequestParam MultiValueMap<String, String> parameters);
+
+    /**
+     * Get weather forecast for a specific location and date range. The response carries an ETag, the
+     * Last-Modified time of its latest cached day and a Cache-Control max-age up to the expiry of its
+     * earliest cached day, a request whose If-None-Match holds the ETag is answered with 304 Not Modified.
      * @param location Location name (city, country or coordinates)
      * @param startDate Start date in yyyy-MM-dd format
      * @param endDate End date in yyyy-MM-dd format
+     * @param fields Comma separated fields of the days to include, all of them when omitted
+     * @param ifNoneMatch Entity tags of the weather held by the client, optional
      * @return WeatherResponse containing forecast data
      */
     @GetMapping("/forecast")
-    ResponseEntity<WeatherResponse> getForecast(
+    CompletableFuture<ResponseEntity<WeatherResponse>> getForecast(
             @RequestParam String location,
             @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate startDate,
-            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate endDate);
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate endDate,
+            @RequestParam(required = false) String fields,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch);
 
     /**
-     * Get historical weather data for a specific location and date range
+     * Get historical weather data for a specific location and date range. The response carries an ETag, the
+     * Last-Modified time of its latest cached day and a Cache-Control max-age up to the expiry of its
+     * earliest cached day, a request whose If-None-Match holds the ETag is answered with 304 Not Modified.
      * @param location Location name (city, country or coordinates)
      * @param startDate Start date in yyyy-MM-dd format
      * @param endDate End date in yyyy-MM-dd format
+     * @param fields Comma separated fields of the days to include, all of them when omitted
+     * @param ifNoneMatch Entity tags of the weather held by the client, optional
      * @return WeatherResponse containing historical weather data
      */
     @GetMapping("/historical")
-    ResponseEntity<WeatherResponse> getHistoricalWeather(
+    CompletableFuture<ResponseEntity<WeatherResponse>> getHistoricalWeather(
+            @RequestParam String location,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate startDate,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate endDate,
+            @RequestParam(required = false) String fields,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch);
+
+    /**
+     * Get historical weather data for a specific location and a date range longer than the one of
+     * {@link #getHistoricalWeather}. The range is split into windows fetched a few at a time ahead of the
+     * client, sharing their cached days with the other endpoints. Windows are streamed as newline delimited
+     * JSON in date order as soon as they and the ones before them are fetched, a window that fails carries
+     * its own error instead of failing the whole range. No more windows are fetched once the client is gone.
+     * @param location Location name (city, country or coordinates)
+     * @param startDate Start date in yyyy-MM-dd format
+     * @param endDate End date in yyyy-MM-dd format
+     * @return one WeatherBatchItemResponse per window, holding its dates and weather
+     */
+    @GetMapping(value = "/historical/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    Flux<WeatherBatchItemResponse> getHistoricalWeatherStream(
             @RequestParam String location,
             @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate startDate,
             @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate endDate);
+
+    /**
+     * Get statistics of the weather of a specific location over a date range: minimum, maximum and average
+     * of the daily maximum and minimum temperatures, number of days per conditions and the same temperature
+     * statistics per ISO week. Ranges ending before today are computed from historical weather, the others
+     * from the forecast.
+     * @param location Location name (city, country or coordinates)
+     * @param startDate Start date in yyyy-MM-dd format
+     * @param endDate End date in yyyy-MM-dd format
+     * @return WeatherAggregateResponse containing the statistics of the range
+     */
+    @GetMapping("/aggregate")
+    CompletableFuture<ResponseEntity<WeatherAggregateResponse>> getWeatherAggregate(
+            @RequestParam String location,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate startDate,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate endDate);
+
+    /**
+     * Get weather data for many locations at once, each with an optional date range.
+     * Results are streamed as newline delimited JSON in the order of the request items, an item
+     * that fails carries its own error instead of failing the whole batch.
+     * @param request the locations and optional date ranges
+     * @return one WeatherBatchItemResponse per request item
+     */
+    @PostMapping(value = "/batch", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    Flux<WeatherBatchItemResponse> getWeatherBatch(@Valid @RequestBody WeatherBatchRequest request);
 }
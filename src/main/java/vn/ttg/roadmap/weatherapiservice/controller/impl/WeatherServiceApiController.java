@@ -1,26 +1,64 @@
 package vn.ttg.roadmap.weatherapiservice.controller.impl;
 
+import java.time.Duration;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import jakarta.validation.Valid;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import vn.ttg.roadmap.weatherapiservice.cache.DailyWeatherCache;
+import vn.ttg.roadmap.weatherapiservice.cache.LocationAliasIndex;
+import vn.ttg.roadmap.weatherapiservice.cache.LocationHeavyHitters;
+import vn.ttg.roadmap.weatherapiservice.cache.RefreshAheadCacheManager;
+import vn.ttg.roadmap.weatherapiservice.cache.WeatherCacheKeys;
+import vn.ttg.roadmap.weatherapiservice.cache.WeatherResponseValidators;
+import vn.ttg.roadmap.weatherapiservice.cache.WeatherResponseValidators.Validator;
+import vn.ttg.roadmap.weatherapiservice.codec.WeatherFieldProjection;
+import vn.ttg.roadmap.weatherapiservice.codec.WeatherResponseJsonEncoder;
 import vn.ttg.roadmap.weatherapiservice.controller.WeatherServiceApi;
 import vn.ttg.roadmap.weatherapiservice.dto.CurrentWeatherRequest;
+import vn.ttg.roadmap.weatherapiservice.dto.ErrorResponse;
 import vn.ttg.roadmap.weatherapiservice.dto.HistoricalWeatherRequest;
+import vn.ttg.roadmap.weatherapiservice.dto.WeatherAggregateResponse;
+import vn.ttg.roadmap.weatherapiservice.dto.WeatherBatchItemRequest;
+import vn.ttg.roadmap.weatherapiservice.dto.WeatherBatchItemResponse;
+import vn.ttg.roadmap.weatherapiservice.dto.WeatherBatchRequest;
 import vn.ttg.roadmap.weatherapiservice.dto.WeatherForecastRequest;
 import vn.ttg.roadmap.weatherapiservice.dto.WeatherRequest;
 import vn.ttg.roadmap.weatherapiservice.dto.WeatherRequestValidationResult;
 import vn.ttg.roadmap.weatherapiservice.dto.WeatherResponse;
 import vn.ttg.roadmap.weatherapiservice.exception.WeatherApiException;
+import vn.ttg.roadmap.weatherapiservice.exception.WeatherErrorCode;
+import vn.ttg.roadmap.weatherapiservice.resilience.ChunkedFetchLimiter;
+import vn.ttg.roadmap.weatherapiservice.service.CurrentWeatherSubscriptionService;
+import vn.ttg.roadmap.weatherapiservice.service.WeatherAggregationService;
+import vn.ttg.roadmap.weatherapiservice.service.WeatherBatchService;
 import vn.ttg.roadmap.weatherapiservice.service.WeatherService;
+import vn.ttg.roadmap.weatherapiservice.store.HistoricalWeatherStore;
 import vn.ttg.roadmap.weatherapiservice.strategy.WeatherRequestValidationContext;
 
 /**
@@ -39,56 +77,410 @@ public class WeatherServiceApiController implements WeatherServiceApi {
             WeatherRequestValidationContext.Type.LOCATION, WeatherRequestValidationContext.Type.DATE_RANGE, WeatherRequestValidationContext.Type.FORECAST);
     private static final List<WeatherRequestValidationContext.Type> HISTORICAL_WEATHER_REQUEST_VALIDATION_STRATEGY = Arrays.asList(
             WeatherRequestValidationContext.Type.LOCATION, WeatherRequestValidationContext.Type.DATE_RANGE, WeatherRequestValidationContext.Type.HISTORICAL);
+    private static final List<WeatherRequestValidationContext.Type> CHUNKED_HISTORICAL_WEATHER_REQUEST_VALIDATION_STRATEGY = Arrays.asList(
+            WeatherRequestValidationContext.Type.LOCATION, WeatherRequestValidationContext.Type.CHUNKED_DATE_RANGE, WeatherRequestValidationContext.Type.HISTORICAL);
+
+    private static final List<WeatherRequestValidationContext.Type> DATE_RANGE_VALIDATION_STRATEGY = Arrays.asList(
+            WeatherRequestValidationContext.Type.DATE_RANGE);
+
+    private static final String CURRENT_WEATHER_CACHE = "weathers-current";
+    private static final String FORECAST_WEATHER_CACHE = "weathers-forecast";
+    private static final String HISTORICAL_WEATHER_CACHE = "weathers-historical";
 
     @Autowired
     private WeatherService weatherService;
     @Autowired
     private WeatherRequestValidationContext validationContext;
+    @Autowired
+    private WeatherBatchService weatherBatchService;
+    @Autowired
+    private WeatherAggregationService weatherAggregationService;
+    @Autowired
+    private CurrentWeatherSubscriptionService currentWeatherSubscriptionService;
+    @Autowired
+    private LocationAliasIndex locationAliasIndex;
+    @Autowired
+    private LocationHeavyHitters locationHeavyHitters;
+    @Autowired
+    private WeatherResponseJsonEncoder weatherResponseJsonEncoder;
+    @Autowired
+    private WeatherResponseValidators weatherResponseValidators;
+    @Autowired
+    private RefreshAheadCacheManager refreshAheadCacheManager;
+    @Autowired
+    private DailyWeatherCache dailyWeatherCache;
+    @Autowired
+    private HistoricalWeatherStore historicalWeatherStore;
+    @Autowired
+    private ChunkedFetchLimiter chunkedFetchLimiter;
+
+    @Value("${weather.batch.max-size}")
+    private int maxBatchSize;
+    @Value("${weather.batch.parallelism}")
+    private int batchParallelism;
+    @Value("${weather.historical.chunked.window-days}")
+    private int windowDays;
+    @Value("${weather.historical.chunked.parallelism}")
+    private int windowParallelism;
+    @Value("${weather.subscriptions.max-locations}")
+    private int maxSubscriptionLocations;
+    @Value("${weather.subscriptions.heartbeat}")
+    private Duration subscriptionHeartbeat;
 
     @Override
-    public ResponseEntity<WeatherResponse> getCurrentWeather(@RequestParam String location) {
+    public CompletableFuture<ResponseEntity<WeatherResponse>> getCurrentWeather(
+            @RequestParam String location,
+            @RequestParam(required = false) String fields,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         
         LOGGER.info("Received request for current weather: {}", location);
 
         CurrentWeatherRequest request = new CurrentWeatherRequest(location);
         validateWeatherRequest(CURRENT_WEATHER_REQUEST_VALIDATION_STRATEGY, request);
+        WeatherFieldProjection projection = WeatherFieldProjection.parse(fields);
+
+        String canonicalLocation = canonicalize(location);
+        String cacheKey = WeatherCacheKeys.current(canonicalLocation);
+        Validator validator = weatherResponseValidators.match(CURRENT_WEATHER_CACHE, cacheKey, projection.toString(), ifNoneMatch);
+        if (validator != null) {
+            LOGGER.info("Current weather not modified for: {}", location);
+            return CompletableFuture.completedFuture(notModified(validator));
+        }
+
+        return weatherService.getCurrentWeatherAsync(canonicalLocation).thenApply(response -> {
+            LOGGER.info("Successfully retrieved current weather for: {}", location);
+            return toCachedResponseEntity(CURRENT_WEATHER_CACHE, cacheKey, projection, response);
+        });
+    }
 
-        WeatherResponse response = weatherService.getCurrentWeather(location);
-        LOGGER.info("Successfully retrieved current weather for: {}", location);
-        return ResponseEntity.ok(response);
+    @Override
+    public Flux<ServerSentEvent<WeatherResponse>> subscribeCurrentWeather(@RequestParam MultiValueMap<String, String> parameters) {
+
+        // repeated parameters are read as they are, a List or array parameter would split a single one on commas
+        List<String> locations = parameters.getOrDefault("location", List.of());
+        if (locations.isEmpty()) {
+            throw new WeatherApiException(WeatherErrorCode.MISSING_REQUIRED_PARAMETER, "Required parameter 'location' is missing");
+        }
+        LOGGER.info("Received current weather subscription for {} locations", locations.size());
+        if (locations.size() > maxSubscriptionLocations) {
+            throw new WeatherApiException(WeatherErrorCode.SUBSCRIPTION_SIZE_EXCEEDED,
+                    String.format("Subscription cannot contain more than %d locations", maxSubscriptionLocations));
+        }
+
+        List<Flux<ServerSentEvent<WeatherResponse>>> events = new ArrayList<>();
+        for (String location : new LinkedHashSet<>(locations)) {
+            validateWeatherRequest(CURRENT_WEATHER_REQUEST_VALIDATION_STRATEGY, new CurrentWeatherRequest(location));
+            String canonicalLocation = canonicalize(location);
+            events.add(currentWeatherSubscriptionService.subscribe(canonicalLocation)
+                    .map(response -> ServerSentEvent.builder(response)
+                            .event(location)
+                            .id(weatherResponseJsonEncoder.encode(response).etag())
+                            .build()));
+        }
+        // writing to a closed connection fails, which cancels the subscriptions of the client
+        events.add(Flux.interval(subscriptionHeartbeat)
+                .map(tick -> ServerSentEvent.<WeatherResponse>builder().comment("heartbeat").build()));
+        return Flux.merge(events);
     }
 
     @Override
-    public ResponseEntity<WeatherResponse> getForecast(
+    public CompletableFuture<ResponseEntity<WeatherResponse>> getForecast(
             @RequestParam String location,
             @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate startDate,
-            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate endDate) {
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate endDate,
+            @RequestParam(required = false) String fields,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         
         LOGGER.info("Received request for forecast: {} from {} to {}", location, startDate, endDate);
         
         WeatherForecastRequest request = new WeatherForecastRequest(location, startDate, endDate);
         validateWeatherRequest(FORECAST_WEATHER_REQUEST_VALIDATION_STRATEGY, request);
+        WeatherFieldProjection projection = WeatherFieldProjection.parse(fields);
 
-        WeatherResponse response = weatherService.getForecast(location, startDate, endDate);
-        LOGGER.info("Successfully retrieved forecast for: {} from {} to {}", location, startDate, endDate);
-        return ResponseEntity.ok(response);
+        String canonicalLocation = canonicalize(location);
+        return weatherService.getForecastAsync(canonicalLocation, startDate, endDate).thenApply(response -> {
+            LOGGER.info("Successfully retrieved forecast for: {} from {} to {}", location, startDate, endDate);
+            return toResponseEntity(FORECAST_WEATHER_CACHE, WeatherCacheKeys.range(canonicalLocation, startDate, endDate),
+                    projection, response, ifNoneMatch);
+        });
     }
 
     @Override
-    public ResponseEntity<WeatherResponse> getHistoricalWeather(
+    public CompletableFuture<ResponseEntity<WeatherResponse>> getHistoricalWeather(
             @RequestParam String location,
             @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate startDate,
-            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate endDate) {
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate endDate,
+            @RequestParam(required = false) String fields,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         
         LOGGER.info("Received request for historical weather: {} from {} to {}", location, startDate, endDate);
         
         HistoricalWeatherRequest request = new HistoricalWeatherRequest(location, startDate, endDate);
         validateWeatherRequest(HISTORICAL_WEATHER_REQUEST_VALIDATION_STRATEGY, request);
+        WeatherFieldProjection projection = WeatherFieldProjection.parse(fields);
+
+        String canonicalLocation = canonicalize(location);
+        return weatherService.getHistoricalAsync(canonicalLocation, startDate, endDate).thenApply(response -> {
+            LOGGER.info("Successfully retrieved historical weather for: {} from {} to {}",
+                       location, startDate, endDate);
+            return toResponseEntity(HISTORICAL_WEATHER_CACHE, WeatherCacheKeys.range(canonicalLocation, startDate, endDate),
+                    projection, response, ifNoneMatch);
+        });
+    }
+
+    @Override
+    public Flux<WeatherBatchItemResponse> getHistoricalWeatherStream(
+            @RequestParam String location,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate startDate,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate endDate) {
+
+        LOGGER.info("Received request for historical weather stream: {} from {} to {}", location, startDate, endDate);
+
+        HistoricalWeatherRequest request = new HistoricalWeatherRequest(location, startDate, endDate);
+        validateWeatherRequest(CHUNKED_HISTORICAL_WEATHER_REQUEST_VALIDATION_STRATEGY, request);
+
+        String canonicalLocation = canonicalize(location);
+        List<WeatherBatchItemRequest> windows = toWindows(location, startDate, endDate);
+        // windows are fetched as the client reads them, at most windowParallelism ahead of it, and the
+        // cancellation of the stream stops the windows not fetched yet
+        return Flux.range(0, windows.size())
+                .flatMapSequential(i -> fetchWindow(i, canonicalLocation, windows.get(i)), windowParallelism);
+    }
+
+    @Override
+    public CompletableFuture<ResponseEntity<WeatherAggregateResponse>> getWeatherAggregate(
+            @RequestParam String location,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate startDate,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate endDate) {
+
+        LOGGER.info("Received request for weather aggregate: {} from {} to {}", location, startDate, endDate);
+
+        String canonicalLocation;
+        if (endDate.isBefore(LocalDate.now())) {
+            HistoricalWeatherRequest request = new HistoricalWeatherRequest(location, startDate, endDate);
+            validateWeatherRequest(CHUNKED_HISTORICAL_WEATHER_REQUEST_VALIDATION_STRATEGY, request);
+            canonicalLocation = canonicalize(location);
+            // ranges held by the store are aggregated from its columns, others are loaded in a single weather API call
+            if (historicalWeatherStore.getSeries(canonicalLocation, startDate, endDate) == null) {
+                validateWeatherRequest(DATE_RANGE_VALIDATION_STRATEGY, request);
+            }
+        } else {
+            validateWeatherRequest(FORECAST_WEATHER_REQUEST_VALIDATION_STRATEGY, new WeatherForecastRequest(location, startDate, endDate));
+            canonicalLocation = canonicalize(location);
+        }
+
+        return weatherAggregationService.getAggregate(canonicalLocation, startDate, endDate).thenApply(response -> {
+            LOGGER.info("Successfully aggregated weather for: {} from {} to {}", location, startDate, endDate);
+            return ResponseEntity.ok(response);
+        });
+    }
+
+    @Override
+    public Flux<WeatherBatchItemResponse> getWeatherBatch(@Valid @RequestBody WeatherBatchRequest batchRequest) {
+
+        List<WeatherBatchItemRequest> items = batchRequest.getItems();
+        LOGGER.info("Received batch request for {} locations", items.size());
+        if (items.size() > maxBatchSize) {
+            throw new WeatherApiException(WeatherErrorCode.BATCH_SIZE_EXCEEDED,
+                    String.format("Batch cannot contain more than %d locations", maxBatchSize));
+        }
+
+        // invalid items fail on their own, the valid ones are fetched together
+        List<Mono<WeatherResponse>> results = new ArrayList<>(items.size());
+        List<WeatherRequest> validRequests = new ArrayList<>();
+        List<Integer> validIndexes = new ArrayList<>();
+        for (int i = 0; i < items.size(); i++) {
+            try {
+                validRequests.add(toValidatedWeatherRequest(items.get(i)));
+                validIndexes.add(i);
+                results.add(null);
+            } catch (WeatherApiException e) {
+                results.add(Mono.error(e));
+            }
+        }
+        List<Mono<WeatherResponse>> fetched = weatherBatchService.getWeather(validRequests);
+        for (int i = 0; i < validIndexes.size(); i++) {
+            results.set(validIndexes.get(i), fetched.get(i));
+        }
+
+        // items are fetched at most batchParallelism at a time, and the cancellation of the stream stops
+        // the items not fetched yet
+        return Flux.range(0, items.size())
+                .flatMapSequential(i -> results.get(i)
+                        .map(response -> toBatchItemResponse(i, items.get(i), response, null))
+                        .onErrorResume(e -> Mono.just(toBatchItemResponse(i, items.get(i), null, e)))
+                        .defaultIfEmpty(toBatchItemResponse(i, items.get(i), null, null)), batchParallelism);
+    }
+
+    /**
+     * Turns a batch item into the weather request it stands for: current weather without dates,
+     * historical weather for ranges ending before today and forecast otherwise. The location of the
+     * request is canonicalized once validated. A null item, such as {@code null} in the items of the
+     * request body, fails on its own.
+     */
+    private WeatherRequest toValidatedWeatherRequest(WeatherBatchItemRequest item) {
+        if (item == null) {
+            throw new WeatherApiException(WeatherErrorCode.MISSING_REQUIRED_PARAMETER, "Batch item is missing");
+        }
+        if (item.getStartDate() == null && item.getEndDate() == null) {
+            CurrentWeatherRequest request = new CurrentWeatherRequest(item.getLocation());
+            validateWeatherRequest(CURRENT_WEATHER_REQUEST_VALIDATION_STRATEGY, request);
+            request.setLocation(canonicalize(request.getLocation()));
+            return request;
+        }
+        if (item.getStartDate() == null || item.getEndDate() == null) {
+            throw new WeatherApiException(WeatherErrorCode.MISSING_REQUIRED_PARAMETER, "Both startDate and endDate are required for a date range");
+        }
+        if (item.getEndDate().isBefore(LocalDate.now())) {
+            HistoricalWeatherRequest request = new HistoricalWeatherRequest(item.getLocation(), item.getStartDate(), item.getEndDate());
+            validateWeatherRequest(HISTORICAL_WEATHER_REQUEST_VALIDATION_STRATEGY, request);
+            request.setLocation(canonicalize(request.getLocation()));
+            return request;
+        }
+        WeatherForecastRequest request = new WeatherForecastRequest(item.getLocation(), item.getStartDate(), item.getEndDate());
+        validateWeatherRequest(FORECAST_WEATHER_REQUEST_VALIDATION_STRATEGY, request);
+        request.setLocation(canonicalize(request.getLocation()));
+        return request;
+    }
+
+    /**
+     * Fetches a window of a streamed range once the ChunkedFetchLimiter admits it, as a batch item.
+     */
+    private Mono<WeatherBatchItemResponse> fetchWindow(int index, String canonicalLocation, WeatherBatchItemRequest window) {
+        return chunkedFetchLimiter.limit(() -> Mono.fromFuture(
+                        () -> weatherService.getHistoricalAsync(canonicalLocation, window.getStartDate(), window.getEndDate())))
+                .map(response -> toBatchItemResponse(index, window, response, null))
+                .onErrorResume(e -> Mono.just(toBatchItemResponse(index, window, null, e)))
+                .defaultIfEmpty(toBatchItemResponse(index, window, null, null));
+    }
+
+    /**
+     * Splits a date range into windows of at most windowDays days. Windows are aligned on multiples of
+     * windowDays days since the epoch rather than on the start of the range, so that overlapping ranges are
+     * split into the same windows and their concurrent fetches of a window are coalesced.
+     */
+    private List<WeatherBatchItemRequest> toWindows(String location, LocalDate startDate, LocalDate endDate) {
+        List<WeatherBatchItemRequest> windows = new ArrayList<>();
+        LocalDate from = startDate;
+        while (!from.isAfter(endDate)) {
+            long windowEnd = Math.floorDiv(from.toEpochDay(), windowDays) * windowDays + windowDays - 1;
+            LocalDate to = LocalDate.ofEpochDay(Math.min(windowEnd, endDate.toEpochDay()));
+            windows.add(new WeatherBatchItemRequest(location, from, to));
+            from = to.plusDays(1);
+        }
+        return windows;
+    }
+
+    private WeatherBatchItemResponse toBatchItemResponse(int index, WeatherBatchItemRequest item, WeatherResponse response, Throwable throwable) {
+        ErrorResponse error = null;
+        if (throwable != null) {
+            Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
+            if (cause instanceof WeatherApiException e) {
+                error = new ErrorResponse(e.getHttpStatusCode(), e.getErrorCodeString(), e.getMessage(), LocalDateTime.now());
+            } else {
+                LOGGER.error("Unexpected error in batch item {} for location: {}", index, item != null ? item.getLocation() : null, cause);
+                error = new ErrorResponse(HttpStatus.INTERNAL_SERVER_ERROR.value(), "An unexpected error occurred. Please try again later.", LocalDateTime.now());
+            }
+        }
+        if (item == null) {
+            return new WeatherBatchItemResponse(index, null, null, null, response, error);
+        }
+        return new WeatherBatchItemResponse(index, item.getLocation(), item.getStartDate(), item.getEndDate(), response, error);
+    }
+
+    /**
+     * Restricts a date range to the requested fields and tags it with the entity tag of its encoded body,
+     * which is encoded once per version of the cached days of the range and projection and written as is
+     * by the WeatherResponseHttpMessageConverter. The validators of the range are taken from the write times
+     * of its days: its Last-Modified time is that of its latest day and its Cache-Control max-age runs up to
+     * the expiry of its earliest day. A request whose If-None-Match holds the entity tag of a version encoded
+     * before is answered not modified without projecting or encoding the range. Ranges not assembled from
+     * fresh cache entries, such as stale days served while the weather API fails, are to be revalidated on
+     * every use.
+     */
+    private ResponseEntity<WeatherResponse> toResponseEntity(String cacheName, String rangeKey, WeatherFieldProjection projection,
+                                                             WeatherResponse response, String ifNoneMatch) {
+        if (response == null) {
+            return ResponseEntity.ok(null);
+        }
+        String entry = cacheName + "::" + rangeKey;
+        long[] writtenAt = dailyWeatherCache.getWrittenAt(response);
+        String encodedEtag = ifNoneMatch != null ? weatherResponseJsonEncoder.etagOf(entry, writtenAt, projection) : null;
+        if (encodedEtag != null) {
+            Validator validator = weatherResponseValidators.validate(cacheName, writtenAt, encodedEtag);
+            if (weatherResponseValidators.matches(validator, ifNoneMatch)) {
+                return notModified(validator);
+            }
+        }
+
+        WeatherResponse body = weatherResponseJsonEncoder.project(response, projection, entry, writtenAt);
+        String etag = weatherResponseJsonEncoder.encode(body).etag();
+        Validator validator = weatherResponseValidators.validate(cacheName, writtenAt, etag);
+        if (validator == null) {
+            return ResponseEntity.ok()
+                    .eTag(etag)
+                    .cacheControl(CacheControl.noCache())
+                    .body(body);
+        }
+        if (weatherResponseValidators.matches(validator, ifNoneMatch)) {
+            return notModified(validator);
+        }
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .lastModified(validator.lastModified())
+                .cacheControl(maxAge(validator))
+                .body(body);
+    }
+
+    /**
+     * Adds the validators of the cache entry the response was served from: its Last-Modified time and a
+     * Cache-Control max-age up to its expiry. Responses not backed by a fresh cache entry, such as stale
+     * values served while the weather API fails, are to be revalidated on every use. The body is encoded
+     * once per write of the entry and projection, whether the response was served from the near cache or
+     * decoded again from Redis.
+     */
+    private ResponseEntity<WeatherResponse> toCachedResponseEntity(String cacheName, String cacheKey, WeatherFieldProjection projection,
+                                                                   WeatherResponse response) {
+        if (response == null) {
+            return ResponseEntity.ok(null);
+        }
+        Long writtenAt = refreshAheadCacheManager.getWrittenAt(cacheName, response);
+        WeatherResponse body = weatherResponseJsonEncoder.project(response, projection, cacheName + "::" + cacheKey,
+                writtenAt != null ? new long[] {writtenAt} : null);
+        String etag = weatherResponseJsonEncoder.encode(body).etag();
+        Validator validator = weatherResponseValidators.validate(cacheName, cacheKey, projection.toString(), response, etag);
+        if (validator == null) {
+            return ResponseEntity.ok()
+                    .eTag(etag)
+                    .cacheControl(CacheControl.noCache())
+                    .body(body);
+        }
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .lastModified(validator.lastModified())
+                .cacheControl(maxAge(validator))
+                .body(body);
+    }
+
+    private static ResponseEntity<WeatherResponse> notModified(Validator validator) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                .eTag(validator.etag())
+                .lastModified(validator.lastModified())
+                .cacheControl(maxAge(validator))
+                .build();
+    }
+
+    private static CacheControl maxAge(Validator validator) {
+        return CacheControl.maxAge(validator.maxAgeSeconds(System.currentTimeMillis()), TimeUnit.SECONDS).cachePublic();
+    }
 
-        WeatherResponse response = weatherService.getHistorical(location, startDate, endDate);
-        LOGGER.info("Successfully retrieved historical weather for: {} from {} to {}",
-                   location, startDate, endDate);
-        return ResponseEntity.ok(response);
+    /**
+     * Canonicalizes a validated location and counts it towards the most requested locations.
+     */
+    private String canonicalize(String location) {
+        String canonicalLocation = locationAliasIndex.canonicalize(location);
+        locationHeavyHitters.record(canonicalLocation);
+        return canonicalLocation;
     }
 
     private void validateWeatherRequest(List<WeatherRequestValidationContext.Type> stategies, WeatherRequest request) {
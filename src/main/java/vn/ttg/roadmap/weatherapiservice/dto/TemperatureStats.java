@@ -0,0 +1,21 @@
+package vn.ttg.roadmap.weatherapiservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * DTO representing the minimum, maximum and average of a temperature over some days
+ *
+ * @author ttg
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class TemperatureStats {
+    private double min;
+    private double max;
+    private double avg;
+}
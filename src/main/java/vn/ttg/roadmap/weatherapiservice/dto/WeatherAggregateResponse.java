@@ -0,0 +1,50 @@
+package vn.ttg.roadmap.weatherapiservice.dto;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Response DTO for the statistics of the weather of a location over a date range
+ *
+ * @author ttg
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class WeatherAggregateResponse {
+
+    private String location;
+
+    private LocalDate startDate;
+
+    private LocalDate endDate;
+
+    /**
+     * Number of days of the range the weather is known of.
+     */
+    private int days;
+
+    private TemperatureStats tempmax;
+
+    private TemperatureStats tempmin;
+
+    /**
+     * Number of days per conditions, the most frequent conditions first.
+     */
+    private Map<String, Integer> conditions;
+
+    /**
+     * Statistics per ISO week, in date order.
+     */
+    private List<WeeklyWeatherAggregate> weeks;
+}
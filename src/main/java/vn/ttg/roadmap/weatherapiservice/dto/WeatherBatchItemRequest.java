@@ -0,0 +1,29 @@
+package vn.ttg.roadmap.weatherapiservice.dto;
+
+import java.time.LocalDate;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * A single location of a batch weather request.
+ *
+ * <p>Without dates the current weather is returned, with both dates the forecast or the
+ * historical weather of the range, depending on whether the range ends in the past.</p>
+ *
+ * @author ttg
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class WeatherBatchItemRequest {
+
+    private String location;
+
+    private LocalDate startDate;
+
+    private LocalDate endDate;
+}
@@ -0,0 +1,38 @@
+package vn.ttg.roadmap.weatherapiservice.dto;
+
+import java.time.LocalDate;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Result of a single location of a batch weather request, holding either the weather or the error.
+ *
+ * @author ttg
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class WeatherBatchItemResponse {
+
+    /**
+     * Position of the location in the batch request.
+     */
+    private int index;
+
+    private String location;
+
+    private LocalDate startDate;
+
+    private LocalDate endDate;
+
+    private WeatherResponse weather;
+
+    private ErrorResponse error;
+}
@@ -0,0 +1,24 @@
+package vn.ttg.roadmap.weatherapiservice.dto;
+
+import java.util.List;
+
+import jakarta.validation.constraints.NotEmpty;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Request DTO for the batch weather endpoint
+ *
+ * @author ttg
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class WeatherBatchRequest {
+
+    @NotEmpty(message = "Items cannot be null or empty")
+    private List<WeatherBatchItemRequest> items;
+}
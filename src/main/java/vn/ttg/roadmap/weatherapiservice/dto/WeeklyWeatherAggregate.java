@@ -0,0 +1,34 @@
+package vn.ttg.roadmap.weatherapiservice.dto;
+
+import java.time.LocalDate;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * DTO representing the temperature statistics of the days of a week within an aggregated date range
+ *
+ * @author ttg
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class WeeklyWeatherAggregate {
+
+    /**
+     * Monday of the week, possibly before the start of the aggregated range.
+     */
+    private LocalDate weekStart;
+
+    /**
+     * Number of days of the week within the aggregated range.
+     */
+    private int days;
+
+    private TemperatureStats tempmax;
+
+    private TemperatureStats tempmin;
+}
@@ -1,5 +1,7 @@
 package vn.ttg.roadmap.weatherapiservice.exception;
 
+import java.time.Duration;
+
 import org.springframework.http.HttpStatus;
 
 import lombok.Getter;
@@ -13,20 +15,33 @@ import lombok.Getter;
 public class WeatherApiException extends RuntimeException {
 
     private final WeatherErrorCode errorCode;
+    /**
+     * How long the client should wait before retrying, null when unknown.
+     */
+    private final Duration retryAfter;
 
     public WeatherApiException(WeatherErrorCode errorCode) {
         super(errorCode.getMessage());
         this.errorCode = errorCode;
+        this.retryAfter = null;
     }
 
     public WeatherApiException(WeatherErrorCode errorCode, String message) {
         super(message);
         this.errorCode = errorCode;
+        this.retryAfter = null;
+    }
+
+    public WeatherApiException(WeatherErrorCode errorCode, String message, Duration retryAfter) {
+        super(message);
+        this.errorCode = errorCode;
+        this.retryAfter = retryAfter;
     }
 
     public WeatherApiException(WeatherErrorCode errorCode, String message, Throwable cause) {
         super(message, cause);
         this.errorCode = errorCode;
+        this.retryAfter = null;
     }
 
     public String getErrorCodeString() {
@@ -34,6 +49,14 @@ public class WeatherApiException extends RuntimeException {
     }
 
     public int getHttpStatusCode() {
+        // calls over the budget of the weather API key succeed once it is replenished
+        if (errorCode == WeatherErrorCode.WEATHER_API_QUOTA_EXCEEDED) {
+            return HttpStatus.TOO_MANY_REQUESTS.value();
+        }
+        // the weather API is failing or calls to it are suspended, the request may succeed later
+        if (errorCode == WeatherErrorCode.WEATHER_API_UNAVAILABLE) {
+            return HttpStatus.SERVICE_UNAVAILABLE.value();
+        }
         return HttpStatus.BAD_REQUEST.value();
     }
 }
@@ -19,10 +19,14 @@ public enum WeatherErrorCode {
     START_DATE_TOO_FAR_FUTURE("WEATHER_009", "Start date cannot be more than 15 days in the future"),
     HISTORICAL_DATE_FUTURE("WEATHER_010", "Historical data cannot include future dates"),
     MAX_DAYS_EXCEEDED("WEATHER_011", "Maximum days cannot be more than 15 days"),
+    BATCH_SIZE_EXCEEDED("WEATHER_012", "Batch contains too many locations"),
+    INVALID_FIELDS("WEATHER_013", "Unknown field requested"),
+    SUBSCRIPTION_SIZE_EXCEEDED("WEATHER_014", "Subscription contains too many locations"),
     
     // Server Errors (5xx)
     WEATHER_API_UNAVAILABLE("WEATHER_501", "Weather API service is currently unavailable"),
     WEATHER_API_SERVER_ERROR("WEATHER_502", "Weather API server error. Please try again later"),
+    WEATHER_API_QUOTA_EXCEEDED("WEATHER_503", "Weather API request budget exhausted. Please try again later"),
 
     // Generic Errors
     UNEXPECTED_ERROR("WEATHER_999", "An unexpected error occurred. Please try again later");
@@ -30,6 +34,16 @@ public enum WeatherErrorCode {
     private final String code;
     private final String message;
     
+    /**
+     * Tells whether the error comes from the weather API being unavailable, failing or over budget
+     * rather than from the request, in which case cached values may be served stale instead.
+     *
+     * @return true for the weather API errors
+     */
+    public boolean isWeatherApiFailure() {
+        return this == WEATHER_API_UNAVAILABLE || this == WEATHER_API_SERVER_ERROR || this == WEATHER_API_QUOTA_EXCEEDED;
+    }
+
     /**
      * Constructor for error code enum.
      * 
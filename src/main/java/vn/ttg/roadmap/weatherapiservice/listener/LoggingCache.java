@@ -1,22 +1,93 @@
 package vn.ttg.roadmap.weatherapiservice.listener;
 
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.cache.Cache;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import vn.ttg.roadmap.weatherapiservice.cache.MultiGetCache;
+
 /**
- * A Cache implementation that logs cache operations for monitoring and debugging purposes.
- * This class wraps an existing Cache instance and logs details of each operation including
- * the operation type, key, hit/miss status, and time taken.
+ * A Cache implementation that records cache operations for monitoring and debugging purposes.
+ * This class wraps an existing Cache instance and publishes the following meters, tagged with the cache name:
+ * <ul>
+ *     <li>{@code cache.operation} timer tagged with {@code operation} (get, getAll, retrieve, load, put,
+ *     putIfAbsent, evict, clear) and {@code result} (hit, miss, success, error), with percentiles</li>
+ *     <li>{@code cache.keys} counter tagged with {@code result} (hit, miss), counting every key looked up
+ *     so that the hit ratio also covers multi-key lookups</li>
+ * </ul>
+ * The meters are registered when the cache is created, one timer per operation and result it can record,
+ * so that recording an operation is an {@link EnumMap} lookup rather than building a meter name.
+ * Each operation is also logged at DEBUG level.
  *
  * @author ttg
  */
-public class LoggingCache implements Cache {
+public class LoggingCache implements Cache, MultiGetCache {
     private static final Logger LOGGER = LoggerFactory.getLogger(LoggingCache.class);
+
+    /**
+     * The operations timed, with the results each of them records.
+     */
+    private enum Operation {
+        GET("get", Result.HIT, Result.MISS, Result.ERROR),
+        GET_ALL("getAll", Result.SUCCESS, Result.ERROR),
+        RETRIEVE("retrieve", Result.HIT, Result.MISS, Result.ERROR),
+        LOAD("load", Result.SUCCESS, Result.ERROR),
+        PUT("put", Result.SUCCESS, Result.ERROR),
+        PUT_ALL("putAll", Result.SUCCESS, Result.ERROR),
+        PUT_IF_ABSENT("putIfAbsent", Result.SUCCESS, Result.ERROR),
+        EVICT("evict", Result.SUCCESS),
+        CLEAR("clear", Result.SUCCESS);
+
+        private final String tag;
+        private final Result[] results;
+
+        Operation(String tag, Result... results) {
+            this.tag = tag;
+            this.results = results;
+        }
+
+        @Override
+        public String toString() {
+            return tag;
+        }
+    }
+
+    private enum Result {
+        HIT, MISS, SUCCESS, ERROR;
+
+        private final String tag = name().toLowerCase();
+    }
+
     private final Cache delegate;
+    private final MeterRegistry meterRegistry;
+    private final Counter keyHits;
+    private final Counter keyMisses;
+    private final Map<Operation, Map<Result, Timer>> timers = new EnumMap<>(Operation.class);
 
-    public LoggingCache(Cache delegate) {
+    public LoggingCache(Cache delegate, MeterRegistry meterRegistry) {
         this.delegate = delegate;
+        this.meterRegistry = meterRegistry;
+        this.keyHits = keyCounter(Result.HIT);
+        this.keyMisses = keyCounter(Result.MISS);
+        for (Operation operation : Operation.values()) {
+            Map<Result, Timer> results = new EnumMap<>(Result.class);
+            for (Result result : operation.results) {
+                results.put(result, timer(operation, result));
+            }
+            timers.put(operation, results);
+        }
     }
 
     @Override
@@ -32,64 +103,176 @@ public class LoggingCache implements Cache {
     @Override
     public ValueWrapper get(Object key) {
         long start = System.nanoTime();
-        ValueWrapper value = delegate.get(key);
-        long ms = (System.nanoTime() - start) / 1_000_000;
-        LOGGER.info("cache.get name={}, key={}, hit={}, timeMs={}", getName(), key, value != null, ms);
-        return value;
+        try {
+            ValueWrapper value = delegate.get(key);
+            recordLookup(Operation.GET, key, value != null, start);
+            return value;
+        } catch (RuntimeException e) {
+            recordError(Operation.GET, key, e, start);
+            throw e;
+        }
     }
 
     @Override
     public <T> T get(Object key, Class<T> type) {
         long start = System.nanoTime();
-        T value = delegate.get(key, type);
-        long ms = (System.nanoTime() - start) / 1_000_000;
-        LOGGER.info("cache.get(name={}, key={}, type={}, hit={}, timeMs={})", getName(), key, type != null ? type.getSimpleName() : null, value != null, ms);
-        return value;
+        try {
+            T value = delegate.get(key, type);
+            recordLookup(Operation.GET, key, value != null, start);
+            return value;
+        } catch (RuntimeException e) {
+            recordError(Operation.GET, key, e, start);
+            throw e;
+        }
     }
 
     @Override
-    public <T> T get(Object key, java.util.concurrent.Callable<T> valueLoader) {
+    public <T> T get(Object key, Callable<T> valueLoader) {
         long start = System.nanoTime();
         try {
             T value = delegate.get(key, valueLoader);
-            long ms = (System.nanoTime() - start) / 1_000_000;
-            LOGGER.info("cache.get(name={}, key={}, loaded={}, timeMs={})", getName(), key, value != null, ms);
+            record(Operation.LOAD, Result.SUCCESS, start);
+            LOGGER.debug("cache.get(name={}, key={}, loaded={}, timeMs={})", getName(), key, value != null, millisSince(start));
             return value;
         } catch (RuntimeException e) {
-            long ms = (System.nanoTime() - start) / 1_000_000;
-            LOGGER.warn("cache.get(name={}, key={}, error={}, timeMs={})", getName(), key, e.getMessage(), ms);
+            recordError(Operation.LOAD, key, e, start);
+            throw e;
+        }
+    }
+
+    @Override
+    public List<ValueWrapper> getAll(List<?> keys) {
+        long start = System.nanoTime();
+        try {
+            List<ValueWrapper> values = MultiGetCache.getAll(delegate, keys);
+            long hits = values.stream().filter(Objects::nonNull).count();
+            keyHits.increment(hits);
+            keyMisses.increment(keys.size() - hits);
+            record(Operation.GET_ALL, Result.SUCCESS, start);
+            LOGGER.debug("cache.getAll name={}, keys={}, hits={}, timeMs={}", getName(), keys.size(), hits, millisSince(start));
+            return values;
+        } catch (RuntimeException e) {
+            recordError(Operation.GET_ALL, keys.size() + " keys", e, start);
             throw e;
         }
     }
 
+    @Override
+    public CompletableFuture<?> retrieve(Object key) {
+        long start = System.nanoTime();
+        CompletableFuture<?> result;
+        try {
+            result = delegate.retrieve(key);
+        } catch (RuntimeException e) {
+            recordError(Operation.RETRIEVE, key, e, start);
+            throw e;
+        }
+        if (result == null) {
+            recordLookup(Operation.RETRIEVE, key, false, start);
+            return null;
+        }
+        return result.whenComplete((value, e) -> {
+            if (e != null) {
+                recordError(Operation.RETRIEVE, key, e, start);
+            } else {
+                recordLookup(Operation.RETRIEVE, key, value != null, start);
+            }
+        });
+    }
+
     @Override
     public void put(Object key, Object value) {
         long start = System.nanoTime();
-        delegate.put(key, value);
-        long ms = (System.nanoTime() - start) / 1_000_000;
-        LOGGER.info("cache.put name={}, key={}, valueType={}, timeMs={}", getName(), key, value != null ? value.getClass().getSimpleName() : null, ms);
+        try {
+            delegate.put(key, value);
+            record(Operation.PUT, Result.SUCCESS, start);
+            LOGGER.debug("cache.put name={}, key={}, valueType={}, timeMs={}", getName(), key, value != null ? value.getClass().getSimpleName() : null, millisSince(start));
+        } catch (RuntimeException e) {
+            recordError(Operation.PUT, key, e, start);
+            throw e;
+        }
+    }
+
+    @Override
+    public void putAll(Map<?, ?> entries) {
+        long start = System.nanoTime();
+        try {
+            MultiGetCache.putAll(delegate, entries);
+            record(Operation.PUT_ALL, Result.SUCCESS, start);
+            LOGGER.debug("cache.putAll name={}, keys={}, timeMs={}", getName(), entries.size(), millisSince(start));
+        } catch (RuntimeException e) {
+            recordError(Operation.PUT_ALL, entries.size() + " keys", e, start);
+            throw e;
+        }
     }
 
     @Override
     public ValueWrapper putIfAbsent(Object key, Object value) {
         long start = System.nanoTime();
-        ValueWrapper vw = delegate.putIfAbsent(key, value);
-        long ms = (System.nanoTime() - start) / 1_000_000;
-        LOGGER.info("cache.putIfAbsent name={}, key={}, inserted={}, timeMs={}", getName(), key, vw == null, ms);
-        return vw;
+        try {
+            ValueWrapper vw = delegate.putIfAbsent(key, value);
+            record(Operation.PUT_IF_ABSENT, Result.SUCCESS, start);
+            LOGGER.debug("cache.putIfAbsent name={}, key={}, inserted={}, timeMs={}", getName(), key, vw == null, millisSince(start));
+            return vw;
+        } catch (RuntimeException e) {
+            recordError(Operation.PUT_IF_ABSENT, key, e, start);
+            throw e;
+        }
     }
 
     @Override
     public void evict(Object key) {
+        long start = System.nanoTime();
         delegate.evict(key);
-        LOGGER.info("cache.evict name={}, key={}", getName(), key);
+        record(Operation.EVICT, Result.SUCCESS, start);
+        LOGGER.debug("cache.evict name={}, key={}", getName(), key);
     }
 
     @Override
     public void clear() {
+        long start = System.nanoTime();
         delegate.clear();
-        LOGGER.info("cache.clear name={}", getName());
+        record(Operation.CLEAR, Result.SUCCESS, start);
+        LOGGER.debug("cache.clear name={}", getName());
+    }
+
+    private void recordLookup(Operation operation, Object key, boolean hit, long start) {
+        (hit ? keyHits : keyMisses).increment();
+        record(operation, hit ? Result.HIT : Result.MISS, start);
+        LOGGER.debug("cache.{} name={}, key={}, hit={}, timeMs={}", operation, getName(), key, hit, millisSince(start));
     }
-}
 
+    private void recordError(Operation operation, Object key, Throwable e, long start) {
+        record(operation, Result.ERROR, start);
+        LOGGER.warn("cache.{} name={}, key={}, error={}, timeMs={}", operation, getName(), key, e.getMessage(), millisSince(start));
+    }
 
+    private void record(Operation operation, Result result, long start) {
+        timers.get(operation).get(result).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    private Timer timer(Operation operation, Result result) {
+        return Timer.builder("cache.operation")
+                .description("Latency of the operations of the weather caches")
+                .tag("cache", getName())
+                .tag("operation", operation.tag)
+                .tag("result", result.tag)
+                .publishPercentiles(0.5, 0.99, 0.999)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofNanos(100_000))
+                .maximumExpectedValue(Duration.ofSeconds(10))
+                .register(meterRegistry);
+    }
+
+    private Counter keyCounter(Result result) {
+        return Counter.builder("cache.keys")
+                .description("Number of keys looked up in the weather caches")
+                .tag("cache", getName())
+                .tag("result", result.tag)
+                .register(meterRegistry);
+    }
+
+    private static double millisSince(long start) {
+        return (System.nanoTime() - start) / 1_000_000.0;
+    }
+}
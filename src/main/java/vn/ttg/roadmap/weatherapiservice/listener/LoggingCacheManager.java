@@ -2,33 +2,45 @@ package vn.ttg.roadmap.weatherapiservice.listener;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.springframework.cache.Cache;
 import org.springframework.cache.CacheManager;
 
+import io.micrometer.core.instrument.MeterRegistry;
+
 /**
- * A CacheManager that wraps another CacheManager and adds logging functionality.
+ * A CacheManager that wraps another CacheManager and adds logging and metrics functionality.
  *
  * @author ttg
  */
 public class LoggingCacheManager implements CacheManager {
 
     private final CacheManager delegate;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, LoggingCache> caches = new ConcurrentHashMap<>();
 
-    public LoggingCacheManager(CacheManager delegate) {
+    public LoggingCacheManager(CacheManager delegate, MeterRegistry meterRegistry) {
         this.delegate = delegate;
+        this.meterRegistry = meterRegistry;
     }
 
     /**
-     * Retrieves a cache by name and wraps it with logging functionality.
+     * Retrieves a cache by name and wraps it with logging and metrics functionality.
+     * The wrapper is created once per cache name so that its meters are registered only once.
      *
      * @param name the name of the cache
      * @return the wrapped cache, or null if no cache with the given name exists
      */
     @Override
     public Cache getCache(String name) {
-        Cache cache = delegate.getCache(name);
-        return cache == null ? null : new LoggingCache(cache);
+        LoggingCache cache = caches.get(name);
+        if (cache != null) {
+            return cache;
+        }
+        Cache target = delegate.getCache(name);
+        return target == null ? null : caches.computeIfAbsent(name, key -> new LoggingCache(target, meterRegistry));
     }
 
     /**
@@ -41,5 +53,3 @@ public class LoggingCacheManager implements CacheManager {
         return new ArrayList<>(delegate.getCacheNames());
     }
 }
-
-
@@ -0,0 +1,145 @@
+package vn.ttg.roadmap.weatherapiservice.resilience;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Mono;
+
+/**
+ * Bounds the windows of streamed date ranges fetched at a time over all the streams, so that a few long
+ * streams cannot take over the weather API budget and connections of the other requests.
+ *
+ * <p>At most {@code weather.historical.chunked.max-concurrent-windows} fetches run at a time, further ones
+ * wait without holding a thread and start in arrival order as running ones complete. A fetch cancelled
+ * while waiting never starts, a running one cancelled frees its slot at once. The fetches running and
+ * waiting are published as the {@code weather.historical.chunked.fetches} gauge tagged with {@code state}.</p>
+ *
+ * <p><strong>Thread Safety:</strong> This class is thread-safe and can be used concurrently by multiple threads.</p>
+ *
+ * @author ttg
+ */
+@Component
+public class ChunkedFetchLimiter {
+
+    /**
+     * Starts handed over by fetches completing on the current thread while it runs a start, run one after
+     * the other rather than nested, so that fetches completing at once, such as cached windows, do not
+     * exhaust the stack.
+     */
+    private static final ThreadLocal<Queue<Runnable>> STARTING = new ThreadLocal<>();
+
+    private final int maxConcurrentFetches;
+    /**
+     * Starts of the waiting fetches, guarded by this.
+     */
+    private final Queue<Runnable> waiting = new ArrayDeque<>();
+    /**
+     * Number of fetches holding a slot, guarded by this.
+     */
+    private int running;
+
+    public ChunkedFetchLimiter(MeterRegistry meterRegistry,
+                               @Value("${weather.historical.chunked.max-concurrent-windows}") int maxConcurrentFetches) {
+        this.maxConcurrentFetches = maxConcurrentFetches;
+        Gauge.builder("weather.historical.chunked.fetches", this, limiter -> limiter.running())
+                .description("Window fetches of streamed date ranges")
+                .tag("state", "running")
+                .register(meterRegistry);
+        Gauge.builder("weather.historical.chunked.fetches", this, limiter -> limiter.waiting())
+                .description("Window fetches of streamed date ranges")
+                .tag("state", "waiting")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Returns a fetch started once a slot is free, on subscription.
+     *
+     * @param fetch creates the fetch once it holds a slot
+     * @return the result of the fetch
+     */
+    public <T> Mono<T> limit(Supplier<Mono<T>> fetch) {
+        return Mono.create(sink -> {
+            AtomicBoolean cancelled = new AtomicBoolean();
+            Disposable.Swap subscription = Disposables.swap();
+            Runnable start = () -> {
+                if (cancelled.get()) {
+                    release();
+                    return;
+                }
+                // a cancellation racing with the start disposes the subscription as soon as it is set
+                subscription.update(Mono.defer(fetch)
+                        .doFinally(signal -> release())
+                        .subscribe(sink::success, sink::error, sink::success));
+            };
+            sink.onCancel(() -> {
+                cancelled.set(true);
+                synchronized (this) {
+                    waiting.remove(start);
+                }
+                subscription.dispose();
+            });
+            boolean admitted;
+            synchronized (this) {
+                admitted = running < maxConcurrentFetches;
+                if (admitted) {
+                    running++;
+                } else {
+                    waiting.add(start);
+                }
+            }
+            if (admitted) {
+                run(start);
+            }
+        });
+    }
+
+    /**
+     * Hands the slot of a fetch over to the first waiting one, or frees it.
+     */
+    private void release() {
+        Runnable next;
+        synchronized (this) {
+            next = waiting.poll();
+            if (next == null) {
+                running--;
+            }
+        }
+        if (next != null) {
+            run(next);
+        }
+    }
+
+    private static void run(Runnable start) {
+        Queue<Runnable> starting = STARTING.get();
+        if (starting != null) {
+            starting.add(start);
+            return;
+        }
+        starting = new ArrayDeque<>();
+        STARTING.set(starting);
+        try {
+            for (Runnable next = start; next != null; next = starting.poll()) {
+                next.run();
+            }
+        } finally {
+            STARTING.remove();
+        }
+    }
+
+    private synchronized int running() {
+        return running;
+    }
+
+    private synchronized int waiting() {
+        return waiting.size();
+    }
+}
@@ -0,0 +1,26 @@
+package vn.ttg.roadmap.weatherapiservice.resilience;
+
+import java.util.concurrent.CompletionException;
+import java.util.function.Predicate;
+
+import vn.ttg.roadmap.weatherapiservice.exception.WeatherApiException;
+import vn.ttg.roadmap.weatherapiservice.exception.WeatherErrorCode;
+
+/**
+ * Failures recorded by the weather API circuit breaker: the weather API being unreachable, timing out
+ * or answering with a server error. Invalid requests and calls rejected locally are not held against it.
+ *
+ * @author ttg
+ */
+public class WeatherApiFailurePredicate implements Predicate<Throwable> {
+
+    @Override
+    public boolean test(Throwable throwable) {
+        Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
+        if (cause instanceof WeatherApiException e) {
+            return e.getErrorCode() == WeatherErrorCode.WEATHER_API_UNAVAILABLE
+                    || e.getErrorCode() == WeatherErrorCode.WEATHER_API_SERVER_ERROR;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,103 @@
+package vn.ttg.roadmap.weatherapiservice.resilience;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import vn.ttg.roadmap.weatherapiservice.exception.WeatherApiException;
+import vn.ttg.roadmap.weatherapiservice.exception.WeatherErrorCode;
+import vn.ttg.roadmap.weatherapiservice.resilience.WeatherApiRateLimiter.Priority;
+
+/**
+ * Admission of the weather API calls, so that a slow or failing weather API is answered locally
+ * instead of holding request threads and connections.
+ *
+ * <p>A call has to get into the {@code weather-api} semaphore bulkhead, which bounds the calls in flight,
+ * then through the {@code weather-api} circuit breaker, which rejects every call for a while once too many
+ * calls failed or were slow, and finally within the budget of {@link WeatherApiRateLimiter}. Both are
+ * resilience4j instances configured under {@code resilience4j.bulkhead.instances} and
+ * {@code resilience4j.circuitbreaker.instances}. Calls rejected by the bulkhead or the circuit breaker
+ * fail at once with {@link WeatherErrorCode#WEATHER_API_UNAVAILABLE}, so that callers fall back to
+ * stale cached values, and are otherwise answered 503 Service Unavailable. Their retry delay is the wait
+ * duration of the open circuit breaker, or a second when the bulkhead is full since calls in flight
+ * complete within their timeout.</p>
+ *
+ * <p><strong>Thread Safety:</strong> This class is thread-safe and can be used concurrently by multiple threads.</p>
+ *
+ * @author ttg
+ */
+@Component
+public class WeatherApiGuard {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(WeatherApiGuard.class);
+    private static final Duration BULKHEAD_FULL_RETRY_AFTER = Duration.ofSeconds(1);
+
+    private final Bulkhead bulkhead;
+    private final CircuitBreaker circuitBreaker;
+    private final WeatherApiRateLimiter rateLimiter;
+    private final Duration openStateWait;
+
+    public WeatherApiGuard(BulkheadRegistry bulkheadRegistry, CircuitBreakerRegistry circuitBreakerRegistry,
+                           WeatherApiRateLimiter rateLimiter) {
+        this.bulkhead = bulkheadRegistry.bulkhead("weather-api");
+        this.circuitBreaker = circuitBreakerRegistry.circuitBreaker("weather-api");
+        this.rateLimiter = rateLimiter;
+        this.openStateWait = Duration.ofMillis(circuitBreaker.getCircuitBreakerConfig().getWaitIntervalFunctionInOpenState().apply(1));
+        circuitBreaker.getEventPublisher().onStateTransition(event ->
+                LOGGER.warn("Weather API circuit breaker {}", event.getStateTransition()));
+    }
+
+    /**
+     * Starts a weather API call once admitted.
+     *
+     * @param priority the priority of the call
+     * @param records the number of records the call is billed for
+     * @param call starts the call
+     * @return the future of the call, or a failed future when the call was not admitted
+     */
+    public <T> CompletableFuture<T> execute(Priority priority, int records, Supplier<CompletableFuture<T>> call) {
+        if (!bulkhead.tryAcquirePermission()) {
+            return CompletableFuture.failedFuture(new WeatherApiException(WeatherErrorCode.WEATHER_API_UNAVAILABLE,
+                    "Too many weather API calls in flight", BULKHEAD_FULL_RETRY_AFTER));
+        }
+        if (!circuitBreaker.tryAcquirePermission()) {
+            bulkhead.onComplete();
+            return CompletableFuture.failedFuture(new WeatherApiException(WeatherErrorCode.WEATHER_API_UNAVAILABLE,
+                    "Weather API is failing, calls are suspended", openStateWait));
+        }
+        try {
+            rateLimiter.acquire(priority, records);
+        } catch (WeatherApiException e) {
+            circuitBreaker.releasePermission();
+            bulkhead.onComplete();
+            return CompletableFuture.failedFuture(e);
+        }
+
+        long start = circuitBreaker.getCurrentTimestamp();
+        CompletableFuture<T> result;
+        try {
+            result = call.get();
+        } catch (RuntimeException e) {
+            result = CompletableFuture.failedFuture(e);
+        }
+        return result.whenComplete((value, e) -> {
+            bulkhead.onComplete();
+            long duration = circuitBreaker.getCurrentTimestamp() - start;
+            if (e != null) {
+                circuitBreaker.onError(duration, circuitBreaker.getTimestampUnit(),
+                        e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+            } else {
+                circuitBreaker.onSuccess(duration, circuitBreaker.getTimestampUnit());
+            }
+        });
+    }
+}
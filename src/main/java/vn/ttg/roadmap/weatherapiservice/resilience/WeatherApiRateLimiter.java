@@ -0,0 +1,140 @@
+package vn.ttg.roadmap.weatherapiservice.resilience;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.github.resilience4j.ratelimiter.RateLimiter;
+import io.github.resilience4j.ratelimiter.RateLimiterRegistry;
+import io.github.resilience4j.ratelimiter.internal.AtomicRateLimiter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import vn.ttg.roadmap.weatherapiservice.exception.WeatherApiException;
+import vn.ttg.roadmap.weatherapiservice.exception.WeatherErrorCode;
+
+/**
+ * Admission control of the weather API calls, keeping them within the quota of the API key.
+ *
+ * <p>Every call takes a permit from the {@code weather-api-per-second} rate limiter and as many permits
+ * from the {@code weather-api-daily} rate limiter as the records it is billed for, one per day requested.
+ * Both are resilience4j rate limiters configured under {@code resilience4j.ratelimiter.instances}, with no
+ * wait so that calls over budget are rejected locally with {@link WeatherErrorCode#WEATHER_API_QUOTA_EXCEEDED}
+ * instead of being rejected by the weather API, telling the client when to retry. The daily budget is checked
+ * before any permit is taken, so that calls rejected for the day do not use up the per-second budget of the
+ * calls still admitted.</p>
+ *
+ * <p>Current weather may use the whole budget, forecast and historical calls are only admitted while more
+ * than {@code weather.api.rate-limit.reserve.forecast} and {@code weather.api.rate-limit.reserve.historical}
+ * percent of it is left. Rejections are counted in the {@code weather.api.rejections} meter tagged with
+ * {@code limit} (second, daily) and {@code priority}.</p>
+ *
+ * <p><strong>Thread Safety:</strong> This class is thread-safe and can be used concurrently by multiple threads.</p>
+ *
+ * @author ttg
+ */
+@Component
+public class WeatherApiRateLimiter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(WeatherApiRateLimiter.class);
+
+    /**
+     * Priority of a weather API call, the first one being served first once the budget runs low.
+     */
+    public enum Priority {
+        CURRENT, FORECAST, HISTORICAL
+    }
+
+    private final RateLimiter perSecondLimiter;
+    private final RateLimiter dailyLimiter;
+    private final int forecastReserve;
+    private final int historicalReserve;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Counter> rejectionCounters = new ConcurrentHashMap<>();
+
+    public WeatherApiRateLimiter(RateLimiterRegistry rateLimiterRegistry, MeterRegistry meterRegistry,
+                                 @Value("${weather.api.rate-limit.reserve.forecast}") int forecastReserve,
+                                 @Value("${weather.api.rate-limit.reserve.historical}") int historicalReserve) {
+        this.perSecondLimiter = rateLimiterRegistry.rateLimiter("weather-api-per-second");
+        this.dailyLimiter = rateLimiterRegistry.rateLimiter("weather-api-daily");
+        this.forecastReserve = forecastReserve;
+        this.historicalReserve = historicalReserve;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Takes the permits of a weather API call.
+     *
+     * @param priority the priority of the call
+     * @param records the number of records the call is billed for
+     * @throws WeatherApiException with {@link WeatherErrorCode#WEATHER_API_QUOTA_EXCEEDED} when the call is over budget
+     */
+    public void acquire(Priority priority, int records) {
+        if (!hasBudget(dailyLimiter, priority, records)) {
+            throw reject("daily", priority, "Daily weather API budget exhausted, please try again later", retryAfter(dailyLimiter));
+        }
+        if (!acquire(perSecondLimiter, priority, 1)) {
+            throw reject("second", priority, "Too many weather API calls, please try again later", retryAfter(perSecondLimiter));
+        }
+        if (!acquire(dailyLimiter, priority, records)) {
+            throw reject("daily", priority, "Daily weather API budget exhausted, please try again later", retryAfter(dailyLimiter));
+        }
+    }
+
+    private boolean acquire(RateLimiter limiter, Priority priority, int permits) {
+        int requested = requestedPermits(limiter, permits);
+        if (reservedPermits(limiter, priority) > 0 && !hasBudget(limiter, priority, permits)) {
+            return false;
+        }
+        return limiter.acquirePermission(requested);
+    }
+
+    /**
+     * Tells whether a limiter has the permits of a call left beyond the reserve of its priority, without taking them.
+     */
+    private boolean hasBudget(RateLimiter limiter, Priority priority, int permits) {
+        return limiter.getMetrics().getAvailablePermissions() - requestedPermits(limiter, permits) >= reservedPermits(limiter, priority);
+    }
+
+    /**
+     * Time until a limiter has a permit again, the whole refresh period when it still has permits left that
+     * are only kept for higher priority calls, as those are not given back before the period ends.
+     */
+    private static Duration retryAfter(RateLimiter limiter) {
+        if (limiter.getMetrics() instanceof AtomicRateLimiter.AtomicRateLimiterMetrics metrics && metrics.getNanosToWait() > 0) {
+            return Duration.ofNanos(metrics.getNanosToWait());
+        }
+        return limiter.getRateLimiterConfig().getLimitRefreshPeriod();
+    }
+
+    private static int requestedPermits(RateLimiter limiter, int permits) {
+        return Math.max(1, Math.min(permits, limiter.getRateLimiterConfig().getLimitForPeriod()));
+    }
+
+    private int reservedPermits(RateLimiter limiter, Priority priority) {
+        return limiter.getRateLimiterConfig().getLimitForPeriod() * reserveOf(priority) / 100;
+    }
+
+    private int reserveOf(Priority priority) {
+        return switch (priority) {
+            case CURRENT -> 0;
+            case FORECAST -> forecastReserve;
+            case HISTORICAL -> historicalReserve;
+        };
+    }
+
+    private WeatherApiException reject(String limit, Priority priority, String message, Duration retryAfter) {
+        LOGGER.warn("Rejected {} weather API call over the {} budget", priority, limit);
+        rejectionCounters.computeIfAbsent(limit + ':' + priority, key -> Counter.builder("weather.api.rejections")
+                        .description("Weather API calls rejected locally for being over budget")
+                        .tag("limit", limit)
+                        .tag("priority", priority.name().toLowerCase())
+                        .register(meterRegistry))
+                .increment();
+        return new WeatherApiException(WeatherErrorCode.WEATHER_API_QUOTA_EXCEEDED, message, retryAfter);
+    }
+}
@@ -0,0 +1,24 @@
+package vn.ttg.roadmap.weatherapiservice.service;
+
+import java.util.List;
+
+/**
+ * Service class keeping the weather of the most requested locations cached ahead of traffic.
+ *
+ * @author ttg
+ */
+public interface CacheWarmUpService {
+
+    /**
+     * Loads the current weather and the upcoming forecast of the given locations into the caches,
+     * at the configured rate. Locations already cached are served from the caches and cost nothing.
+     *
+     * @param locations the canonical locations to warm up
+     */
+    void warmUp(List<String> locations);
+
+    /**
+     * @return the locations warmed up on the next run, the most requested first
+     */
+    List<String> getTopLocations();
+}
@@ -0,0 +1,21 @@
+package vn.ttg.roadmap.weatherapiservice.service;
+
+import reactor.core.publisher.Flux;
+import vn.ttg.roadmap.weatherapiservice.dto.WeatherResponse;
+
+/**
+ * Service class pushing the current weather of locations to their subscribers as it changes.
+ *
+ * @author ttg
+ */
+public interface CurrentWeatherSubscriptionService {
+
+    /**
+     * Subscribes to the current weather of a location. The latest known weather is emitted first, then
+     * the weather every time the cached current weather of the location changes.
+     *
+     * @param location the canonical location
+     * @return the current weather of the location as it changes, never completing
+     */
+    Flux<WeatherResponse> subscribe(String location);
+}
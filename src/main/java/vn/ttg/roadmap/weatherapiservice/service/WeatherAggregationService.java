@@ -0,0 +1,25 @@
+package vn.ttg.roadmap.weatherapiservice.service;
+
+import java.time.LocalDate;
+import java.util.concurrent.CompletableFuture;
+
+import vn.ttg.roadmap.weatherapiservice.dto.WeatherAggregateResponse;
+
+/**
+ * Service class for computing statistics over the weather of a location.
+ *
+ * @author ttg
+ */
+public interface WeatherAggregationService {
+
+    /**
+     * Computes the temperature statistics, the conditions histogram and the weekly rollups of a date range:
+     * historical weather for ranges ending before today, forecast otherwise.
+     *
+     * @param location the canonical location
+     * @param startDate the first date of the range
+     * @param endDate the last date of the range
+     * @return a future completing with the statistics of the range
+     */
+    CompletableFuture<WeatherAggregateResponse> getAggregate(String location, LocalDate startDate, LocalDate endDate);
+}
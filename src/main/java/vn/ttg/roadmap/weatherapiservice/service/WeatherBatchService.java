@@ -0,0 +1,27 @@
+package vn.ttg.roadmap.weatherapiservice.service;
+
+import java.util.List;
+
+import reactor.core.publisher.Mono;
+import vn.ttg.roadmap.weatherapiservice.dto.WeatherRequest;
+import vn.ttg.roadmap.weatherapiservice.dto.WeatherResponse;
+
+/**
+ * Service class for fetching weather data of many locations at once.
+ *
+ * @author ttg
+ */
+public interface WeatherBatchService {
+
+    /**
+     * Fetches weather data for all the given requests. Cached entries are looked up with a single
+     * multi-key lookup per cache, off the subscribing thread, once the first result is subscribed. A miss
+     * is fetched from the weather API when its result is subscribed, so that the caller bounds how many are
+     * fetched at a time and cancelling the subscriptions stops the misses not fetched yet.
+     *
+     * @param requests the weather requests, already validated
+     * @return one mono per request, in the order of the requests, failing when the weather of that
+     *         request could not be fetched
+     */
+    List<Mono<WeatherResponse>> getWeather(List<WeatherRequest> requests);
+}
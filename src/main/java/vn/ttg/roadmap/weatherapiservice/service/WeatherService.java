@@ -1,6 +1,7 @@
 package vn.ttg.roadmap.weatherapiservice.service;
 
 import java.time.LocalDate;
+import java.util.concurrent.CompletableFuture;
 
 import vn.ttg.roadmap.weatherapiservice.dto.WeatherResponse;
 
@@ -38,4 +39,32 @@ public interface WeatherService {
      * @return WeatherResponse containing historical weather data
      */
     WeatherResponse getHistorical(String location, LocalDate date1, LocalDate date2);
+
+    /**
+     * Non-blocking variant of {@link #getCurrentWeather(String)}.
+     *
+     * @param location the location to fetch weather for
+     * @return a future completing with the current weather data
+     */
+    CompletableFuture<WeatherResponse> getCurrentWeatherAsync(String location);
+
+    /**
+     * Non-blocking variant of {@link #getForecast(String, LocalDate, LocalDate)}.
+     *
+     * @param location the location to fetch weather for
+     * @param date1 the start date of the forecast range
+     * @param date2 the end date of the forecast range
+     * @return a future completing with the forecast data
+     */
+    CompletableFuture<WeatherResponse> getForecastAsync(String location, LocalDate date1, LocalDate date2);
+
+    /**
+     * Non-blocking variant of {@link #getHistorical(String, LocalDate, LocalDate)}.
+     *
+     * @param location the location to fetch weather for
+     * @param date1 the start date of the historical range
+     * @param date2 the end date of the historical range
+     * @return a future completing with the historical weather data
+     */
+    CompletableFuture<WeatherResponse> getHistoricalAsync(String location, LocalDate date1, LocalDate date2);
 }
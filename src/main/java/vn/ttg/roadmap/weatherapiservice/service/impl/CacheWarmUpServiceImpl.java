@@ -0,0 +1,186 @@
+package vn.ttg.roadmap.weatherapiservice.service.impl;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import vn.ttg.roadmap.weatherapiservice.cache.LocationAliasIndex;
+import vn.ttg.roadmap.weatherapiservice.cache.LocationHeavyHitters;
+import vn.ttg.roadmap.weatherapiservice.dto.WeatherResponse;
+import vn.ttg.roadmap.weatherapiservice.service.CacheWarmUpService;
+import vn.ttg.roadmap.weatherapiservice.service.WeatherService;
+
+/**
+ * Service class keeping the weather of the most requested locations cached ahead of traffic.
+ *
+ * <p>The most requested locations are taken from {@link LocationHeavyHitters} every
+ * {@code weather.warmup.interval}, warmed up and saved to Redis. On startup the saved list is warmed
+ * up, so that a deploy or a Redis flush does not send every popular location to the weather API at
+ * once. Loads go through the cached {@link WeatherService} at most {@code weather.warmup.rate} per
+ * second, and are counted in the {@code weather.warmup.loads} meter tagged with {@code result}
+ * (success, error).</p>
+ *
+ * <p><strong>Thread Safety:</strong> This class is thread-safe and can be used concurrently by multiple threads.</p>
+ *
+ * @author ttg
+ */
+@Service
+public class CacheWarmUpServiceImpl implements CacheWarmUpService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CacheWarmUpServiceImpl.class);
+
+    private static final String TOP_LOCATIONS_KEY = "weather-warmup::top-locations";
+    private static final Duration TOP_LOCATIONS_TTL = Duration.ofDays(7);
+
+    @Autowired
+    private WeatherService weatherService;
+    @Autowired
+    private LocationHeavyHitters heavyHitters;
+    @Autowired
+    private LocationAliasIndex locationAliasIndex;
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${weather.warmup.enabled}")
+    private boolean enabled;
+
+    @Value("${weather.warmup.top-n}")
+    private int topN;
+
+    @Value("${weather.warmup.forecast-days}")
+    private int forecastDays;
+
+    @Value("${weather.warmup.rate}")
+    private int rate;
+
+    @Value("${weather.warmup.concurrency}")
+    private int concurrency;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private Counter successCounter;
+    private Counter errorCounter;
+
+    @PostConstruct
+    void init() {
+        successCounter = loadCounter("success");
+        errorCounter = loadCounter("error");
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    void warmUpOnStartup() {
+        if (enabled) {
+            warmUp(loadTopLocations());
+        }
+    }
+
+    @Scheduled(initialDelayString = "${weather.warmup.interval}", fixedDelayString = "${weather.warmup.interval}")
+    void warmUpTopLocations() {
+        if (!enabled) {
+            return;
+        }
+        List<String> locations = getTopLocations();
+        heavyHitters.decay();
+        if (!locations.isEmpty()) {
+            saveTopLocations(locations);
+        }
+        warmUp(locations);
+    }
+
+    @Override
+    public List<String> getTopLocations() {
+        Set<String> locations = new LinkedHashSet<>();
+        heavyHitters.top(topN).forEach(location -> locations.add(locationAliasIndex.resolve(location)));
+        return new ArrayList<>(locations);
+    }
+
+    @Override
+    public void warmUp(List<String> locations) {
+        if (locations.isEmpty() || !running.compareAndSet(false, true)) {
+            return;
+        }
+        LOGGER.info("Warming up the caches for {} locations", locations.size());
+
+        LocalDate today = LocalDate.now();
+        LocalDate lastForecastDay = today.plusDays(forecastDays - 1L);
+        List<Supplier<CompletableFuture<WeatherResponse>>> loads = new ArrayList<>(locations.size() * 2);
+        for (String location : locations) {
+            loads.add(() -> weatherService.getCurrentWeatherAsync(location));
+            if (forecastDays > 0) {
+                loads.add(() -> weatherService.getForecastAsync(location, today, lastForecastDay));
+            }
+        }
+
+        long startNanos = System.nanoTime();
+        Flux.fromIterable(loads)
+                .delayElements(Duration.ofNanos(1_000_000_000L / Math.max(rate, 1)))
+                .flatMap(this::load, Math.max(concurrency, 1))
+                .doFinally(signal -> {
+                    running.set(false);
+                    LOGGER.info("Warmed up the caches for {} locations in {} ms", locations.size(),
+                            Duration.ofNanos(System.nanoTime() - startNanos).toMillis());
+                })
+                .subscribe();
+    }
+
+    private Mono<WeatherResponse> load(Supplier<CompletableFuture<WeatherResponse>> loader) {
+        return Mono.fromFuture(loader)
+                .doOnSuccess(response -> successCounter.increment())
+                .onErrorResume(e -> {
+                    errorCounter.increment();
+                    LOGGER.warn("Cache warm-up load failed: {}", e.getMessage());
+                    return Mono.empty();
+                });
+    }
+
+    private List<String> loadTopLocations() {
+        try {
+            Object saved = redisTemplate.opsForValue().get(TOP_LOCATIONS_KEY);
+            if (saved instanceof List<?> list) {
+                Set<String> locations = new LinkedHashSet<>();
+                list.forEach(location -> locations.add(String.valueOf(location)));
+                return new ArrayList<>(locations);
+            }
+        } catch (RuntimeException e) {
+            LOGGER.warn("Failed to load the top locations: {}", e.getMessage());
+        }
+        return List.of();
+    }
+
+    private void saveTopLocations(List<String> locations) {
+        try {
+            redisTemplate.opsForValue().set(TOP_LOCATIONS_KEY, locations, TOP_LOCATIONS_TTL);
+        } catch (RuntimeException e) {
+            LOGGER.warn("Failed to save the top locations: {}", e.getMessage());
+        }
+    }
+
+    private Counter loadCounter(String result) {
+        return Counter.builder("weather.warmup.loads")
+                .description("Cache warm-up loads of the most requested locations")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,104 @@
+package vn.ttg.roadmap.weatherapiservice.service.impl;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import vn.ttg.roadmap.weatherapiservice.codec.WeatherResponseJsonEncoder;
+import vn.ttg.roadmap.weatherapiservice.dto.WeatherResponse;
+import vn.ttg.roadmap.weatherapiservice.service.CurrentWeatherSubscriptionService;
+import vn.ttg.roadmap.weatherapiservice.service.WeatherService;
+
+/**
+ * Service class pushing the current weather of locations to their subscribers as it changes.
+ *
+ * <p>Each subscribed location has a single refresher shared by all of its subscribers, reading the current
+ * weather through the cached {@link WeatherService} every poll interval. The reads are served by the
+ * {@code weathers-current} cache, which fetches the weather API once per TTL of the location whatever the
+ * number of subscribers, and keeps it refreshed ahead of expiry while subscribed. A read is only pushed
+ * when the entity tag of its JSON body differs from the previous one, the latest read being replayed to
+ * new subscribers. The refresher stops with its last subscriber, the subscribers of a location being counted
+ * atomically with the creation and removal of its refresher.</p>
+ *
+ * <p>Failed reads are skipped, the cache serving stale weather while the weather API fails.</p>
+ *
+ * <p><strong>Thread Safety:</strong> This class is thread-safe and can be used concurrently by multiple threads.</p>
+ *
+ * @author ttg
+ */
+@Service
+public class CurrentWeatherSubscriptionServiceImpl implements CurrentWeatherSubscriptionService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CurrentWeatherSubscriptionServiceImpl.class);
+
+    private final WeatherService weatherService;
+    private final WeatherResponseJsonEncoder weatherResponseJsonEncoder;
+    private final Duration pollInterval;
+    private final Map<String, Refresher> refreshers = new ConcurrentHashMap<>();
+
+    public CurrentWeatherSubscriptionServiceImpl(WeatherService weatherService, WeatherResponseJsonEncoder weatherResponseJsonEncoder,
+                                                 MeterRegistry meterRegistry,
+                                                 @Value("${weather.subscriptions.poll-interval}") Duration pollInterval) {
+        this.weatherService = weatherService;
+        this.weatherResponseJsonEncoder = weatherResponseJsonEncoder;
+        this.pollInterval = pollInterval;
+        Gauge.builder("weather.subscriptions.locations", refreshers, Map::size)
+                .description("Number of locations with current weather subscribers")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Flux<WeatherResponse> subscribe(String location) {
+        return Flux.defer(() -> {
+            Refresher refresher = refreshers.compute(location, (key, existing) -> {
+                Refresher current = existing != null ? existing : new Refresher(refresher(location));
+                current.subscribers++;
+                return current;
+            });
+            return refresher.updates.doFinally(signal -> refreshers.computeIfPresent(location, (key, existing) -> {
+                if (existing != refresher || --existing.subscribers > 0) {
+                    return existing;
+                }
+                LOGGER.info("Stopped current weather refresher for location: {}", location);
+                return null;
+            }));
+        });
+    }
+
+    private Flux<WeatherResponse> refresher(String location) {
+        LOGGER.info("Starting current weather refresher for location: {}", location);
+        return Flux.interval(Duration.ZERO, pollInterval)
+                .onBackpressureDrop()
+                .concatMap(tick -> Mono.fromFuture(() -> weatherService.getCurrentWeatherAsync(location))
+                        .onErrorResume(e -> {
+                            LOGGER.debug("Skipping current weather refresh for location: {}, error={}", location, e.getMessage());
+                            return Mono.empty();
+                        }), 1)
+                .distinctUntilChanged(response -> weatherResponseJsonEncoder.encode(response).etag())
+                .replay(1)
+                .refCount();
+    }
+
+    /**
+     * The shared updates of a location and its number of subscribers, only modified while computing its
+     * entry of the refreshers.
+     */
+    private static final class Refresher {
+
+        private final Flux<WeatherResponse> updates;
+        private int subscribers;
+
+        private Refresher(Flux<WeatherResponse> updates) {
+            this.updates = updates;
+        }
+    }
+}
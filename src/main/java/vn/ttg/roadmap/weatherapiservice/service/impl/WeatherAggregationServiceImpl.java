@@ -0,0 +1,61 @@
+package vn.ttg.roadmap.weatherapiservice.service.impl;
+
+import java.time.LocalDate;
+import java.util.concurrent.CompletableFuture;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import vn.ttg.roadmap.weatherapiservice.dto.WeatherAggregateResponse;
+import vn.ttg.roadmap.weatherapiservice.dto.WeatherResponse;
+import vn.ttg.roadmap.weatherapiservice.service.WeatherAggregationService;
+import vn.ttg.roadmap.weatherapiservice.service.WeatherService;
+import vn.ttg.roadmap.weatherapiservice.store.DaySeries;
+import vn.ttg.roadmap.weatherapiservice.store.HistoricalWeatherStore;
+
+/**
+ * Service class for computing statistics over the weather of a location.
+ *
+ * <p>Ranges whose days are all in the {@link HistoricalWeatherStore} are aggregated from the columns of their
+ * series. Other ranges are loaded through the cached {@link WeatherService}, so that their days are cached and
+ * shared with the forecast and historical endpoints, then aggregated in a single pass by a {@link WeatherAggregator}.</p>
+ *
+ * <p><strong>Thread Safety:</strong> This class is thread-safe and can be used concurrently by multiple threads.</p>
+ *
+ * @author ttg
+ */
+@Service
+public class WeatherAggregationServiceImpl implements WeatherAggregationService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(WeatherAggregationServiceImpl.class);
+
+    @Autowired
+    private WeatherService weatherService;
+    @Autowired
+    private HistoricalWeatherStore historicalWeatherStore;
+
+    @Override
+    public CompletableFuture<WeatherAggregateResponse> getAggregate(String location, LocalDate startDate, LocalDate endDate) {
+        if (endDate.isBefore(LocalDate.now())) {
+            DaySeries series = historicalWeatherStore.getSeries(location, startDate, endDate);
+            if (series != null) {
+                LOGGER.debug("Aggregating stored weather for location: {}, dates: {} to {}", location, startDate, endDate);
+                WeatherAggregator aggregator = new WeatherAggregator(startDate, endDate);
+                aggregator.add(series, series.indexOf(startDate), series.indexOf(endDate));
+                return CompletableFuture.completedFuture(aggregator.toResponse(location));
+            }
+            return weatherService.getHistoricalAsync(location, startDate, endDate)
+                    .thenApply(response -> aggregate(location, startDate, endDate, response));
+        }
+        return weatherService.getForecastAsync(location, startDate, endDate)
+                .thenApply(response -> aggregate(location, startDate, endDate, response));
+    }
+
+    private static WeatherAggregateResponse aggregate(String location, LocalDate startDate, LocalDate endDate, WeatherResponse response) {
+        WeatherAggregator aggregator = new WeatherAggregator(startDate, endDate);
+        aggregator.add(response != null ? response.getDays() : null);
+        return aggregator.toResponse(location);
+    }
+}
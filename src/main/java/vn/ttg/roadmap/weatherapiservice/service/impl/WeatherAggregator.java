@@ -0,0 +1,139 @@
+package vn.ttg.roadmap.weatherapiservice.service.impl;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import vn.ttg.roadmap.weatherapiservice.dto.DayWeather;
+import vn.ttg.roadmap.weatherapiservice.dto.TemperatureStats;
+import vn.ttg.roadmap.weatherapiservice.dto.WeatherAggregateResponse;
+import vn.ttg.roadmap.weatherapiservice.dto.WeeklyWeatherAggregate;
+import vn.ttg.roadmap.weatherapiservice.store.DaySeries;
+
+/**
+ * Accumulates the statistics of the days of a date range in a single pass.
+ *
+ * <p>Temperatures are folded into primitive minimums, maximums and sums, for the whole range and for each of
+ * its ISO weeks, and conditions are counted as they come. Days of a {@link DaySeries} are read from its columns,
+ * their conditions counted by dictionary code, so that no day is materialized. Days outside the range or
+ * without a valid date are ignored.</p>
+ *
+ * <p><strong>Thread Safety:</strong> This class is not thread-safe, an instance aggregates a single range.</p>
+ *
+ * @author ttg
+ */
+final class WeatherAggregator {
+
+    private final LocalDate startDate;
+    private final LocalDate endDate;
+    private final long startEpochDay;
+    private final long endEpochDay;
+    private final long firstWeekStart;
+    private final Stats tempmax = new Stats();
+    private final Stats tempmin = new Stats();
+    private final Stats[] weekTempmax;
+    private final Stats[] weekTempmin;
+    private final Map<String, int[]> conditions = new HashMap<>();
+    private int days;
+
+    WeatherAggregator(LocalDate startDate, LocalDate endDate) {
+        this.startDate = startDate;
+        this.endDate = endDate;
+        this.startEpochDay = startDate.toEpochDay();
+        this.endEpochDay = endDate.toEpochDay();
+        // 1970-01-01 is a Thursday, three days after a Monday
+        this.firstWeekStart = startEpochDay - Math.floorMod(startEpochDay + 3, 7);
+        int weeks = (int) ((endEpochDay - firstWeekStart) / 7 + 1);
+        this.weekTempmax = new Stats[weeks];
+        this.weekTempmin = new Stats[weeks];
+        for (int i = 0; i < weeks; i++) {
+            weekTempmax[i] = new Stats();
+            weekTempmin[i] = new Stats();
+        }
+    }
+
+    void add(List<DayWeather> dayList) {
+        if (dayList == null) {
+            return;
+        }
+        for (DayWeather day : dayList) {
+            LocalDate date = DaySeries.dateOf(day);
+            if (date != null && add(date.toEpochDay(), day.getTempmax(), day.getTempmin())) {
+                if (day.getConditions() != null) {
+                    conditions.computeIfAbsent(day.getConditions(), key -> new int[1])[0]++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds the days of a series between two indexes, both included.
+     */
+    void add(DaySeries series, int from, int to) {
+        int[] conditionCounts = new int[series.dictionarySize()];
+        for (int i = from; i <= to; i++) {
+            if (add(series.epochDay(i), series.tempmax(i), series.tempmin(i))) {
+                int code = series.conditionCode(i);
+                if (code >= 0) {
+                    conditionCounts[code]++;
+                }
+            }
+        }
+        for (int code = 0; code < conditionCounts.length; code++) {
+            if (conditionCounts[code] > 0) {
+                conditions.computeIfAbsent(series.decode(code), key -> new int[1])[0] += conditionCounts[code];
+            }
+        }
+    }
+
+    private boolean add(long epochDay, double dayTempmax, double dayTempmin) {
+        if (epochDay < startEpochDay || epochDay > endEpochDay) {
+            return false;
+        }
+        days++;
+        tempmax.add(dayTempmax);
+        tempmin.add(dayTempmin);
+        int week = (int) ((epochDay - firstWeekStart) / 7);
+        weekTempmax[week].add(dayTempmax);
+        weekTempmin[week].add(dayTempmin);
+        return true;
+    }
+
+    WeatherAggregateResponse toResponse(String location) {
+        Map<String, Integer> histogram = new LinkedHashMap<>();
+        conditions.entrySet().stream()
+                .sorted(Comparator.comparing((Map.Entry<String, int[]> entry) -> -entry.getValue()[0]).thenComparing(Map.Entry::getKey))
+                .forEach(entry -> histogram.put(entry.getKey(), entry.getValue()[0]));
+        List<WeeklyWeatherAggregate> weeks = new ArrayList<>(weekTempmax.length);
+        for (int i = 0; i < weekTempmax.length; i++) {
+            if (weekTempmax[i].count > 0) {
+                weeks.add(new WeeklyWeatherAggregate(LocalDate.ofEpochDay(firstWeekStart + 7L * i), weekTempmax[i].count,
+                        weekTempmax[i].toStats(), weekTempmin[i].toStats()));
+            }
+        }
+        return new WeatherAggregateResponse(location, startDate, endDate, days, tempmax.toStats(), tempmin.toStats(), histogram, weeks);
+    }
+
+    private static final class Stats {
+
+        private int count;
+        private double min = Double.POSITIVE_INFINITY;
+        private double max = Double.NEGATIVE_INFINITY;
+        private double sum;
+
+        private void add(double value) {
+            count++;
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+            sum += value;
+        }
+
+        private TemperatureStats toStats() {
+            return count == 0 ? null : new TemperatureStats(min, max, Math.round(sum / count * 100) / 100.0);
+        }
+    }
+}
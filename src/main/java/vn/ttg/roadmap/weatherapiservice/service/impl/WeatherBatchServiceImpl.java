@@ -0,0 +1,143 @@
+package vn.ttg.roadmap.weatherapiservice.service.impl;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Service;
+
+import reactor.core.publisher.Mono;
+import vn.ttg.roadmap.weatherapiservice.cache.MultiGetCache;
+import vn.ttg.roadmap.weatherapiservice.cache.WeatherCacheKeys;
+import vn.ttg.roadmap.weatherapiservice.dto.CurrentWeatherRequest;
+import vn.ttg.roadmap.weatherapiservice.dto.HistoricalWeatherRequest;
+import vn.ttg.roadmap.weatherapiservice.dto.WeatherForecastRequest;
+import vn.ttg.roadmap.weatherapiservice.dto.WeatherRequest;
+import vn.ttg.roadmap.weatherapiservice.dto.WeatherResponse;
+import vn.ttg.roadmap.weatherapiservice.service.WeatherBatchService;
+import vn.ttg.roadmap.weatherapiservice.service.WeatherService;
+import vn.ttg.roadmap.weatherapiservice.visitor.WeatherRequestVisitor;
+
+/**
+ * Service class for fetching weather data of many locations at once.
+ *
+ * <p>Cache misses are loaded through the cached {@link WeatherService}, so they are cached, coalesced
+ * and served stale on errors exactly like single location requests.</p>
+ *
+ * <p><strong>Thread Safety:</strong> This class is thread-safe and can be used concurrently by multiple threads.</p>
+ *
+ * @author ttg
+ */
+@Service
+public class WeatherBatchServiceImpl implements WeatherBatchService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(WeatherBatchServiceImpl.class);
+
+    @Autowired
+    private WeatherService weatherService;
+    @Autowired
+    private CacheManager cacheManager;
+    @Autowired
+    @Qualifier("cacheIoExecutor")
+    private Executor cacheIoExecutor;
+
+    private final WeatherRequestVisitor<BatchLookup> lookupVisitor = new WeatherRequestVisitor<>() {
+        @Override
+        public BatchLookup visit(CurrentWeatherRequest request) {
+            return new BatchLookup("weathers-current", WeatherCacheKeys.current(request.getLocation()),
+                    () -> weatherService.getCurrentWeatherAsync(request.getLocation()));
+        }
+
+        // date ranges are assembled from cached days by the service itself
+        @Override
+        public BatchLookup visit(WeatherForecastRequest request) {
+            return new BatchLookup(null, null,
+                    () -> weatherService.getForecastAsync(request.getLocation(), request.getStartDate(), request.getEndDate()));
+        }
+
+        @Override
+        public BatchLookup visit(HistoricalWeatherRequest request) {
+            return new BatchLookup(null, null,
+                    () -> weatherService.getHistoricalAsync(request.getLocation(), request.getStartDate(), request.getEndDate()));
+        }
+    };
+
+    @Override
+    public List<Mono<WeatherResponse>> getWeather(List<WeatherRequest> requests) {
+        List<BatchLookup> lookups = requests.stream().map(request -> request.accept(lookupVisitor)).toList();
+        // the blocking multi-key lookups run once, on the cache I/O executor, for all the results
+        Mono<WeatherResponse[]> cached = Mono.fromFuture(() -> CompletableFuture.supplyAsync(() -> lookupCached(lookups), cacheIoExecutor))
+                .cache();
+        List<Mono<WeatherResponse>> results = new ArrayList<>(lookups.size());
+        for (int i = 0; i < lookups.size(); i++) {
+            int index = i;
+            results.add(cached.flatMap(responses -> responses[index] != null
+                    ? Mono.just(responses[index])
+                    : Mono.fromFuture(lookups.get(index).loader())));
+        }
+        return results;
+    }
+
+    /**
+     * Looks up the cached responses of the requests with one multi-key lookup per cache.
+     *
+     * @return the cached responses by index of the request, null for the requests to load
+     */
+    private WeatherResponse[] lookupCached(List<BatchLookup> lookups) {
+        Map<String, List<Integer>> indexesByCache = new LinkedHashMap<>();
+        for (int i = 0; i < lookups.size(); i++) {
+            if (lookups.get(i).cacheName() != null) {
+                indexesByCache.computeIfAbsent(lookups.get(i).cacheName(), name -> new ArrayList<>()).add(i);
+            }
+        }
+
+        WeatherResponse[] responses = new WeatherResponse[lookups.size()];
+        int hits = 0;
+        for (Map.Entry<String, List<Integer>> entry : indexesByCache.entrySet()) {
+            List<Integer> indexes = entry.getValue();
+            List<Cache.ValueWrapper> cached = lookupAll(entry.getKey(), indexes.stream().map(i -> lookups.get(i).cacheKey()).toList());
+            for (int j = 0; j < indexes.size(); j++) {
+                if (cached.get(j) != null && cached.get(j).get() instanceof WeatherResponse response) {
+                    responses[indexes.get(j)] = response;
+                    hits++;
+                }
+            }
+        }
+        LOGGER.info("Batch of {} requests, {} cache hits, {} to load", lookups.size(), hits, lookups.size() - hits);
+        return responses;
+    }
+
+    /**
+     * Looks up all keys of one cache at once, treating them all as misses when the cache is failing.
+     */
+    private List<Cache.ValueWrapper> lookupAll(String cacheName, List<String> keys) {
+        Cache cache = cacheManager.getCache(cacheName);
+        if (cache != null) {
+            try {
+                return MultiGetCache.getAll(cache, keys);
+            } catch (RuntimeException e) {
+                LOGGER.warn("Batch lookup of {} keys in cache {} failed: {}", keys.size(), cacheName, e.getMessage());
+            }
+        }
+        List<Cache.ValueWrapper> misses = new ArrayList<>(keys.size());
+        keys.forEach(key -> misses.add(null));
+        return misses;
+    }
+
+    /**
+     * Where a single request is cached and how to load it on a cache miss, requests without a cache
+     * name are always loaded.
+     */
+    private record BatchLookup(String cacheName, String cacheKey, Supplier<CompletableFuture<WeatherResponse>> loader) {
+    }
+}
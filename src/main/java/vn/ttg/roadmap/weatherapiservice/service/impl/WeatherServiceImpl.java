@@ -1,27 +1,64 @@
 package vn.ttg.roadmap.weatherapiservice.service.impl;
 
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeoutException;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.HttpClientErrorException;
-import org.springframework.web.client.HttpServerErrorException;
-import org.springframework.web.client.ResourceAccessException;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import vn.ttg.roadmap.weatherapiservice.cache.DailyWeatherCache;
+import vn.ttg.roadmap.weatherapiservice.cache.LocationAliasIndex;
+import vn.ttg.roadmap.weatherapiservice.cache.RedisRoundTrips;
+import vn.ttg.roadmap.weatherapiservice.cache.RefreshAheadCacheManager;
+import vn.ttg.roadmap.weatherapiservice.cache.SingleFlight;
+import vn.ttg.roadmap.weatherapiservice.cache.WeatherCacheKeys;
+import vn.ttg.roadmap.weatherapiservice.dto.DayWeather;
 import vn.ttg.roadmap.weatherapiservice.dto.WeatherResponse;
 import vn.ttg.roadmap.weatherapiservice.exception.WeatherErrorCode;
 import vn.ttg.roadmap.weatherapiservice.exception.WeatherApiException;
+import vn.ttg.roadmap.weatherapiservice.resilience.WeatherApiGuard;
+import vn.ttg.roadmap.weatherapiservice.resilience.WeatherApiRateLimiter.Priority;
 import vn.ttg.roadmap.weatherapiservice.service.WeatherService;
+import vn.ttg.roadmap.weatherapiservice.store.HistoricalWeatherStore;
 
 /**
  * Service class for fetching weather data from external API with caching.
  *
+ * <p>Upstream calls are non-blocking: the asynchronous variants never park the calling thread on I/O,
+ * while the synchronous variants wait for the same upstream call to complete.</p>
+ *
+ * <p>Current weather is cached per location, forecast and historical weather per day through
+ * {@link DailyWeatherCache} so that overlapping date ranges share their cached days. Past days are also kept
+ * in the {@link HistoricalWeatherStore}, consulted before the cache and the weather API, so that they are
+ * fetched from the weather API at most once.</p>
+ *
+ * <p>Every upstream call is timed by the {@code weather.api.requests} timer, tagged with its {@code outcome}:
+ * SUCCESS or the name of the WeatherErrorCode it failed with.</p>
+ *
  *  <p><strong>Thread Safety:</strong> This class is thread-safe and can be used concurrently by multiple threads.</p>
  *
  * @author ttg
@@ -31,9 +68,33 @@ public class WeatherServiceImpl implements WeatherService {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(WeatherServiceImpl.class);
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    private static final String OUTCOME_SUCCESS = "SUCCESS";
 
     @Autowired
-    private RestTemplate restTemplate;
+    private WebClient weatherApiWebClient;
+    @Autowired
+    private SingleFlight singleFlight;
+    @Autowired
+    private DailyWeatherCache dailyWeatherCache;
+    @Autowired
+    private LocationAliasIndex locationAliasIndex;
+    @Autowired
+    private HistoricalWeatherStore historicalWeatherStore;
+    @Autowired
+    private CacheManager cacheManager;
+    @Autowired
+    private WeatherApiGuard weatherApiGuard;
+    @Autowired
+    private RefreshAheadCacheManager refreshAheadCacheManager;
+    @Autowired
+    private MeterRegistry meterRegistry;
+    @Autowired
+    @Qualifier("cacheIoExecutor")
+    private Executor cacheIoExecutor;
+    @Autowired
+    private RedisRoundTrips redisRoundTrips;
+
+    private final Map<String, Timer> upstreamTimers = new ConcurrentHashMap<>();
 
     @Value("${weather.api.base-url}")
     private String baseUrl;
@@ -41,55 +102,231 @@ public class WeatherServiceImpl implements WeatherService {
     @Value("${weather.api.key}")
     private String apiKey;
 
+    @Value("${weather.api.call-timeout}")
+    private Duration callTimeout;
+
     @Override
     @Cacheable(value = "weathers-current", keyGenerator = "weatherKeyGenerator")
     public WeatherResponse getCurrentWeather(String location) {
         LOGGER.info("Fetching current weather for location: {}", location);
-        return fetchWeather(location, LocalDate.now(), LocalDate.now());
+        String cacheKey = WeatherCacheKeys.current(location);
+        try {
+            return await(fetchCurrentWeather(cacheKey, location));
+        } catch (WeatherApiException e) {
+            return staleIfError("weathers-current", cacheKey, e);
+        }
     }
 
     @Override
-    @Cacheable(value = "weathers-forecast", keyGenerator = "weatherKeyGenerator")
     public WeatherResponse getForecast(String location, LocalDate date1, LocalDate date2) {
-        LOGGER.info("Fetching forecast for location: {}, dates: {} to {}", location, date1, date2);
-        return fetchWeather(location, date1, date2);
+        return await(getForecastAsync(location, date1, date2));
     }
 
     @Override
-    @Cacheable(value = "weathers-historical", keyGenerator = "weatherKeyGenerator")
     public WeatherResponse getHistorical(String location, LocalDate date1, LocalDate date2) {
-        LOGGER.info("Fetching historical weather for location: {}, dates: {} to {}", location, date1, date2);
-        return fetchWeather(location, date1, date2);
+        return await(getHistoricalAsync(location, date1, date2));
+    }
+
+    @Override
+    @Cacheable(value = "weathers-current", keyGenerator = "weatherKeyGenerator")
+    public CompletableFuture<WeatherResponse> getCurrentWeatherAsync(String location) {
+        LOGGER.info("Fetching current weather for location: {}", location);
+        String cacheKey = WeatherCacheKeys.current(location);
+        // the stale entry is read from Redis, not on the event loop thread failing the call
+        return fetchCurrentWeather(cacheKey, location)
+                .exceptionallyAsync(e -> staleIfError("weathers-current", cacheKey, e), cacheIoExecutor);
+    }
+
+    @Override
+    public CompletableFuture<WeatherResponse> getForecastAsync(String location, LocalDate date1, LocalDate date2) {
+        LOGGER.debug("Getting forecast for location: {}, dates: {} to {}", location, date1, date2);
+        return dailyWeatherCache.getRange("weathers-forecast", location, date1, date2, (from, to) -> {
+            LOGGER.info("Fetching forecast for location: {}, dates: {} to {}", location, from, to);
+            return fetchWeather(Priority.FORECAST, location, from, to);
+        });
+    }
+
+    @Override
+    public CompletableFuture<WeatherResponse> getHistoricalAsync(String location, LocalDate date1, LocalDate date2) {
+        LOGGER.debug("Getting historical weather for location: {}, dates: {} to {}", location, date1, date2);
+        WeatherResponse stored = historicalWeatherStore.getRange(location, date1, date2);
+        if (stored != null) {
+            return CompletableFuture.completedFuture(stored);
+        }
+        return dailyWeatherCache.getRange("weathers-historical", location, date1, date2,
+                (from, to) -> fetchHistorical(location, from, to)).thenApply(response -> {
+            historicalWeatherStore.store(location, locationAliasIndex.learn(location, response), response);
+            return response;
+        });
+    }
+
+    /**
+     * Fetches the historical weather of the days missing from the cache, as far as they are missing from the
+     * {@link HistoricalWeatherStore} as well: only the days between the first and the last ones not stored are
+     * fetched from the weather API, the stored ones are served along with them.
+     */
+    private CompletableFuture<WeatherResponse> fetchHistorical(String location, LocalDate from, LocalDate to) {
+        WeatherResponse stored = historicalWeatherStore.getRange(location, from, to);
+        if (stored != null) {
+            return CompletableFuture.completedFuture(stored);
+        }
+        DayWeather[] storedDays = historicalWeatherStore.getDays(location, from, to);
+        int first = 0;
+        while (first < storedDays.length && storedDays[first] != null) {
+            first++;
+        }
+        int last = storedDays.length - 1;
+        while (last > first && storedDays[last] != null) {
+            last--;
+        }
+        if (first == storedDays.length) {
+            // every day is stored but the location level data, refresh it with the smallest possible call
+            first = 0;
+            last = 0;
+        }
+
+        LocalDate fetchFrom = from.plusDays(first);
+        LocalDate fetchTo = from.plusDays(last);
+        boolean partiallyStored = Arrays.stream(storedDays).anyMatch(Objects::nonNull);
+        LOGGER.info("Fetching historical weather for location: {}, dates: {} to {}", location, fetchFrom, fetchTo);
+        return fetchWeather(Priority.HISTORICAL, location, fetchFrom, fetchTo).thenApply(response -> {
+            if (response == null || !partiallyStored) {
+                return response;
+            }
+            List<DayWeather> days = new ArrayList<>(storedDays.length);
+            Arrays.stream(storedDays).filter(Objects::nonNull).forEach(days::add);
+            if (response.getDays() != null) {
+                days.addAll(response.getDays());
+            }
+            return new WeatherResponse(response.getResolvedAddress(), response.getTimezone(), response.getDescription(),
+                    days, response.getAlerts());
+        });
+    }
+
+    /**
+     * Falls back to the last cached value when the weather API is unavailable, failing or over budget and the value
+     * is still within the stale-if-error window of the cache, otherwise rethrows the exception.
+     */
+    private WeatherResponse staleIfError(String cacheName, String cacheKey, Throwable throwable) {
+        WeatherApiException e = toWeatherApiException(throwable);
+        if (!e.getErrorCode().isWeatherApiFailure()) {
+            throw e;
+        }
+        Cache.ValueWrapper stale = refreshAheadCacheManager.getStale(cacheName, cacheKey);
+        if (stale == null || !(stale.get() instanceof WeatherResponse response)) {
+            throw e;
+        }
+        LOGGER.warn("Weather API unavailable, serving stale {} entry for key: {}", cacheName, cacheKey);
+        return response;
+    }
+
+    /**
+     * Fetches the current weather from the upstream API. Concurrent cache misses of the same cache key
+     * share a single upstream call instead of each firing their own. When the location turns out to be
+     * an alias of another one, the response is cached under the canonical location as well.
+     */
+    private CompletableFuture<WeatherResponse> fetchCurrentWeather(String cacheKey, String location) {
+        return singleFlight.executeAsync(cacheKey, () -> fetchWeather(Priority.CURRENT, location, LocalDate.now(), LocalDate.now())
+                .thenApply(response -> {
+                    String canonicalKey = WeatherCacheKeys.current(locationAliasIndex.learn(location, response));
+                    Cache cache = cacheManager.getCache("weathers-current");
+                    if (!canonicalKey.equals(cacheKey) && cache != null) {
+                        cache.put(canonicalKey, response);
+                    }
+                    return response;
+                }));
     }
 
-    private WeatherResponse fetchWeather(String location, LocalDate date1, LocalDate date2) {
+    /**
+     * Calls the weather API once admitted by the {@link WeatherApiGuard}, calls that are not admitted fail
+     * without reaching it. Calls taking longer than the call timeout fail as the weather API being unavailable.
+     */
+    private CompletableFuture<WeatherResponse> fetchWeather(Priority priority, String location, LocalDate date1, LocalDate date2) {
+        // the call completes on the cache I/O executor rather than the event loop, tallying the Redis
+        // round-trips of what follows it towards the request
+        Executor completion = redisRoundTrips.propagating(cacheIoExecutor);
+        return weatherApiGuard.execute(priority, (int) ChronoUnit.DAYS.between(date1, date2) + 1,
+                () -> callWeatherApi(location, date1, date2, completion));
+    }
 
+    private CompletableFuture<WeatherResponse> callWeatherApi(String location, LocalDate date1, LocalDate date2, Executor completion) {
         String url = String.format("%s/%s/%s/%s?key=%s", baseUrl, location, date1.format(DATE_FORMATTER), date2.format(DATE_FORMATTER), apiKey);
         LOGGER.debug("Making API call to: {}", url);
 
-        try {
-            WeatherResponse response = restTemplate.getForObject(url, WeatherResponse.class);
-            LOGGER.debug("Successfully fetched weather data for location: {}", location);
-            return response;
-        } catch (HttpClientErrorException e) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        return weatherApiWebClient.get()
+                .uri(url)
+                .retrieve()
+                .bodyToMono(WeatherResponse.class)
+                .timeout(callTimeout)
+                .toFuture()
+                .handleAsync((response, e) -> {
+                    if (e == null) {
+                        sample.stop(upstreamTimer(OUTCOME_SUCCESS));
+                        LOGGER.debug("Successfully fetched weather data for location: {}", location);
+                        return response;
+                    }
+                    WeatherApiException exception = translateException(location, e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+                    sample.stop(upstreamTimer(exception.getErrorCode().name()));
+                    throw exception;
+                }, completion);
+    }
+
+    /**
+     * Timer of the weather API calls ending with the given outcome, SUCCESS or the name of a WeatherErrorCode.
+     */
+    private Timer upstreamTimer(String outcome) {
+        return upstreamTimers.computeIfAbsent(outcome, key -> Timer.builder("weather.api.requests")
+                .description("Latency of the weather API calls by outcome")
+                .tag("outcome", outcome)
+                .publishPercentiles(0.5, 0.99, 0.999)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(1))
+                .maximumExpectedValue(Duration.ofSeconds(30))
+                .register(meterRegistry));
+    }
+
+    private WeatherApiException translateException(String location, Throwable e) {
+        if (e instanceof WebClientResponseException responseException && responseException.getStatusCode().is4xxClientError()) {
             LOGGER.error("Client error when fetching weather for location: {}, status: {}, message: {}",
-                    location, e.getStatusCode(), e.getMessage());
-            throw new WeatherApiException(WeatherErrorCode.INVALID_PARAMETERS, e.getMessage(), e);
-            
-        } catch (HttpServerErrorException e) {
+                    location, responseException.getStatusCode(), e.getMessage());
+            return new WeatherApiException(WeatherErrorCode.INVALID_PARAMETERS, e.getMessage(), e);
+
+        } else if (e instanceof WebClientResponseException responseException) {
             LOGGER.error("Server error when fetching weather for location: {}, status: {}, message: {}",
-                    location, e.getStatusCode(), e.getMessage());
-            throw new WeatherApiException(WeatherErrorCode.WEATHER_API_SERVER_ERROR, e.getMessage(), e);
-            
-        } catch (ResourceAccessException e) {
+                    location, responseException.getStatusCode(), e.getMessage());
+            return new WeatherApiException(WeatherErrorCode.WEATHER_API_SERVER_ERROR, e.getMessage(), e);
+
+        } else if (e instanceof TimeoutException) {
+            LOGGER.error("Timeout when fetching weather for location: {}, message: {}",
+                    location, e.getMessage());
+            return new WeatherApiException(WeatherErrorCode.WEATHER_API_UNAVAILABLE, "Weather API call timed out", e);
+
+        } else if (e instanceof WebClientRequestException) {
             LOGGER.error("Connection error when fetching weather for location: {}, message: {}",
                     location, e.getMessage());
-            throw new WeatherApiException(WeatherErrorCode.WEATHER_API_UNAVAILABLE, e.getMessage(), e);
-            
-        } catch (Exception e) {
+            return new WeatherApiException(WeatherErrorCode.WEATHER_API_UNAVAILABLE, e.getMessage(), e);
+
+        } else {
             LOGGER.error("Unexpected error when fetching weather for location: {}, message: {}",
                     location, e.getMessage(), e);
-            throw new WeatherApiException(WeatherErrorCode.UNEXPECTED_ERROR, e.getMessage(), e);
+            return new WeatherApiException(WeatherErrorCode.UNEXPECTED_ERROR, e.getMessage(), e);
+        }
+    }
+
+    private static WeatherApiException toWeatherApiException(Throwable e) {
+        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        if (cause instanceof WeatherApiException weatherApiException) {
+            return weatherApiException;
+        }
+        return new WeatherApiException(WeatherErrorCode.UNEXPECTED_ERROR, cause.getMessage(), cause);
+    }
+
+    private static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            throw toWeatherApiException(e);
         }
     }
 }
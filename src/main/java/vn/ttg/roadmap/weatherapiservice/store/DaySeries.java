@@ -0,0 +1,321 @@
+package vn.ttg.roadmap.weatherapiservice.store;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.TreeMap;
+
+import vn.ttg.roadmap.weatherapiservice.dto.DayWeather;
+
+/**
+ * The days of a location in a columnar layout, read from a memory-mapped file without materializing them.
+ *
+ * <p>Layout: a magic number, the number of days, the location and a dictionary of the condition and
+ * description strings, then one column per field: the dates as epoch days in ascending order, the
+ * maximum and minimum temperatures as doubles, the conditions and descriptions as dictionary codes, -1
+ * standing for null. Weather days repeat a handful of conditions and descriptions, so a year of days
+ * takes about 10 KB, and a range is located with a binary search on the dates column.</p>
+ *
+ * <p>{@link DayWeather} objects are only built when read, through {@link #day(int)} or the lists of
+ * {@link #days(LocalDate, LocalDate)}. Statistics over a range can be computed from the columns with
+ * {@link #epochDay(int)}, {@link #tempmax(int)}, {@link #tempmin(int)} and {@link #conditionCode(int)} without
+ * allocating.</p>
+ *
+ * <p><strong>Thread Safety:</strong> This class is immutable and thread-safe.</p>
+ *
+ * @author ttg
+ */
+public final class DaySeries {
+
+    private static final int MAGIC = 0x57445331;
+
+    private final ByteBuffer buffer;
+    private final String location;
+    private final int size;
+    private final String[] dictionary;
+    private final int epochDays;
+    private final int tempmaxes;
+    private final int tempmins;
+    private final int conditions;
+    private final int descriptions;
+
+    private DaySeries(ByteBuffer buffer) throws IOException {
+        if (buffer.limit() < 12 || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a day series");
+        }
+        this.buffer = buffer;
+        this.size = buffer.getInt(4);
+        int dictionarySize = buffer.getInt(8);
+        ByteBuffer header = buffer.duplicate().position(12);
+        this.location = readString(header);
+        this.dictionary = new String[dictionarySize];
+        for (int i = 0; i < dictionarySize; i++) {
+            dictionary[i] = readString(header);
+        }
+        this.epochDays = header.position();
+        this.tempmaxes = epochDays + Integer.BYTES * size;
+        this.tempmins = tempmaxes + Double.BYTES * size;
+        this.conditions = tempmins + Double.BYTES * size;
+        this.descriptions = conditions + Integer.BYTES * size;
+        if (descriptions + Integer.BYTES * size != buffer.limit()) {
+            throw new IOException("Truncated day series of " + location);
+        }
+    }
+
+    /**
+     * Maps a day series file.
+     *
+     * @param file the file written by {@link #write}
+     * @return the series, or null when the file does not exist
+     * @throws IOException when the file cannot be read or is not a day series
+     */
+    public static DaySeries open(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new DaySeries(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Writes the days of a location to a file, atomically replacing the previous series if any.
+     *
+     * @param file the file of the series
+     * @param location the location of the days
+     * @param days the days, days without a valid date are skipped and later days replace earlier ones of the same date
+     * @throws IOException when the file cannot be written
+     */
+    public static void write(Path file, String location, List<DayWeather> days) throws IOException {
+        write(file, encode(location, days));
+    }
+
+    /**
+     * Writes an encoded series to a file, atomically replacing the previous series if any.
+     *
+     * @param file the file of the series
+     * @param bytes the series, as returned by {@link #encode}
+     * @throws IOException when the file cannot be written
+     */
+    static void write(Path file, ByteBuffer bytes) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+            channel.force(false);
+        }
+        Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Encodes the days of a location in the layout of a series file.
+     *
+     * @param location the location of the days
+     * @param days the days, days without a valid date are skipped and later days replace earlier ones of the same date
+     * @return the encoded series
+     */
+    static ByteBuffer encode(String location, List<DayWeather> days) {
+        TreeMap<Integer, DayWeather> byDate = new TreeMap<>();
+        for (DayWeather day : days) {
+            LocalDate date = dateOf(day);
+            if (date != null) {
+                byDate.put((int) date.toEpochDay(), day);
+            }
+        }
+
+        Map<String, Integer> codes = new HashMap<>();
+        List<byte[]> dictionary = new ArrayList<>();
+        int[] conditionCodes = new int[byDate.size()];
+        int[] descriptionCodes = new int[byDate.size()];
+        int index = 0;
+        for (DayWeather day : byDate.values()) {
+            conditionCodes[index] = code(day.getConditions(), codes, dictionary);
+            descriptionCodes[index] = code(day.getDescription(), codes, dictionary);
+            index++;
+        }
+
+        byte[] locationBytes = location.getBytes(StandardCharsets.UTF_8);
+        int headerSize = 12 + Integer.BYTES + locationBytes.length + dictionary.stream().mapToInt(entry -> Integer.BYTES + entry.length).sum();
+        ByteBuffer buffer = ByteBuffer.allocate(headerSize + byDate.size() * (3 * Integer.BYTES + 2 * Double.BYTES));
+        buffer.putInt(MAGIC).putInt(byDate.size()).putInt(dictionary.size());
+        buffer.putInt(locationBytes.length).put(locationBytes);
+        dictionary.forEach(entry -> buffer.putInt(entry.length).put(entry));
+        byDate.keySet().forEach(buffer::putInt);
+        byDate.values().forEach(day -> buffer.putDouble(day.getTempmax()));
+        byDate.values().forEach(day -> buffer.putDouble(day.getTempmin()));
+        Arrays.stream(conditionCodes).forEach(buffer::putInt);
+        Arrays.stream(descriptionCodes).forEach(buffer::putInt);
+        return buffer.flip();
+    }
+
+    public String location() {
+        return location;
+    }
+
+    /**
+     * @return the number of days of the series
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the index of the day of the given date, or -1 when the series does not hold it
+     */
+    public int indexOf(LocalDate date) {
+        long key = date.toEpochDay();
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int epochDay = epochDay(middle);
+            if (epochDay < key) {
+                low = middle + 1;
+            } else if (epochDay > key) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    public int epochDay(int index) {
+        return buffer.getInt(epochDays + Integer.BYTES * index);
+    }
+
+    public double tempmax(int index) {
+        return buffer.getDouble(tempmaxes + Double.BYTES * index);
+    }
+
+    public double tempmin(int index) {
+        return buffer.getDouble(tempmins + Double.BYTES * index);
+    }
+
+    /**
+     * @return the dictionary code of the conditions of a day, -1 when it has none
+     */
+    public int conditionCode(int index) {
+        return buffer.getInt(conditions + Integer.BYTES * index);
+    }
+
+    /**
+     * @return the string of a dictionary code, null for -1
+     */
+    public String decode(int code) {
+        return code < 0 ? null : dictionary[code];
+    }
+
+    /**
+     * @return the number of strings of the dictionary, codes range from 0 to this number excluded
+     */
+    public int dictionarySize() {
+        return dictionary.length;
+    }
+
+    /**
+     * Builds the day at the given index.
+     */
+    public DayWeather day(int index) {
+        return new DayWeather(LocalDate.ofEpochDay(epochDay(index)).toString(), tempmax(index), tempmin(index),
+                decode(conditionCode(index)), decode(buffer.getInt(descriptions + Integer.BYTES * index)));
+    }
+
+    /**
+     * Returns the days of a date range, each built when first read from the list.
+     *
+     * @param startDate the first date of the range
+     * @param endDate the last date of the range
+     * @return the days of the range, or null when the series does not hold every one of them
+     */
+    public List<DayWeather> days(LocalDate startDate, LocalDate endDate) {
+        return holds(startDate, endDate) ? new Days(indexOf(startDate), indexOf(endDate) + 1) : null;
+    }
+
+    /**
+     * @return whether the series holds every day of a date range
+     */
+    public boolean holds(LocalDate startDate, LocalDate endDate) {
+        int from = indexOf(startDate);
+        int to = indexOf(endDate);
+        // dates are unique and ascending, the range is complete when its ends are as far apart as their indexes
+        return from >= 0 && to >= 0 && to - from == endDate.toEpochDay() - startDate.toEpochDay();
+    }
+
+    /**
+     * @return every day of the series, built when first read from the list
+     */
+    public List<DayWeather> days() {
+        return new Days(0, size);
+    }
+
+    private static int code(String value, Map<String, Integer> codes, List<byte[]> dictionary) {
+        if (value == null) {
+            return -1;
+        }
+        return codes.computeIfAbsent(value, key -> {
+            dictionary.add(key.getBytes(StandardCharsets.UTF_8));
+            return dictionary.size() - 1;
+        });
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return the date of a day, or null when it has none or an invalid one
+     */
+    public static LocalDate dateOf(DayWeather day) {
+        try {
+            return day != null && day.getDatetime() != null ? LocalDate.parse(day.getDatetime()) : null;
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Days of an index range, built on every read so that the series itself is never modified through them.
+     */
+    private final class Days extends AbstractList<DayWeather> implements RandomAccess {
+
+        private final int from;
+        private final int to;
+
+        private Days(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public DayWeather get(int index) {
+            if (index < 0 || index >= to - from) {
+                throw new IndexOutOfBoundsException(index);
+            }
+            return day(from + index);
+        }
+
+        @Override
+        public int size() {
+            return to - from;
+        }
+    }
+}
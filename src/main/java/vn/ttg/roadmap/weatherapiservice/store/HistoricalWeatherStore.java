@@ -0,0 +1,693 @@
+package vn.ttg.roadmap.weatherapiservice.store;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import vn.ttg.roadmap.weatherapiservice.cache.WeatherResponseRedisSerializer;
+import vn.ttg.roadmap.weatherapiservice.conf.RedisCacheConfig;
+import vn.ttg.roadmap.weatherapiservice.dto.DayWeather;
+import vn.ttg.roadmap.weatherapiservice.dto.WeatherResponse;
+
+/**
+ * Durable store of past weather days, so that a day that no longer changes is bought from the weather
+ * API at most once, whatever the TTL of the historical cache or the fate of Redis.
+ *
+ * <p>Entries are kept in {@code weather.historical.store.directory} by canonical location. The days of a
+ * location are kept in a columnar {@link DaySeries} file of the {@code series} directory, memory mapped and
+ * read without materializing the days that are not requested. At most
+ * {@code weather.historical.store.max-open-series} series are kept mapped. The location level data of the
+ * latest response (resolved address, timezone, description, alerts) and the aliases of the location are
+ * appended to a single log file instead. Each record of the log is {@code [length][crc32][key length][key][value]},
+ * values in the binary codec of the caches. The keys are indexed in memory, records are written to and read
+ * from a memory mapping of the log. The mapping is twice as large as the log when it is remapped, so that
+ * appends remap the log a logarithmic number of times, the space past the last record being zeros. On
+ * startup the log is scanned to rebuild the index up to the first zero length, and a torn last record left
+ * by a crash is truncated.</p>
+ *
+ * <p>Days are stored once they are {@code weather.historical.store.settle-after} old, more recent days may
+ * still be revised by the weather API. Writes are done and synced by a single writer thread, off the
+ * request path, queuing at most {@code weather.historical.store.queue-capacity} writes. The days added to a
+ * location are merged into its series, rewritten to a new file which atomically replaces the previous one:
+ * a year of days takes about 10 KB, so the rewrite costs about as much as the response it stores.
+ * Overwritten records of the log, such as the location level data, are garbage: once it takes more than
+ * {@code weather.historical.store.compaction-ratio} of the log, the live records are copied to a new log
+ * which atomically replaces the old one.</p>
+ *
+ * <p>The store is bounded by {@code weather.historical.store.max-size}, counting both the records of the
+ * log and the series files. Writes that would take the store over the bound are dropped, after compacting
+ * the log when it holds garbage. A store found larger than the bound on startup, such as after lowering
+ * it, is compacted, and served read-only when still larger.</p>
+ *
+ * <p>Range lookups are counted in the {@code weather.historical.store.lookups} meter tagged with
+ * {@code result} (hit when every day of the range is stored, miss otherwise), the size of the store and
+ * the number of entries of the log are published as the {@code weather.historical.store.size} and
+ * {@code weather.historical.store.entries} gauges. Dropped writes are counted in the
+ * {@code weather.historical.store.dropped} meter tagged with {@code reason} (queue-full or store-full).</p>
+ *
+ * <p><strong>Thread Safety:</strong> This class is thread-safe and can be used concurrently by multiple threads.</p>
+ *
+ * @author ttg
+ */
+@Component
+public class HistoricalWeatherStore {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(HistoricalWeatherStore.class);
+
+    private static final String LOG_FILE = "historical.log";
+    private static final String COMPACT_FILE = "historical.log.compact";
+    private static final String SERIES_DIRECTORY = "series";
+    private static final String SERIES_SUFFIX = ".days";
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final long COMPACTION_MIN_GARBAGE = 1 << 20;
+    private static final long MIN_MAPPING_SIZE = 1 << 20;
+
+    private final boolean enabled;
+    private final Path directory;
+    private final long maxSize;
+    private final double compactionRatio;
+    private final Duration settleAfter;
+    private final RedisSerializer<Object> codec;
+    private final Cache<String, Optional<DaySeries>> series;
+    private final Counter hitCounter;
+    private final Counter missCounter;
+    private final Counter queueFullCounter;
+    private final Counter storeFullCounter;
+
+    /**
+     * Single writer thread, writes arriving while its queue is full are dropped since the days are fetched
+     * again on the next miss.
+     */
+    private final ThreadPoolExecutor writer;
+
+    /**
+     * The log being appended to, replaced as a whole on compaction so that readers always see a mapping
+     * and an index of the same file.
+     */
+    private volatile Segment segment;
+
+    /**
+     * Bytes of the overwritten records of the log, only updated by the writer thread.
+     */
+    private volatile long garbage;
+
+    /**
+     * Bytes of the series files, only updated by the writer thread once the store is open.
+     */
+    private volatile long seriesSize;
+
+    public HistoricalWeatherStore(ObjectMapper objectMapper, MeterRegistry meterRegistry,
+                                  @Value("${weather.historical.store.enabled}") boolean enabled,
+                                  @Value("${weather.historical.store.directory}") Path directory,
+                                  @Value("${weather.historical.store.max-size}") DataSize maxSize,
+                                  @Value("${weather.historical.store.compaction-ratio}") double compactionRatio,
+                                  @Value("${weather.historical.store.settle-after}") Duration settleAfter,
+                                  @Value("${weather.historical.store.max-open-series}") long maxOpenSeries,
+                                  @Value("${weather.historical.store.queue-capacity}") int queueCapacity) {
+        this.enabled = enabled;
+        this.directory = directory;
+        this.maxSize = Math.min(maxSize.toBytes(), Integer.MAX_VALUE);
+        this.compactionRatio = compactionRatio;
+        this.settleAfter = settleAfter;
+        this.codec = new WeatherResponseRedisSerializer(RedisCacheConfig.jsonCacheValueSerializer(objectMapper),
+                WeatherResponseRedisSerializer.Compression.LZ4, 1024);
+        this.series = Caffeine.newBuilder().maximumSize(maxOpenSeries).build();
+        this.hitCounter = lookupCounter(meterRegistry, "hit");
+        this.missCounter = lookupCounter(meterRegistry, "miss");
+        this.queueFullCounter = droppedCounter(meterRegistry, "queue-full");
+        this.storeFullCounter = droppedCounter(meterRegistry, "store-full");
+        this.writer = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+            Thread thread = new Thread(runnable, "historical-store");
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.AbortPolicy());
+        Gauge.builder("weather.historical.store.size", this, store -> store.segment != null ? store.size() : 0)
+                .description("Size of the log and of the day series of the historical weather store")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("weather.historical.store.entries", this, store -> store.segment != null ? store.segment.index().size() : 0)
+                .description("Number of entries of the log of the historical weather store")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void open() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        Files.createDirectories(directory.resolve(SERIES_DIRECTORY));
+        Files.deleteIfExists(directory.resolve(COMPACT_FILE));
+        FileChannel channel = FileChannel.open(directory.resolve(LOG_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segment = recover(channel);
+        seriesSize = sizeOfSeries();
+        if (size() > maxSize) {
+            shrink();
+        }
+        LOGGER.info("Opened historical weather store {} with {} entries, {} bytes", directory, segment.index().size(), size());
+    }
+
+    /**
+     * Sums the sizes of the series files, deleting the temporary files left by a crash during a rewrite.
+     */
+    private long sizeOfSeries() throws IOException {
+        long total = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory.resolve(SERIES_DIRECTORY))) {
+            for (Path file : files) {
+                if (file.getFileName().toString().endsWith(SERIES_SUFFIX)) {
+                    total += Files.size(file);
+                } else {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Bytes held by the store, the records of the log and the series files, compared to the max size.
+     */
+    private long size() {
+        return segment.size() + seriesSize;
+    }
+
+    /**
+     * Compacts the recovered log of a store larger than the max size, such as one grown under a larger max
+     * size. A store still over it is kept as is and served, further writes being dropped, rather than
+     * failing startup.
+     */
+    private void shrink() {
+        try {
+            compact();
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Failed to compact historical weather store {}: {}", directory, e.getMessage());
+        }
+        if (size() > maxSize) {
+            LOGGER.warn("Historical weather store {} holds {} bytes over its max size of {} bytes, opened read-only",
+                    directory, size(), maxSize);
+        }
+    }
+
+    @PreDestroy
+    void close() throws IOException, InterruptedException {
+        writer.shutdown();
+        if (!writer.awaitTermination(5, TimeUnit.SECONDS)) {
+            LOGGER.warn("Historical weather store closed with {} writes pending, dropping them", writer.shutdownNow().size());
+            writer.awaitTermination(5, TimeUnit.SECONDS);
+        }
+        if (segment != null) {
+            segment.channel().close();
+        }
+    }
+
+    /**
+     * Returns the weather of a location for a date range when every day of it is stored.
+     *
+     * @param location the canonical location, or an alias of it recorded by {@link #store}
+     * @param startDate the first date of the range
+     * @param endDate the last date of the range
+     * @return the weather of the whole range, or null when the store is disabled or a day is missing
+     */
+    public WeatherResponse getRange(String location, LocalDate startDate, LocalDate endDate) {
+        if (!enabled) {
+            return null;
+        }
+        String canonical = canonicalOf(location);
+        WeatherResponse meta = read(metaKey(canonical)) instanceof WeatherResponse response ? response : null;
+        if (meta == null) {
+            missCounter.increment();
+            return null;
+        }
+        DaySeries days = seriesOf(canonical);
+        List<DayWeather> range = days != null ? days.days(startDate, endDate) : null;
+        if (range == null) {
+            missCounter.increment();
+            return null;
+        }
+        hitCounter.increment();
+        return new WeatherResponse(meta.getResolvedAddress(), meta.getTimezone(), meta.getDescription(), range, meta.getAlerts());
+    }
+
+    /**
+     * Returns the stored days of a location for a date range, without counting a lookup.
+     *
+     * @param location the canonical location, or an alias of it recorded by {@link #store}
+     * @param startDate the first date of the range
+     * @param endDate the last date of the range
+     * @return the days of the range by index from the start date, null for the days not stored
+     */
+    public DayWeather[] getDays(String location, LocalDate startDate, LocalDate endDate) {
+        DayWeather[] days = new DayWeather[(int) (endDate.toEpochDay() - startDate.toEpochDay() + 1)];
+        if (!enabled) {
+            return days;
+        }
+        DaySeries stored = seriesOf(canonicalOf(location));
+        if (stored == null) {
+            return days;
+        }
+        for (int i = 0; i < days.length; i++) {
+            int index = stored.indexOf(startDate.plusDays(i));
+            days[i] = index >= 0 ? stored.day(index) : null;
+        }
+        return days;
+    }
+
+    /**
+     * Returns the series of a location when it holds every day of a date range, without counting a lookup.
+     * Statistics over the range can be computed from the columns of the series without building its days.
+     *
+     * @param location the canonical location, or an alias of it recorded by {@link #store}
+     * @param startDate the first date of the range
+     * @param endDate the last date of the range
+     * @return the series, or null when the store is disabled or a day is missing
+     */
+    public DaySeries getSeries(String location, LocalDate startDate, LocalDate endDate) {
+        if (!enabled) {
+            return null;
+        }
+        DaySeries stored = seriesOf(canonicalOf(location));
+        return stored != null && stored.holds(startDate, endDate) ? stored : null;
+    }
+
+    /**
+     * Stores the settled days of a weather API response that are not stored yet, along with the location
+     * level data of the response and the requested location as an alias of the canonical one. The entries
+     * are written in the background.
+     *
+     * @param location the location as requested
+     * @param canonicalLocation the canonical location of the response
+     * @param response the response holding the days
+     */
+    public void store(String location, String canonicalLocation, WeatherResponse response) {
+        if (!enabled || response == null || response.getDays() == null) {
+            return;
+        }
+        LocalDate settled = LocalDate.now().minusDays(settleAfter.toDays());
+        DaySeries stored = seriesOf(canonicalLocation);
+        List<DayWeather> days = new ArrayList<>(response.getDays().size());
+        for (DayWeather day : response.getDays()) {
+            LocalDate date = DaySeries.dateOf(day);
+            if (date != null && !date.isAfter(settled) && (stored == null || stored.indexOf(date) < 0)) {
+                days.add(day);
+            }
+        }
+        if (days.isEmpty()) {
+            return;
+        }
+        try {
+            writer.execute(() -> write(location, canonicalLocation, response, days));
+        } catch (RejectedExecutionException e) {
+            if (writer.isShutdown()) {
+                LOGGER.debug("Historical weather store closed, dropping {} days of {}", days.size(), canonicalLocation);
+            } else {
+                queueFullCounter.increment();
+                LOGGER.debug("Historical weather store queue full, dropping {} days of {}", days.size(), canonicalLocation);
+            }
+        }
+    }
+
+    private void write(String location, String canonicalLocation, WeatherResponse response, List<DayWeather> days) {
+        try {
+            List<byte[]> records = new ArrayList<>(days.size() + 2);
+            Segment current = segment;
+            if (!location.equals(canonicalLocation) && !canonicalLocation.equals(readAlias(current, location))) {
+                records.add(record(aliasKey(location), canonicalLocation.getBytes(StandardCharsets.UTF_8)));
+            }
+            byte[] meta = codec.serialize(new WeatherResponse(response.getResolvedAddress(), response.getTimezone(),
+                    response.getDescription(), null, response.getAlerts()));
+            if (!Arrays.equals(meta, readBytes(current, metaKey(canonicalLocation)))) {
+                records.add(record(metaKey(canonicalLocation), meta));
+            }
+            // the days are dropped with the location level data, without which they cannot be served
+            if (!records.isEmpty() && !append(records)) {
+                return;
+            }
+            appendDays(canonicalLocation, days);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Failed to store historical weather of {}: {}", canonicalLocation, e.getMessage());
+        }
+    }
+
+    /**
+     * Rewrites the series of a location with the given days added, the days already stored being kept.
+     * The series is left as is when every day is already stored, such as when the same days were queued
+     * by concurrent requests, and when the rewritten series would take the store over its max size.
+     */
+    private void appendDays(String location, List<DayWeather> days) throws IOException {
+        DaySeries stored = seriesOf(location);
+        List<DayWeather> added = stored == null ? days
+                : days.stream().filter(day -> {
+                    LocalDate date = DaySeries.dateOf(day);
+                    return date != null && stored.indexOf(date) < 0;
+                }).toList();
+        if (added.isEmpty()) {
+            return;
+        }
+        List<DayWeather> merged = new ArrayList<>(added);
+        if (stored != null) {
+            merged.addAll(stored.days());
+        }
+        Path file = seriesFile(location);
+        ByteBuffer encoded = DaySeries.encode(location, merged);
+        long growth = encoded.remaining() - (Files.exists(file) ? Files.size(file) : 0);
+        if (size() + growth > maxSize) {
+            compact();
+        }
+        if (size() + growth > maxSize) {
+            storeFullCounter.increment();
+            LOGGER.warn("Historical weather store is full at {} bytes, dropping {} days of {}", size(), added.size(), location);
+            return;
+        }
+        DaySeries.write(file, encoded);
+        seriesSize += growth;
+        series.put(location, Optional.ofNullable(DaySeries.open(file)));
+    }
+
+    /**
+     * Returns the mapped series of a location, mapping it on first use.
+     */
+    private DaySeries seriesOf(String location) {
+        return series.get(location, key -> {
+            try {
+                DaySeries days = DaySeries.open(seriesFile(key));
+                if (days != null && !days.location().equals(key)) {
+                    LOGGER.warn("Ignoring day series of {} found for {}", days.location(), key);
+                    return Optional.empty();
+                }
+                return Optional.ofNullable(days);
+            } catch (IOException e) {
+                LOGGER.warn("Failed to read the day series of {}: {}", key, e.getMessage());
+                return Optional.empty();
+            }
+        }).orElse(null);
+    }
+
+    private Path seriesFile(String location) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(location.getBytes(StandardCharsets.UTF_8));
+            return directory.resolve(SERIES_DIRECTORY).resolve(HexFormat.of().formatHex(digest) + SERIES_SUFFIX);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Appends records to the mapping of the log, remapping it when they do not fit, syncs them and only then
+     * publishes and indexes them.
+     *
+     * @return false when the records were dropped, the store being full
+     */
+    private boolean append(List<byte[]> records) throws IOException {
+        long length = records.stream().mapToLong(record -> record.length).sum();
+        if (size() + length > maxSize) {
+            compact();
+        }
+        Segment current = segment;
+        if (current.size() + seriesSize + length > maxSize) {
+            storeFullCounter.increment();
+            LOGGER.warn("Historical weather store is full at {} bytes, dropping {} records", current.size() + seriesSize, records.size());
+            return false;
+        }
+
+        long end = current.size() + length;
+        MappedByteBuffer buffer = current.buffer();
+        if (end > buffer.capacity()) {
+            buffer = map(current.channel(), end);
+        }
+        int position = (int) current.size();
+        for (byte[] record : records) {
+            buffer.put(position, record);
+            position += record.length;
+        }
+        buffer.force((int) current.size(), (int) length);
+
+        // the segment mapping the records is published before they are indexed, see readLatest
+        Segment appended = new Segment(current.channel(), buffer, end, current.index());
+        segment = appended;
+        long offset = current.size();
+        for (byte[] record : records) {
+            Long previous = appended.index().put(keyOf(record), location(offset, record.length));
+            if (previous != null) {
+                garbage += lengthOf(previous);
+            }
+            offset += record.length;
+        }
+
+        if (garbage >= COMPACTION_MIN_GARBAGE && garbage > appended.size() * compactionRatio) {
+            compact();
+        }
+        return true;
+    }
+
+    /**
+     * Copies the live records to a new log that atomically replaces the current one. Readers keep reading
+     * the previous mapping until they see the new segment.
+     */
+    private void compact() throws IOException {
+        Segment current = segment;
+        if (garbage == 0) {
+            return;
+        }
+        Path compactFile = directory.resolve(COMPACT_FILE);
+        FileChannel channel = FileChannel.open(compactFile, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            List<Long> locations = new ArrayList<>(current.index().values());
+            locations.sort(null);
+            Map<String, Long> index = new ConcurrentHashMap<>(locations.size());
+            long position = 0;
+            for (long location : locations) {
+                ByteBuffer record = current.buffer().slice(offsetOf(location), lengthOf(location));
+                index.put(keyOf(record), location(position, lengthOf(location)));
+                while (record.hasRemaining()) {
+                    position += channel.write(record, position);
+                }
+            }
+            channel.force(false);
+            Files.move(compactFile, directory.resolve(LOG_FILE), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+            LOGGER.info("Compacted historical weather store from {} to {} bytes", current.size(), position);
+            segment = new Segment(channel, map(channel, position), position, index);
+            garbage = 0;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        current.channel().close();
+    }
+
+    /**
+     * Indexes the records of the log up to the first zero length, truncating it after the last complete
+     * record when followed by a torn one. The log may be larger than the max size, which is checked by
+     * the caller.
+     */
+    private Segment recover(FileChannel channel) throws IOException {
+        long fileSize = Math.min(channel.size(), Integer.MAX_VALUE);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+        boolean torn = false;
+        Map<String, Long> index = new ConcurrentHashMap<>();
+        long dead = 0;
+        int position = 0;
+        while (position + RECORD_HEADER_SIZE <= fileSize) {
+            int length = buffer.getInt(position);
+            if (length == 0) {
+                // the zeros past the last record of the mapping
+                break;
+            }
+            if (length < 2 || position + RECORD_HEADER_SIZE + (long) length > fileSize
+                    || crc(buffer.slice(position + RECORD_HEADER_SIZE, length)) != buffer.getInt(position + 4)) {
+                torn = true;
+                break;
+            }
+            ByteBuffer record = buffer.slice(position, RECORD_HEADER_SIZE + length);
+            Long previous = index.put(keyOf(record), location(position, record.limit()));
+            if (previous != null) {
+                dead += lengthOf(previous);
+            }
+            position += record.limit();
+        }
+        if (torn || position < fileSize && position + RECORD_HEADER_SIZE > fileSize) {
+            LOGGER.warn("Truncating historical weather store {} from {} to {} bytes after an incomplete record", directory, fileSize, position);
+            channel.truncate(position);
+        }
+        garbage = dead;
+        return new Segment(channel, map(channel, position), position, index);
+    }
+
+    /**
+     * Maps a log holding size bytes, twice as large as them to leave room for appends, extending the file
+     * with zeros when needed. A log over the max size is mapped as is.
+     */
+    private MappedByteBuffer map(FileChannel channel, long size) throws IOException {
+        long mappingSize = Math.max(size, Math.min(maxSize, Math.max(MIN_MAPPING_SIZE, 2 * size)));
+        return channel.map(FileChannel.MapMode.READ_WRITE, 0, mappingSize);
+    }
+
+    private String canonicalOf(String location) {
+        byte[] value = readLatest(aliasKey(location));
+        return value != null ? new String(value, StandardCharsets.UTF_8) : location;
+    }
+
+    private Object read(String key) {
+        byte[] value = readLatest(key);
+        return value != null ? codec.deserialize(value) : null;
+    }
+
+    /**
+     * Reads the value of a key from the latest segment. An entry indexed after the segment was read may lie
+     * past its mapping, the segment mapping it having been published before the entry was indexed: it is
+     * read from the segment read again, which maps it when it indexes the same log. When the log has been
+     * compacted in between, the entry is looked up again and read as missing if it was appended since.
+     */
+    private byte[] readLatest(String key) {
+        Segment current = segment;
+        Long location = current.index().get(key);
+        if (location == null) {
+            return null;
+        }
+        if (!maps(current, location)) {
+            Segment latest = segment;
+            if (latest.index() != current.index()) {
+                location = latest.index().get(key);
+                if (location == null || !maps(latest, location)) {
+                    return null;
+                }
+            }
+            current = latest;
+        }
+        return readBytes(current, location);
+    }
+
+    private static boolean maps(Segment segment, long location) {
+        return offsetOf(location) + (long) lengthOf(location) <= segment.size();
+    }
+
+    private static String readAlias(Segment segment, String location) {
+        byte[] value = readBytes(segment, aliasKey(location));
+        return value != null ? new String(value, StandardCharsets.UTF_8) : null;
+    }
+
+    private static byte[] readBytes(Segment segment, String key) {
+        Long location = segment.index().get(key);
+        return location != null ? readBytes(segment, location) : null;
+    }
+
+    private static byte[] readBytes(Segment segment, long location) {
+        ByteBuffer record = segment.buffer().slice(offsetOf(location), lengthOf(location));
+        int keyLength = record.getShort(RECORD_HEADER_SIZE);
+        byte[] value = new byte[record.limit() - RECORD_HEADER_SIZE - 2 - keyLength];
+        record.get(RECORD_HEADER_SIZE + 2 + keyLength, value);
+        return value;
+    }
+
+    private static byte[] record(String key, byte[] value) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + 2 + keyBytes.length + value.length);
+        record.putInt(2 + keyBytes.length + value.length);
+        record.putInt(0);
+        record.putShort((short) keyBytes.length);
+        record.put(keyBytes);
+        record.put(value);
+        record.putInt(4, crc(record.slice(RECORD_HEADER_SIZE, record.limit() - RECORD_HEADER_SIZE)));
+        return record.array();
+    }
+
+    private static String keyOf(byte[] record) {
+        return keyOf(ByteBuffer.wrap(record));
+    }
+
+    private static String keyOf(ByteBuffer record) {
+        int keyLength = record.getShort(RECORD_HEADER_SIZE);
+        byte[] key = new byte[keyLength];
+        record.get(RECORD_HEADER_SIZE + 2, key);
+        return new String(key, StandardCharsets.UTF_8);
+    }
+
+    private static int crc(ByteBuffer bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Offset and length of a record packed in a long, offsets being below the 2 GB max size.
+     */
+    private static long location(long offset, int length) {
+        return offset << 32 | length;
+    }
+
+    private static int offsetOf(long location) {
+        return (int) (location >>> 32);
+    }
+
+    private static int lengthOf(long location) {
+        return (int) location;
+    }
+
+    private static String aliasKey(String location) {
+        return "alias:" + location;
+    }
+
+    private static String metaKey(String location) {
+        return "meta:" + location;
+    }
+
+    private static Counter droppedCounter(MeterRegistry meterRegistry, String reason) {
+        return Counter.builder("weather.historical.store.dropped")
+                .description("Writes to the historical weather store dropped")
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+
+    private static Counter lookupCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("weather.historical.store.lookups")
+                .description("Historical range lookups in the historical weather store")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    /**
+     * A log file with its mapping, the size of its records and their index.
+     */
+    private record Segment(FileChannel channel, MappedByteBuffer buffer, long size, Map<String, Long> index) {
+    }
+}
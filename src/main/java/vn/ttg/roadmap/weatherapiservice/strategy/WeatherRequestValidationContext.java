@@ -41,6 +41,7 @@ public class WeatherRequestValidationContext {
     public enum Type {
         LOCATION,
         DATE_RANGE,
+        CHUNKED_DATE_RANGE,
         FORECAST,
         HISTORICAL,
     }
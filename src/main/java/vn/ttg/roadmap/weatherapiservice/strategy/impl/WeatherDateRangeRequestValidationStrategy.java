@@ -3,8 +3,6 @@ package vn.ttg.roadmap.weatherapiservice.strategy.impl;
 import java.time.LocalDate;
 import java.time.temporal.ChronoUnit;
 
-import org.springframework.stereotype.Component;
-
 import vn.ttg.roadmap.weatherapiservice.dto.WeatherRequest;
 import vn.ttg.roadmap.weatherapiservice.dto.WeatherRequestValidationResult;
 import vn.ttg.roadmap.weatherapiservice.exception.WeatherErrorCode;
@@ -12,9 +10,30 @@ import vn.ttg.roadmap.weatherapiservice.strategy.WeatherRequestValidationContext
 import vn.ttg.roadmap.weatherapiservice.strategy.WeatherRequestValidationStrategy;
 import vn.ttg.roadmap.weatherapiservice.visitor.WeatherRequestDataExtractor;
 
-@Component
+/**
+ * Validates the date range of a request, up to a number of days which depends on how the range is loaded.
+ *
+ * <p>Ranges loaded in a single weather API call are up to {@link #WEATHER_API_MAX_DAYS} days long, ranges
+ * fetched in windows or read from the historical store may be longer. An instance is declared for each
+ * validation type in {@link vn.ttg.roadmap.weatherapiservice.conf.WeatherRequestValidationConfig}.</p>
+ *
+ * @author ttg
+ */
 public class WeatherDateRangeRequestValidationStrategy implements WeatherRequestValidationStrategy {
 
+    /**
+     * Days of the longest range loaded in a single weather API call.
+     */
+    public static final int WEATHER_API_MAX_DAYS = 15;
+
+    private final WeatherRequestValidationContext.Type type;
+    private final int maxDays;
+
+    public WeatherDateRangeRequestValidationStrategy(WeatherRequestValidationContext.Type type, int maxDays) {
+        this.type = type;
+        this.maxDays = maxDays;
+    }
+
     @Override
     public WeatherRequestValidationResult validate(WeatherRequest request) {
         LocalDate startDate = WeatherRequestDataExtractor.getStartDate(request);
@@ -27,14 +46,15 @@ public class WeatherDateRangeRequestValidationStrategy implements WeatherRequest
             return WeatherRequestValidationResult.failure(WeatherErrorCode.START_DATE_AFTER_END_DATE);
         }
         long numberOfDays = ChronoUnit.DAYS.between(startDate, endDate) + 1;
-        if (numberOfDays > 15) {
-            return WeatherRequestValidationResult.failure(WeatherErrorCode.MAX_DAYS_EXCEEDED);
+        if (numberOfDays > maxDays) {
+            return WeatherRequestValidationResult.failure(WeatherErrorCode.MAX_DAYS_EXCEEDED,
+                    String.format("Maximum days cannot be more than %d days", maxDays));
         }
         return WeatherRequestValidationResult.success();
     }
 
     @Override
     public WeatherRequestValidationContext.Type getType() {
-        return WeatherRequestValidationContext.Type.DATE_RANGE;
+        return type;
     }
 }
@@ -0,0 +1,190 @@
+package vn.ttg.roadmap.weatherapiservice.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.awaitility.Awaitility.await;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.BiFunction;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import vn.ttg.roadmap.weatherapiservice.dto.DayWeather;
+import vn.ttg.roadmap.weatherapiservice.dto.WeatherResponse;
+
+/**
+ * Tests of the assembly of date ranges from the days cached by {@link DailyWeatherCache}, and of the
+ * sub-ranges of missing days fetched from the weather API.
+ *
+ * @author ttg
+ */
+class DailyWeatherCacheTest {
+
+    private static final String CACHE = "weathers-forecast";
+    private static final String LOCATION = "hanoi";
+    private static final LocalDate START = LocalDate.of(2024, 1, 1);
+
+    private final RefreshAheadCacheManager cacheManager = new RefreshAheadCacheManager(new ConcurrentMapCacheManager(CACHE),
+            Map.of(CACHE, new RefreshAheadCacheManager.Policy(Duration.ofHours(1), Duration.ZERO, Duration.ZERO, null)),
+            Runnable::run, 1000);
+    private final DailyWeatherCache dailyWeatherCache = new DailyWeatherCache();
+    private final List<LocalDate[]> fetched = new ArrayList<>();
+    private Cache cache;
+
+    @BeforeEach
+    void setUp() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        ReflectionTestUtils.setField(dailyWeatherCache, "cacheManager", cacheManager);
+        ReflectionTestUtils.setField(dailyWeatherCache, "singleFlight", new SingleFlight(meterRegistry));
+        ReflectionTestUtils.setField(dailyWeatherCache, "locationAliasIndex", new LocationAliasIndex(meterRegistry, 2, 1000));
+        ReflectionTestUtils.setField(dailyWeatherCache, "refreshAheadCacheManager", cacheManager);
+        ReflectionTestUtils.setField(dailyWeatherCache, "cacheIoExecutor", (Executor) Runnable::run);
+        ReflectionTestUtils.setField(dailyWeatherCache, "mergeGap", 2);
+        ReflectionTestUtils.setField(dailyWeatherCache, "maxTrackedValues", 1000L);
+        dailyWeatherCache.init();
+        cache = cacheManager.getCache(CACHE);
+    }
+
+    @Test
+    void missingDaysSeparatedByUpToMergeGapCachedDaysAreFetchedInOneCall() {
+        cacheMeta();
+        // days 0-2 missing, 3-4 cached, 5-6 missing, 7-10 cached, 11-13 missing
+        cacheDays(3, 4);
+        cacheDays(7, 10);
+
+        WeatherResponse response = getRange(0, 13);
+
+        assertThat(fetched).extracting(range -> range[0], range -> range[1]).containsExactly(
+                tuple(day(0), day(6)),
+                tuple(day(11), day(13)));
+        assertThat(response.getDays()).extracting(DayWeather::getDatetime)
+                .containsExactlyElementsOf(dates(0, 13));
+        // the cached days inside a merged sub-range are served from the cache, not from the call
+        assertThat(response.getDays()).extracting(DayWeather::getConditions).containsExactly(
+                "Fetched", "Fetched", "Fetched", "Cached", "Cached", "Fetched", "Fetched",
+                "Cached", "Cached", "Cached", "Cached", "Fetched", "Fetched", "Fetched");
+    }
+
+    @Test
+    void missingDaysSeparatedByMoreThanMergeGapCachedDaysAreFetchedSeparately() {
+        cacheMeta();
+        cacheDays(1, 3);
+
+        getRange(0, 5);
+
+        assertThat(fetched).extracting(range -> range[0], range -> range[1]).containsExactly(
+                tuple(day(0), day(0)),
+                tuple(day(4), day(5)));
+    }
+
+    @Test
+    void fetchedDaysAreCachedForOverlappingRanges() {
+        getRange(0, 6);
+        fetched.clear();
+
+        WeatherResponse response = getRange(2, 9);
+
+        assertThat(fetched).extracting(range -> range[0], range -> range[1])
+                .containsExactly(tuple(day(7), day(9)));
+        assertThat(response.getDays()).extracting(DayWeather::getDatetime).containsExactlyElementsOf(dates(2, 9));
+        assertThat(response.getResolvedAddress()).isEqualTo(LOCATION);
+    }
+
+    @Test
+    void fullyCachedRangeIsServedWithoutCall() {
+        cacheMeta();
+        cacheDays(0, 4);
+
+        WeatherResponse response = getRange(0, 4);
+
+        assertThat(fetched).isEmpty();
+        assertThat(response.getDays()).extracting(DayWeather::getDatetime).containsExactlyElementsOf(dates(0, 4));
+    }
+
+    @Test
+    void fullyCachedRangeWithoutMetadataFetchesItsFirstDay() {
+        cacheDays(0, 4);
+
+        WeatherResponse response = getRange(0, 4);
+
+        assertThat(fetched).extracting(range -> range[0], range -> range[1])
+                .containsExactly(tuple(day(0), day(0)));
+        assertThat(response.getDays()).extracting(DayWeather::getConditions).containsOnly("Cached");
+        assertThat(cache.get(WeatherCacheKeys.meta(LOCATION))).isNotNull();
+    }
+
+    @Test
+    void rangesAssembledFromTheSameWritesHaveTheSameWriteTimes() {
+        cacheMeta();
+        cacheDays(0, 2);
+
+        WeatherResponse first = getRange(0, 2);
+        WeatherResponse second = getRange(0, 2);
+
+        assertThat(second).isNotSameAs(first);
+        assertThat(dailyWeatherCache.getWrittenAt(first)).hasSize(4).isEqualTo(dailyWeatherCache.getWrittenAt(second));
+
+        long rewrittenAfter = System.currentTimeMillis();
+        await().until(() -> System.currentTimeMillis() > rewrittenAfter);
+        cacheDays(1, 1);
+        long[] writtenAt = dailyWeatherCache.getWrittenAt(getRange(0, 2));
+
+        assertThat(writtenAt[2]).isGreaterThan(rewrittenAfter);
+        assertThat(writtenAt).isNotEqualTo(dailyWeatherCache.getWrittenAt(first));
+    }
+
+    @Test
+    void fetchedRangesHaveTheWriteTimesOfTheirFetchedDays() {
+        cacheMeta();
+        cacheDays(0, 1);
+
+        WeatherResponse response = getRange(0, 3);
+
+        assertThat(fetched).isNotEmpty();
+        assertThat(dailyWeatherCache.getWrittenAt(response)).hasSize(5).doesNotContain(0L);
+        assertThat(dailyWeatherCache.getWrittenAt(new WeatherResponse())).isNull();
+    }
+
+    private WeatherResponse getRange(int from, int to) {
+        BiFunction<LocalDate, LocalDate, CompletableFuture<WeatherResponse>> fetcher = (start, end) -> {
+            fetched.add(new LocalDate[] {start, end});
+            List<DayWeather> days = new ArrayList<>();
+            start.datesUntil(end.plusDays(1)).forEach(date -> days.add(dayWeather(date, "Fetched")));
+            return CompletableFuture.completedFuture(new WeatherResponse(LOCATION, "Asia/Bangkok", "Forecast", days, List.of()));
+        };
+        return dailyWeatherCache.getRange(CACHE, LOCATION, day(from), day(to), fetcher).join();
+    }
+
+    private void cacheMeta() {
+        cache.put(WeatherCacheKeys.meta(LOCATION), new WeatherResponse(LOCATION, "Asia/Bangkok", "Forecast", null, List.of()));
+    }
+
+    private void cacheDays(int from, int to) {
+        for (int i = from; i <= to; i++) {
+            cache.put(WeatherCacheKeys.day(LOCATION, day(i)), dayWeather(day(i), "Cached"));
+        }
+    }
+
+    private static List<String> dates(int from, int to) {
+        return day(from).datesUntil(day(to).plusDays(1)).map(LocalDate::toString).toList();
+    }
+
+    private static LocalDate day(int index) {
+        return START.plusDays(index);
+    }
+
+    private static DayWeather dayWeather(LocalDate date, String conditions) {
+        return new DayWeather(date.toString(), 30.5, 20.1, conditions, "Rainy day");
+    }
+}
@@ -0,0 +1,87 @@
+package vn.ttg.roadmap.weatherapiservice.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import vn.ttg.roadmap.weatherapiservice.dto.WeatherResponse;
+
+/**
+ * Tests of the canonical locations of {@link LocationAliasIndex}: the normalization of the requested
+ * spellings and the aliases learned from the resolved addresses of the weather API.
+ *
+ * @author ttg
+ */
+class LocationAliasIndexTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final LocationAliasIndex index = new LocationAliasIndex(meterRegistry, 2, 1000);
+
+    @Test
+    void locationsAreLowerCasedWithoutDiacriticsAndCollapsedWhitespace() {
+        assertThat(index.normalize("Hanoi")).isEqualTo("hanoi");
+        assertThat(index.normalize("  Ha   Noi ")).isEqualTo("ha noi");
+        assertThat(index.normalize("Hà Nội")).isEqualTo("ha noi");
+        assertThat(index.normalize("Hà Nội , Việt Nam")).isEqualTo("ha noi,viet nam");
+        assertThat(index.normalize("Đà Nẵng")).isEqualTo("da nang");
+        assertThat(index.normalize("Route\t66")).isEqualTo("route 66");
+    }
+
+    @Test
+    void coordinatesAreRoundedToTheConfiguredPrecision() {
+        assertThat(index.normalize("21.0285, 105.8542")).isEqualTo("21.03,105.85");
+        assertThat(index.normalize("21.03,105.850")).isEqualTo("21.03,105.85");
+        assertThat(index.normalize("+21.1,105.8")).isEqualTo("21.1,105.8");
+        assertThat(index.normalize("-33.8688,151.2093")).isEqualTo("-33.87,151.21");
+        // not a pair of coordinates, left as is
+        assertThat(index.normalize("21.0285")).isEqualTo("21.0285");
+    }
+
+    @Test
+    void spellingsOfALocationShareTheResolvedAddressOnceLearned() {
+        WeatherResponse hanoi = response("Hà Nội, Việt Nam");
+        List<String> spellings = List.of("Hanoi", "Ha Noi", "Hà Nội", "21.03,105.85");
+
+        assertThat(spellings).extracting(index::canonicalize)
+                .containsExactly("hanoi", "ha noi", "ha noi", "21.03,105.85");
+        assertThat(lookups("direct")).isEqualTo(4);
+
+        assertThat(index.learn("Hanoi", hanoi)).isEqualTo("ha noi,viet nam");
+        assertThat(index.learn("Ha Noi", hanoi)).isEqualTo("ha noi,viet nam");
+        assertThat(index.learn("21.0285,105.8542", hanoi)).isEqualTo("ha noi,viet nam");
+
+        assertThat(spellings).extracting(index::canonicalize).containsOnly("ha noi,viet nam");
+        assertThat(index.canonicalize("HÀ NỘI")).isEqualTo("ha noi,viet nam");
+        assertThat(lookups("alias")).isEqualTo(5);
+        // "Ha Noi" and "Hà Nội" normalize to the same alias
+        assertThat(meterRegistry.get("weather.location.aliases").gauge().value()).isEqualTo(3);
+
+        // locations canonicalized before their alias was learned are resolved to it
+        assertThat(index.resolve("hanoi")).isEqualTo("ha noi,viet nam");
+        assertThat(index.resolve("ha noi,viet nam")).isEqualTo("ha noi,viet nam");
+        assertThat(lookups("alias")).isEqualTo(5);
+    }
+
+    @Test
+    void responsesWithoutResolvedAddressAreNotLearned() {
+        assertThat(index.learn("Hà Nội", response(" "))).isEqualTo("ha noi");
+        assertThat(index.learn("Hà Nội", null)).isEqualTo("ha noi");
+        // a resolved address equal to the location is not an alias
+        assertThat(index.learn("Ha Noi", response("ha noi"))).isEqualTo("ha noi");
+
+        assertThat(index.canonicalize("Hà Nội")).isEqualTo("ha noi");
+        assertThat(meterRegistry.get("weather.location.aliases").gauge().value()).isZero();
+        assertThat(lookups("alias")).isZero();
+    }
+
+    private double lookups(String result) {
+        return meterRegistry.get("weather.location.lookups").tag("result", result).counter().count();
+    }
+
+    private static WeatherResponse response(String resolvedAddress) {
+        return new WeatherResponse(resolvedAddress, "Asia/Bangkok", "Hot", List.of(), List.of());
+    }
+}
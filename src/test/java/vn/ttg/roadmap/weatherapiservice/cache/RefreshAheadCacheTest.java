@@ -0,0 +1,119 @@
+package vn.ttg.roadmap.weatherapiservice.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+
+/**
+ * Tests of the freshness decided by {@link RefreshAheadCache}: the TTL, the refresh-ahead window and the
+ * stale-if-error window of its values, over a delegate holding them past their TTL.
+ *
+ * @author ttg
+ */
+class RefreshAheadCacheTest {
+
+    private static final String KEY = "current:hanoi";
+    private static final Duration TTL = Duration.ofMinutes(10);
+    private static final Duration REFRESH_AHEAD = Duration.ofMinutes(1);
+    private static final Duration STALE_IF_ERROR = Duration.ofMinutes(5);
+
+    private final ConcurrentMapCache delegate = new ConcurrentMapCache("weathers-current");
+    private final List<Runnable> refreshes = new ArrayList<>();
+    private final List<Object> refreshedKeys = new ArrayList<>();
+    private final List<Cache.ValueWrapper> lookupsDuringRefresh = new ArrayList<>();
+    private final RefreshAheadCache cache = new RefreshAheadCache(delegate, TTL, REFRESH_AHEAD, STALE_IF_ERROR, key -> {
+        refreshedKeys.add(key);
+        lookupsDuringRefresh.add(this.cache.get(key));
+        this.cache.put(key, "refreshed");
+    }, refreshes::add, 100, (cacheName, key, changedAt) -> { });
+
+    @Test
+    void valuesAreFreshUntilTheirTtl() {
+        write("sunny", Duration.ofMinutes(5));
+        assertThat(cache.get(KEY).get()).isEqualTo("sunny");
+        assertThat(cache.getAll(List.of(KEY)).get(0).get()).isEqualTo("sunny");
+
+        write("sunny", TTL.plusSeconds(1));
+        assertThat(cache.get(KEY)).isNull();
+        assertThat(cache.getAll(List.of(KEY))).containsExactly((Cache.ValueWrapper) null);
+        assertThat(refreshes).isEmpty();
+    }
+
+    @Test
+    void hitsWithinTheRefreshAheadWindowAreServedAndRefreshedOnce() {
+        write("sunny", TTL.minus(REFRESH_AHEAD).plusSeconds(10));
+
+        assertThat(cache.get(KEY).get()).isEqualTo("sunny");
+        assertThat(cache.get(KEY).get()).isEqualTo("sunny");
+        assertThat(refreshes).hasSize(1);
+
+        refreshes.get(0).run();
+
+        assertThat(refreshedKeys).containsExactly(KEY);
+        // the refresh sees a miss, so that the cached method it calls reloads the value
+        assertThat(lookupsDuringRefresh).containsExactly((Cache.ValueWrapper) null);
+        assertThat(cache.get(KEY).get()).isEqualTo("refreshed");
+        assertThat(cache.get(KEY).get()).isEqualTo("refreshed");
+        assertThat(refreshes).hasSize(1);
+    }
+
+    @Test
+    void expiredValuesAreServedStaleWithinTheStaleIfErrorWindow() {
+        write("sunny", TTL.plus(STALE_IF_ERROR).minusSeconds(10));
+        assertThat(cache.get(KEY)).isNull();
+        assertThat(cache.getStale(KEY).get()).isEqualTo("sunny");
+        assertThat(cache.getAllStale(List.of(KEY)).get(0).get()).isEqualTo("sunny");
+
+        write("sunny", TTL.plus(STALE_IF_ERROR).plusSeconds(10));
+        assertThat(cache.getStale(KEY)).isNull();
+        assertThat(cache.getAllStale(List.of(KEY))).containsExactly((Cache.ValueWrapper) null);
+    }
+
+    @Test
+    void staleValuesAreNeverWrittenBackAsFresh() {
+        long writtenAt = write("sunny", TTL.plusMinutes(1));
+        Object stale = cache.getStale(KEY).get();
+        Object staleOfAll = cache.getAllStale(List.of(KEY)).get(0).get();
+
+        cache.put(KEY, stale);
+        cache.putAll(Map.of(KEY, staleOfAll));
+        assertThat(cache.putIfAbsent(KEY, stale).get()).isEqualTo("sunny");
+        assertThat(writtenAtOf(KEY)).isEqualTo(writtenAt);
+        assertThat(cache.get(KEY)).isNull();
+        assertThat(cache.getWrittenAt(stale)).isNull();
+
+        cache.evict(KEY);
+        assertThat(cache.putIfAbsent(KEY, stale)).isNull();
+        assertThat(delegate.get(KEY)).isNull();
+    }
+
+    @Test
+    void writtenValuesAreFreshAndTracked() {
+        String value = "sunny";
+        assertThat(cache.putIfAbsent(KEY, value)).isNull();
+        assertThat(cache.putIfAbsent(KEY, "cloudy").get()).isEqualTo(value);
+
+        assertThat(cache.get(KEY).get()).isSameAs(value);
+        assertThat(cache.getWrittenAt(value)).isEqualTo(writtenAtOf(KEY));
+    }
+
+    /**
+     * Writes a value to the delegate as if it had been written the given time ago.
+     */
+    private long write(Object value, Duration age) {
+        long writtenAt = System.currentTimeMillis() - age.toMillis();
+        delegate.put(KEY, new TimestampedValue(value, writtenAt));
+        return writtenAt;
+    }
+
+    private long writtenAtOf(Object key) {
+        return ((TimestampedValue) delegate.get(key).get()).getWrittenAt();
+    }
+}
@@ -0,0 +1,180 @@
+package vn.ttg.roadmap.weatherapiservice.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Tests of the coalescing of concurrent loads by {@link SingleFlight}.
+ *
+ * @author ttg
+ */
+class SingleFlightTest {
+
+    private static final int CALLERS = 16;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final SingleFlight singleFlight = new SingleFlight(meterRegistry);
+    private final ExecutorService callers = Executors.newFixedThreadPool(CALLERS);
+
+    @AfterEach
+    void shutdown() {
+        callers.shutdownNow();
+    }
+
+    @Test
+    void concurrentCallersShareOneLoad() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        List<Future<String>> results = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            results.add(callers.submit(() -> singleFlight.execute("hanoi", () -> {
+                loads.incrementAndGet();
+                awaitRelease(release);
+                return "Hanoi";
+            })));
+        }
+        // the load is held until every other caller waits for it
+        await().until(() -> count("collapsed") == CALLERS - 1);
+        release.countDown();
+
+        for (Future<String> result : results) {
+            assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo("Hanoi");
+        }
+        assertThat(loads.get()).isEqualTo(1);
+        assertThat(count("leader")).isEqualTo(1);
+    }
+
+    @Test
+    void loadFailureReachesEveryCallerAndIsNotRemembered() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        List<Future<String>> results = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            results.add(callers.submit(() -> singleFlight.<String>execute("hanoi", () -> {
+                awaitRelease(release);
+                throw new IllegalStateException("Weather API unavailable");
+            })));
+        }
+        await().until(() -> count("collapsed") == CALLERS - 1);
+        release.countDown();
+
+        for (Future<String> result : results) {
+            assertThatThrownBy(() -> result.get(5, TimeUnit.SECONDS))
+                    .isInstanceOf(ExecutionException.class)
+                    .cause().isInstanceOf(IllegalStateException.class).hasMessage("Weather API unavailable");
+        }
+
+        // the failed load is no longer in flight, the next caller loads again
+        assertThat(singleFlight.execute("hanoi", () -> "Hanoi")).isEqualTo("Hanoi");
+        assertThat(count("leader")).isEqualTo(2);
+    }
+
+    @Test
+    void concurrentAsyncCallersShareOneLoad() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CompletableFuture<String> call = new CompletableFuture<>();
+        List<CompletableFuture<String>> results = new ArrayList<>();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<CompletableFuture<String>>> submitted = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            submitted.add(callers.submit(() -> {
+                start.await();
+                return singleFlight.executeAsync("hanoi", () -> {
+                    loads.incrementAndGet();
+                    return call;
+                });
+            }));
+        }
+        start.countDown();
+        for (Future<CompletableFuture<String>> future : submitted) {
+            results.add(future.get(5, TimeUnit.SECONDS));
+        }
+        assertThat(results).noneMatch(CompletableFuture::isDone);
+
+        call.complete("Hanoi");
+        for (CompletableFuture<String> result : results) {
+            assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo("Hanoi");
+        }
+        assertThat(loads.get()).isEqualTo(1);
+        assertThat(count("leader")).isEqualTo(1);
+        assertThat(count("collapsed")).isEqualTo(CALLERS - 1);
+    }
+
+    @Test
+    void asyncLoadFailureReachesEveryCallerAndIsNotRemembered() throws Exception {
+        CompletableFuture<String> call = new CompletableFuture<>();
+        List<CompletableFuture<String>> results = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            results.add(singleFlight.executeAsync("hanoi", () -> call));
+        }
+
+        call.completeExceptionally(new IllegalStateException("Weather API unavailable"));
+        for (CompletableFuture<String> result : results) {
+            assertThatThrownBy(result::join)
+                    .isInstanceOf(CompletionException.class)
+                    .cause().isInstanceOf(IllegalStateException.class).hasMessage("Weather API unavailable");
+        }
+
+        CompletableFuture<String> retried = singleFlight.executeAsync("hanoi", () -> CompletableFuture.completedFuture("Hanoi"));
+        assertThat(retried.get(5, TimeUnit.SECONDS)).isEqualTo("Hanoi");
+        assertThat(count("leader")).isEqualTo(2);
+    }
+
+    @Test
+    void asyncLoaderThrowingFailsTheCallAndIsNotRemembered() throws Exception {
+        CompletableFuture<String> failed = singleFlight.executeAsync("hanoi", () -> {
+            throw new IllegalStateException("Weather API unavailable");
+        });
+        assertThatThrownBy(failed::join).cause().isInstanceOf(IllegalStateException.class);
+
+        CompletableFuture<String> retried = singleFlight.executeAsync("hanoi", () -> CompletableFuture.completedFuture("Hanoi"));
+        assertThat(retried.get(5, TimeUnit.SECONDS)).isEqualTo("Hanoi");
+    }
+
+    @Test
+    void differentKeysLoadIndependently() {
+        AtomicInteger loads = new AtomicInteger();
+        CompletableFuture<String> hanoi = singleFlight.executeAsync("hanoi", () -> {
+            loads.incrementAndGet();
+            return new CompletableFuture<>();
+        });
+        CompletableFuture<String> paris = singleFlight.executeAsync("paris", () -> {
+            loads.incrementAndGet();
+            return CompletableFuture.completedFuture("Paris");
+        });
+
+        assertThat(paris.join()).isEqualTo("Paris");
+        assertThat(hanoi).isNotDone();
+        assertThat(loads.get()).isEqualTo(2);
+    }
+
+    private double count(String result) {
+        return meterRegistry.get("cache.load.singleflight").tag("result", result).counter().count();
+    }
+
+    private static void awaitRelease(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package vn.ttg.roadmap.weatherapiservice.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import vn.ttg.roadmap.weatherapiservice.conf.RedisCacheConfig;
+import vn.ttg.roadmap.weatherapiservice.dto.DayWeather;
+import vn.ttg.roadmap.weatherapiservice.dto.WeatherAlert;
+import vn.ttg.roadmap.weatherapiservice.dto.WeatherResponse;
+
+/**
+ * Tests of the binary cache value codec {@link WeatherResponseRedisSerializer}: round-trips, null fields,
+ * compression, and the values written by the JSON serializer or by other versions of the codec met during
+ * rolling upgrades and rollbacks.
+ *
+ * @author ttg
+ */
+class WeatherResponseRedisSerializerTest {
+
+    private static final int COMPRESSION_THRESHOLD = 1024;
+
+    private final RedisSerializer<Object> json = RedisCacheConfig.jsonCacheValueSerializer(new ObjectMapper());
+    private final WeatherResponseRedisSerializer codec = new WeatherResponseRedisSerializer(json,
+            WeatherResponseRedisSerializer.Compression.LZ4, COMPRESSION_THRESHOLD);
+
+    @Test
+    void responsesRoundTrip() {
+        WeatherResponse response = response(3);
+
+        byte[] bytes = codec.serialize(response);
+
+        assertThat(bytes[0]).isEqualTo(WeatherResponseRedisSerializer.MAGIC);
+        assertThat(bytes[1]).isEqualTo(WeatherResponseRedisSerializer.VERSION);
+        assertThat(codec.deserialize(bytes)).usingRecursiveComparison().isEqualTo(response);
+    }
+
+    @Test
+    void timestampedValuesRoundTrip() {
+        TimestampedValue response = new TimestampedValue(response(2), 1_700_000_000_123L);
+        TimestampedValue day = new TimestampedValue(day("2024-01-01"), 1_700_000_000_456L);
+
+        assertThat(codec.deserialize(codec.serialize(response))).usingRecursiveComparison().isEqualTo(response);
+        assertThat(codec.deserialize(codec.serialize(day))).usingRecursiveComparison().isEqualTo(day);
+    }
+
+    @Test
+    void daysRoundTrip() {
+        DayWeather day = new DayWeather("2024-01-01", -12.75, -0.0, "Snow", "Heavy snow in Hà Nội ❄");
+
+        assertThat(codec.deserialize(codec.serialize(day))).usingRecursiveComparison().isEqualTo(day);
+    }
+
+    @Test
+    void nullFieldsAndListsRoundTripDistinctFromEmptyOnes() {
+        WeatherResponse nulls = new WeatherResponse(null, null, null, null, null);
+        WeatherResponse empties = new WeatherResponse("", "", "", List.of(), List.of());
+        List<DayWeather> days = new ArrayList<>();
+        days.add(new DayWeather(null, 0, 0, null, null));
+        WeatherResponse nullDayFields = new WeatherResponse("Hanoi", null, null, days, List.of(new WeatherAlert(null, null)));
+
+        WeatherResponse readNulls = (WeatherResponse) codec.deserialize(codec.serialize(nulls));
+        WeatherResponse readEmpties = (WeatherResponse) codec.deserialize(codec.serialize(empties));
+
+        assertThat(readNulls).usingRecursiveComparison().isEqualTo(nulls);
+        assertThat(readNulls.getDays()).isNull();
+        assertThat(readNulls.getAlerts()).isNull();
+        assertThat(readEmpties).usingRecursiveComparison().isEqualTo(empties);
+        assertThat(readEmpties.getResolvedAddress()).isEmpty();
+        assertThat(readEmpties.getDays()).isEmpty();
+        assertThat(codec.deserialize(codec.serialize(nullDayFields))).usingRecursiveComparison().isEqualTo(nullDayFields);
+    }
+
+    @Test
+    void payloadsOverTheThresholdAreCompressed() {
+        WeatherResponse small = response(1);
+        WeatherResponse large = response(200);
+
+        byte[] smallBytes = codec.serialize(small);
+        byte[] largeBytes = codec.serialize(large);
+        byte[] uncompressedLargeBytes = new WeatherResponseRedisSerializer(json, WeatherResponseRedisSerializer.Compression.NONE,
+                COMPRESSION_THRESHOLD).serialize(large);
+
+        assertThat(smallBytes.length).isLessThanOrEqualTo(COMPRESSION_THRESHOLD);
+        assertThat(smallBytes[2]).isZero();
+        assertThat(largeBytes[2]).isEqualTo((byte) 1);
+        assertThat(uncompressedLargeBytes[2]).isZero();
+        assertThat(largeBytes.length).isLessThan(uncompressedLargeBytes.length / 2);
+        assertThat(codec.deserialize(largeBytes)).usingRecursiveComparison().isEqualTo(large);
+        assertThat(codec.deserialize(uncompressedLargeBytes)).usingRecursiveComparison().isEqualTo(large);
+    }
+
+    @Test
+    void payloadsOfTheThresholdAreNotCompressed() {
+        // a description padded so that the payload, after the 3 header bytes, is exactly the threshold
+        WeatherResponse response = new WeatherResponse(null, null, "", null, null);
+        int payloadSize = codec.serialize(response).length - 3;
+        String description = "x".repeat(COMPRESSION_THRESHOLD - payloadSize - 1);
+        response.setDescription(description);
+        byte[] atThreshold = codec.serialize(response);
+        response.setDescription(description + "x");
+        byte[] overThreshold = codec.serialize(response);
+
+        assertThat(atThreshold.length - 3).isEqualTo(COMPRESSION_THRESHOLD);
+        assertThat(atThreshold[2]).isZero();
+        assertThat(overThreshold[2]).isEqualTo((byte) 1);
+        assertThat(((WeatherResponse) codec.deserialize(overThreshold)).getDescription()).isEqualTo(description + "x");
+    }
+
+    @Test
+    void valuesWrittenAsJsonBeforeTheCodecAreRead() {
+        WeatherResponse response = response(2);
+        TimestampedValue timestamped = new TimestampedValue(response(2), 1_700_000_000_123L);
+
+        assertThat(codec.deserialize(json.serialize(response))).usingRecursiveComparison().isEqualTo(response);
+        assertThat(codec.deserialize(json.serialize(timestamped))).usingRecursiveComparison().isEqualTo(timestamped);
+    }
+
+    @Test
+    void otherValuesAreWrittenAsJson() {
+        Map<String, Object> value = new HashMap<>(Map.of("location", "hanoi"));
+
+        byte[] bytes = codec.serialize(value);
+
+        assertThat(bytes[0]).isEqualTo((byte) '{');
+        assertThat(codec.deserialize(bytes)).isEqualTo(value);
+    }
+
+    @Test
+    void binaryValuesAreReadWithBinaryWritesDisabled() {
+        WeatherResponseRedisSerializer rolledBack = new WeatherResponseRedisSerializer(json, false,
+                WeatherResponseRedisSerializer.Compression.LZ4, COMPRESSION_THRESHOLD);
+        TimestampedValue small = new TimestampedValue(response(1), 1_700_000_000_123L);
+        TimestampedValue large = new TimestampedValue(response(200), 1_700_000_000_123L);
+
+        byte[] written = rolledBack.serialize(small);
+
+        assertThat(written[0]).isEqualTo((byte) '{');
+        assertThat(codec.deserialize(written)).usingRecursiveComparison().isEqualTo(small);
+        assertThat(rolledBack.deserialize(codec.serialize(small))).usingRecursiveComparison().isEqualTo(small);
+        assertThat(rolledBack.deserialize(codec.serialize(large))).usingRecursiveComparison().isEqualTo(large);
+    }
+
+    @Test
+    void valuesOfAnUnknownVersionReadAsMisses() {
+        byte[] bytes = codec.serialize(response(1));
+        bytes[1] = WeatherResponseRedisSerializer.VERSION + 1;
+
+        assertThat(codec.deserialize(bytes)).isNull();
+        assertThat(codec.deserialize(new byte[] {WeatherResponseRedisSerializer.MAGIC})).isNull();
+        assertThat(codec.deserialize(new byte[0])).isNull();
+    }
+
+    @Test
+    void truncatedValuesAreRejected() {
+        byte[] bytes = codec.serialize(response(3));
+        byte[] compressed = codec.serialize(response(200));
+
+        assertThatThrownBy(() -> codec.deserialize(Arrays.copyOf(bytes, bytes.length - 5)))
+                .isInstanceOf(SerializationException.class);
+        assertThatThrownBy(() -> codec.deserialize(Arrays.copyOf(compressed, compressed.length - 5)))
+                .isInstanceOf(SerializationException.class);
+    }
+
+    @Test
+    void compressedSizesOverTheBoundsAreRejectedBeforeAllocating() {
+        // header, LZ4 flag and a declared decompressed size of 64 MB as a varint, followed by a few bytes
+        byte[] oversized = {WeatherResponseRedisSerializer.MAGIC, WeatherResponseRedisSerializer.VERSION, 1,
+                (byte) 0x80, (byte) 0x80, (byte) 0x80, 0x20, 0, 0, 0, 0};
+        // a declared size of 16 KB, more than LZ4 can expand the 4 bytes following it into
+        byte[] overRatio = {WeatherResponseRedisSerializer.MAGIC, WeatherResponseRedisSerializer.VERSION, 1,
+                (byte) 0x80, (byte) 0x80, 0x01, 0, 0, 0, 0};
+
+        assertThatThrownBy(() -> codec.deserialize(oversized))
+                .isInstanceOf(SerializationException.class).hasMessageContaining("Invalid decompressed size");
+        assertThatThrownBy(() -> codec.deserialize(overRatio))
+                .isInstanceOf(SerializationException.class).hasMessageContaining("Invalid decompressed size");
+    }
+
+    private static WeatherResponse response(int days) {
+        List<DayWeather> list = new ArrayList<>(days);
+        for (int i = 0; i < days; i++) {
+            list.add(day(String.format("2024-01-%02d", i % 28 + 1)));
+        }
+        return new WeatherResponse("Hanoi, Vietnam", "Asia/Bangkok", "Tropical monsoon", list,
+                List.of(new WeatherAlert("Storm", "Typhoon approaching")));
+    }
+
+    private static DayWeather day(String date) {
+        return new DayWeather(date, 30.5, 20.1, "Rain", "Rainy day with thunderstorms in the afternoon");
+    }
+}
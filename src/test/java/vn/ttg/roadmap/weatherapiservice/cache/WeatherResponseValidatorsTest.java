@@ -0,0 +1,66 @@
+package vn.ttg.roadmap.weatherapiservice.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import vn.ttg.roadmap.weatherapiservice.cache.WeatherResponseValidators.Validator;
+
+/**
+ * Tests of the validators of the responses assembled from several cache entries by {@link WeatherResponseValidators}.
+ *
+ * @author ttg
+ */
+class WeatherResponseValidatorsTest {
+
+    private static final String CACHE = "weathers-forecast";
+    private static final Duration TTL = Duration.ofHours(1);
+    private static final String ETAG = "W/\"1a2b\"";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final RefreshAheadCacheManager cacheManager = new RefreshAheadCacheManager(new ConcurrentMapCacheManager(CACHE),
+            Map.of(CACHE, new RefreshAheadCacheManager.Policy(TTL, Duration.ZERO, Duration.ZERO, null)),
+            Runnable::run, 1000);
+    private final WeatherResponseValidators validators = new WeatherResponseValidators(cacheManager, meterRegistry, 100);
+
+    @Test
+    void assembledResponsesExpireWithTheirEarliestEntry() {
+        long now = System.currentTimeMillis();
+        long earliest = now - Duration.ofMinutes(50).toMillis();
+        long latest = now - Duration.ofMinutes(5).toMillis();
+
+        Validator validator = validators.validate(CACHE, new long[] {now - Duration.ofMinutes(10).toMillis(), earliest, latest}, ETAG);
+
+        assertThat(validator.etag()).isEqualTo(ETAG);
+        assertThat(validator.lastModified()).isEqualTo(latest);
+        assertThat(validator.expiresAt()).isEqualTo(earliest + TTL.toMillis());
+        assertThat(validator.maxAgeSeconds(now)).isBetween(599L, 600L);
+    }
+
+    @Test
+    void assembledResponsesWithAnExpiredOrUnknownEntryHaveNoValidator() {
+        long now = System.currentTimeMillis();
+
+        assertThat(validators.validate(CACHE, new long[] {now, now - TTL.toMillis() - 1}, ETAG)).isNull();
+        assertThat(validators.validate(CACHE, null, ETAG)).isNull();
+        assertThat(validators.validate("weathers-unknown", new long[] {now}, ETAG)).isNull();
+    }
+
+    @Test
+    void requestsHoldingTheEntityTagAreNotModified() {
+        Validator validator = validators.validate(CACHE, new long[] {System.currentTimeMillis()}, ETAG);
+
+        assertThat(validators.matches(validator, "\"1a2b\"")).isTrue();
+        assertThat(validators.matches(validator, "W/\"ffff\", W/\"1a2b\"")).isTrue();
+        assertThat(validators.matches(validator, "*")).isTrue();
+        assertThat(validators.matches(validator, "W/\"ffff\"")).isFalse();
+        assertThat(validators.matches(validator, null)).isFalse();
+        assertThat(validators.matches(null, ETAG)).isFalse();
+        assertThat(meterRegistry.get("weather.response.not-modified").counter().count()).isEqualTo(3);
+    }
+}
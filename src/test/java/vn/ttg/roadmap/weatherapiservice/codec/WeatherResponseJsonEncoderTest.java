@@ -0,0 +1,145 @@
+package vn.ttg.roadmap.weatherapiservice.codec;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import vn.ttg.roadmap.weatherapiservice.dto.DayWeather;
+import vn.ttg.roadmap.weatherapiservice.dto.WeatherAlert;
+import vn.ttg.roadmap.weatherapiservice.dto.WeatherBatchItemResponse;
+import vn.ttg.roadmap.weatherapiservice.dto.WeatherResponse;
+
+/**
+ * Tests of the encoding of weather responses and of their projections by {@link WeatherResponseJsonEncoder}.
+ *
+ * @author ttg
+ */
+class WeatherResponseJsonEncoderTest {
+
+    private static final String ENTRY = "weathers-current::current:hanoi";
+
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final WeatherResponseJsonEncoder encoder = new WeatherResponseJsonEncoder(objectMapper, meterRegistry, 100);
+
+    @Test
+    void responsesAreEncodedOncePerInstance() throws Exception {
+        WeatherResponse response = response();
+
+        EncodedWeatherResponse body = encoder.encode(response);
+
+        assertThat(encoder.encode(response)).isSameAs(body);
+        assertThat(objectMapper.readTree(body.body())).isEqualTo(objectMapper.valueToTree(response));
+    }
+
+    @Test
+    void projectedCopiesAreEncodedOncePerProjection() throws Exception {
+        WeatherResponse response = response();
+        WeatherFieldProjection projection = WeatherFieldProjection.parse("datetime,tempmax");
+
+        WeatherResponse copy = encoder.project(response, projection);
+
+        assertThat(encoder.project(response, projection)).isSameAs(copy);
+        assertThat(encoder.project(response, WeatherFieldProjection.parse("tempmin"))).isNotSameAs(copy);
+        assertThat(encoder.project(response, WeatherFieldProjection.ALL)).isSameAs(response);
+        assertThat(encoder.encode(copy).etag()).isNotEqualTo(encoder.encode(response).etag());
+        assertDaysProjected(objectMapper.readTree(encoder.encode(copy).body()));
+    }
+
+    @Test
+    void projectedCopiesWrittenByJacksonKeepTheirProjection() throws Exception {
+        WeatherResponse copy = encoder.project(response(), WeatherFieldProjection.parse("datetime,tempmax"));
+        WeatherBatchItemResponse item = new WeatherBatchItemResponse(0, "Hanoi", LocalDate.of(2024, 1, 1), null, copy, null);
+
+        JsonNode written = objectMapper.readTree(objectMapper.writeValueAsBytes(copy));
+        JsonNode writtenItem = objectMapper.readTree(objectMapper.writeValueAsBytes(item));
+
+        assertThat(written).isEqualTo(objectMapper.readTree(encoder.encode(copy).body()));
+        assertDaysProjected(written);
+        assertDaysProjected(writtenItem.get("weather"));
+        assertThat(writtenItem.get("location").asText()).isEqualTo("Hanoi");
+        assertThat(writtenItem.get("index").asInt()).isZero();
+    }
+
+    @Test
+    void instancesOfTheSameVersionOfACacheEntryReuseItsBody() {
+        WeatherFieldProjection projection = WeatherFieldProjection.parse("datetime,tempmax");
+        long[] version = {1000L, 2000L};
+
+        WeatherResponse first = encoder.project(response(), WeatherFieldProjection.ALL, ENTRY, version);
+        WeatherResponse firstCopy = encoder.project(first, projection, ENTRY, version);
+        // a response decoded again from Redis is a new instance of the same version
+        WeatherResponse second = encoder.project(response(), WeatherFieldProjection.ALL, ENTRY, version.clone());
+        WeatherResponse secondCopy = encoder.project(second, projection, ENTRY, version.clone());
+
+        assertThat(encodings("miss")).isEqualTo(2);
+        assertThat(encodings("hit")).isEqualTo(2);
+        assertThat(encoder.encode(second)).isSameAs(encoder.encode(first));
+        assertThat(encoder.encode(secondCopy)).isSameAs(encoder.encode(firstCopy));
+    }
+
+    @Test
+    void newVersionOfACacheEntryIsEncodedAgain() throws Exception {
+        WeatherResponse first = encoder.project(response(), WeatherFieldProjection.ALL, ENTRY, new long[] {1000L});
+        WeatherResponse changed = response();
+        changed.setDescription("Changed");
+
+        WeatherResponse second = encoder.project(changed, WeatherFieldProjection.ALL, ENTRY, new long[] {3000L});
+
+        assertThat(encoder.encode(second).etag()).isNotEqualTo(encoder.encode(first).etag());
+        assertThat(objectMapper.readTree(encoder.encode(second).body()).get("description").asText()).isEqualTo("Changed");
+        assertThat(encodings("miss")).isEqualTo(2);
+    }
+
+    @Test
+    void responsesOfUnknownVersionAreEncodedOncePerInstance() {
+        WeatherResponse first = encoder.project(response(), WeatherFieldProjection.ALL, ENTRY, null);
+        WeatherResponse second = encoder.project(response(), WeatherFieldProjection.ALL, ENTRY, null);
+
+        assertThat(encoder.encode(second)).isNotSameAs(encoder.encode(first));
+        assertThat(encodings("miss")).isEqualTo(2);
+    }
+
+    @Test
+    void entityTagsOfEncodedVersionsAreKnownWithoutEncoding() {
+        WeatherFieldProjection projection = WeatherFieldProjection.parse("datetime,tempmax");
+        long[] version = {1000L, 2000L};
+        assertThat(encoder.etagOf(ENTRY, version, projection)).isNull();
+
+        WeatherResponse copy = encoder.project(response(), projection, ENTRY, version);
+
+        assertThat(encoder.etagOf(ENTRY, version.clone(), projection)).isEqualTo(encoder.encode(copy).etag());
+        assertThat(encoder.etagOf(ENTRY, version, WeatherFieldProjection.ALL)).isNull();
+        assertThat(encoder.etagOf(ENTRY, new long[] {1000L, 3000L}, projection)).isNull();
+        assertThat(encoder.etagOf(ENTRY, null, projection)).isNull();
+        assertThat(encodings("miss")).isEqualTo(1);
+    }
+
+    private double encodings(String result) {
+        return meterRegistry.get("weather.response.encodings").tag("result", result).counter().count();
+    }
+
+    private static void assertDaysProjected(JsonNode response) {
+        assertThat(response.get("resolvedAddress").asText()).isEqualTo("Hanoi, Vietnam");
+        assertThat(response.get("alerts")).hasSize(1);
+        assertThat(response.get("days")).hasSize(2);
+        for (JsonNode day : response.get("days")) {
+            assertThat(day.fieldNames()).toIterable().containsExactlyInAnyOrder("datetime", "tempmax");
+        }
+    }
+
+    private static WeatherResponse response() {
+        return new WeatherResponse("Hanoi, Vietnam", "Asia/Bangkok", "Tropical monsoon",
+                List.of(new DayWeather("2024-01-01", 30.5, 20.1, "Rain", "Rainy day"),
+                        new DayWeather("2024-01-02", 31.0, 21.4, "Clear", "Sunny day")),
+                List.of(new WeatherAlert("Storm", "Typhoon approaching")));
+    }
+}
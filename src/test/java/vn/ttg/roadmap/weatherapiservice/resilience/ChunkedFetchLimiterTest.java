@@ -0,0 +1,116 @@
+package vn.ttg.roadmap.weatherapiservice.resilience;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+/**
+ * Tests of the slots of {@link ChunkedFetchLimiter}: waiting fetches started in arrival order, cancelled
+ * ones never started or freeing their slot, and fetches completing at once handed over without recursion.
+ *
+ * @author ttg
+ */
+class ChunkedFetchLimiterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ChunkedFetchLimiter limiter = new ChunkedFetchLimiter(meterRegistry, 1);
+    private final List<String> started = new ArrayList<>();
+    private final List<Object> results = new ArrayList<>();
+    private final List<String> completed = new ArrayList<>();
+
+    @Test
+    void waitingFetchesStartInArrivalOrder() {
+        Sinks.One<String> first = Sinks.one();
+        Sinks.One<String> second = Sinks.one();
+        Sinks.One<String> third = Sinks.one();
+        fetch("first", first);
+        fetch("second", second);
+        fetch("third", third);
+
+        assertThat(started).containsExactly("first");
+        assertThat(fetches("running")).isEqualTo(1);
+        assertThat(fetches("waiting")).isEqualTo(2);
+
+        first.tryEmitValue("sunny");
+        assertThat(started).containsExactly("first", "second");
+        second.tryEmitError(new IllegalStateException("failed"));
+        assertThat(started).containsExactly("first", "second", "third");
+        third.tryEmitEmpty();
+
+        assertThat(results).hasSize(2);
+        assertThat(results.get(0)).isEqualTo("sunny");
+        assertThat(results.get(1)).isInstanceOf(IllegalStateException.class);
+        assertThat(completed).containsExactly("first", "third");
+        assertThat(fetches("running")).isZero();
+        assertThat(fetches("waiting")).isZero();
+    }
+
+    @Test
+    void fetchesCancelledWhileWaitingNeverStart() {
+        Sinks.One<String> first = Sinks.one();
+        Sinks.One<String> third = Sinks.one();
+        fetch("first", first);
+        Disposable second = fetch("second", Sinks.one());
+        fetch("third", third);
+
+        second.dispose();
+        assertThat(fetches("waiting")).isEqualTo(1);
+        first.tryEmitValue("sunny");
+
+        assertThat(started).containsExactly("first", "third");
+        third.tryEmitValue("clear");
+        assertThat(results).containsExactly("sunny", "clear");
+        assertThat(fetches("running")).isZero();
+    }
+
+    @Test
+    void fetchesCancelledWhileRunningFreeTheirSlot() {
+        Sinks.One<String> first = Sinks.one();
+        Disposable running = fetch("first", first);
+        fetch("second", Sinks.one());
+
+        running.dispose();
+
+        assertThat(first.currentSubscriberCount()).isZero();
+        assertThat(started).containsExactly("first", "second");
+        assertThat(fetches("running")).isEqualTo(1);
+        assertThat(fetches("waiting")).isZero();
+    }
+
+    @Test
+    void fetchesCompletingAtOnceAreHandedOverWithoutRecursion() {
+        Sinks.One<String> first = Sinks.one();
+        fetch("first", first);
+        AtomicInteger cached = new AtomicInteger();
+        for (int i = 0; i < 100_000; i++) {
+            limiter.limit(() -> Mono.just("cached")).subscribe(value -> cached.incrementAndGet());
+        }
+        assertThat(fetches("waiting")).isEqualTo(100_000);
+
+        first.tryEmitValue("sunny");
+
+        assertThat(cached).hasValue(100_000);
+        assertThat(fetches("running")).isZero();
+        assertThat(fetches("waiting")).isZero();
+    }
+
+    private Disposable fetch(String name, Sinks.One<String> result) {
+        return limiter.limit(() -> {
+            started.add(name);
+            return result.asMono();
+        }).subscribe(results::add, results::add, () -> completed.add(name));
+    }
+
+    private double fetches(String state) {
+        return meterRegistry.get("weather.historical.chunked.fetches").tag("state", state).gauge().value();
+    }
+}
@@ -0,0 +1,88 @@
+package vn.ttg.roadmap.weatherapiservice.resilience;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.ratelimiter.RateLimiterConfig;
+import io.github.resilience4j.ratelimiter.RateLimiterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import vn.ttg.roadmap.weatherapiservice.controller.WeatherExceptionHandler;
+import vn.ttg.roadmap.weatherapiservice.dto.ErrorResponse;
+import vn.ttg.roadmap.weatherapiservice.exception.WeatherApiException;
+import vn.ttg.roadmap.weatherapiservice.exception.WeatherErrorCode;
+import vn.ttg.roadmap.weatherapiservice.resilience.WeatherApiRateLimiter.Priority;
+
+/**
+ * Tests of the answer of the weather API calls rejected by {@link WeatherApiGuard}.
+ *
+ * @author ttg
+ */
+class WeatherApiGuardTest {
+
+    private final CircuitBreakerRegistry circuitBreakerRegistry = CircuitBreakerRegistry.of(CircuitBreakerConfig.custom()
+            .waitDurationInOpenState(Duration.ofSeconds(30))
+            .build());
+    private final WeatherApiGuard guard = new WeatherApiGuard(
+            BulkheadRegistry.of(BulkheadConfig.custom().maxConcurrentCalls(1).maxWaitDuration(Duration.ZERO).build()),
+            circuitBreakerRegistry, rateLimiter());
+
+    @Test
+    void callsRejectedByTheOpenCircuitBreakerAreAnsweredServiceUnavailable() {
+        circuitBreakerRegistry.circuitBreaker("weather-api").transitionToOpenState();
+
+        ResponseEntity<ErrorResponse> response = answer(guard.execute(Priority.CURRENT, 1, () -> CompletableFuture.completedFuture("sunny")));
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+        assertThat(response.getBody().getCode()).isEqualTo(WeatherErrorCode.WEATHER_API_UNAVAILABLE.getCode());
+        assertThat(response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER)).isEqualTo("30");
+    }
+
+    @Test
+    void callsRejectedByTheFullBulkheadAreAnsweredServiceUnavailable() {
+        CompletableFuture<String> inFlight = new CompletableFuture<>();
+        guard.execute(Priority.CURRENT, 1, () -> inFlight);
+
+        ResponseEntity<ErrorResponse> response = answer(guard.execute(Priority.CURRENT, 1, () -> CompletableFuture.completedFuture("sunny")));
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+        assertThat(response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER)).isEqualTo("1");
+
+        // the permit of the call in flight is released once it completes
+        inFlight.complete("sunny");
+        assertThat(guard.execute(Priority.CURRENT, 1, () -> CompletableFuture.completedFuture("clear")).join()).isEqualTo("clear");
+    }
+
+    private static ResponseEntity<ErrorResponse> answer(CompletableFuture<?> call) {
+        assertThat(call).isCompletedExceptionally();
+        Throwable failure = call.handle((value, e) -> e instanceof CompletionException && e.getCause() != null ? e.getCause() : e).join();
+        assertThat(failure).isInstanceOf(WeatherApiException.class);
+        return new WeatherExceptionHandler().handleWeatherApiException((WeatherApiException) failure);
+    }
+
+    private static WeatherApiRateLimiter rateLimiter() {
+        RateLimiterRegistry registry = RateLimiterRegistry.ofDefaults();
+        registry.rateLimiter("weather-api-per-second", config(100, Duration.ofSeconds(1)));
+        registry.rateLimiter("weather-api-daily", config(1000, Duration.ofDays(1)));
+        return new WeatherApiRateLimiter(registry, new SimpleMeterRegistry(), 10, 30);
+    }
+
+    private static RateLimiterConfig config(int limit, Duration period) {
+        return RateLimiterConfig.custom()
+                .limitForPeriod(limit)
+                .limitRefreshPeriod(period)
+                .timeoutDuration(Duration.ZERO)
+                .build();
+    }
+}
@@ -0,0 +1,122 @@
+package vn.ttg.roadmap.weatherapiservice.resilience;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatNoException;
+import static org.assertj.core.api.Assertions.catchThrowableOfType;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import io.github.resilience4j.ratelimiter.RateLimiterConfig;
+import io.github.resilience4j.ratelimiter.RateLimiterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import vn.ttg.roadmap.weatherapiservice.controller.WeatherExceptionHandler;
+import vn.ttg.roadmap.weatherapiservice.dto.ErrorResponse;
+import vn.ttg.roadmap.weatherapiservice.exception.WeatherApiException;
+import vn.ttg.roadmap.weatherapiservice.exception.WeatherErrorCode;
+import vn.ttg.roadmap.weatherapiservice.resilience.WeatherApiRateLimiter.Priority;
+
+/**
+ * Tests of the admission of weather API calls by {@link WeatherApiRateLimiter}: the budget kept for higher
+ * priority calls, and the answer of the calls over budget.
+ *
+ * @author ttg
+ */
+class WeatherApiRateLimiterTest {
+
+    private static final int FORECAST_RESERVE = 10;
+    private static final int HISTORICAL_RESERVE = 30;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void historicalCallsAreRefusedBeforeForecastAndCurrentOnes() {
+        // 3 of the 10 daily records are kept from historical calls, 1 from forecast calls
+        WeatherApiRateLimiter rateLimiter = rateLimiter(100, 10);
+        rateLimiter.acquire(Priority.CURRENT, 6);
+
+        // 4 records left, a historical call of 2 records would leave less than its reserve
+        assertRejected(() -> rateLimiter.acquire(Priority.HISTORICAL, 2));
+        rateLimiter.acquire(Priority.HISTORICAL, 1);
+        // 3 records left, within the historical reserve but not the forecast one
+        assertRejected(() -> rateLimiter.acquire(Priority.HISTORICAL, 1));
+        rateLimiter.acquire(Priority.FORECAST, 2);
+        // 1 record left, only current weather may use the last of the budget
+        assertRejected(() -> rateLimiter.acquire(Priority.FORECAST, 1));
+        assertThatNoException().isThrownBy(() -> rateLimiter.acquire(Priority.CURRENT, 1));
+        assertRejected(() -> rateLimiter.acquire(Priority.CURRENT, 1));
+
+        assertThat(rejections("daily", "historical")).isEqualTo(2);
+        assertThat(rejections("daily", "forecast")).isEqualTo(1);
+        assertThat(rejections("daily", "current")).isEqualTo(1);
+    }
+
+    @Test
+    void callsRejectedForTheDayDoNotTakePerSecondPermits() {
+        WeatherApiRateLimiter rateLimiter = rateLimiter(2, 10);
+        rateLimiter.acquire(Priority.CURRENT, 8);
+
+        assertRejected(() -> rateLimiter.acquire(Priority.HISTORICAL, 1));
+        assertRejected(() -> rateLimiter.acquire(Priority.FORECAST, 2));
+
+        // the per-second permit left is still there for a current weather call
+        assertThatNoException().isThrownBy(() -> rateLimiter.acquire(Priority.CURRENT, 1));
+    }
+
+    @Test
+    void exhaustedDailyBudgetIsAnsweredTooManyRequestsWithRetryAfter() {
+        WeatherApiRateLimiter rateLimiter = rateLimiter(100, 5);
+        rateLimiter.acquire(Priority.CURRENT, 5);
+
+        WeatherApiException exception = assertRejected(() -> rateLimiter.acquire(Priority.CURRENT, 1));
+        ResponseEntity<ErrorResponse> response = new WeatherExceptionHandler().handleWeatherApiException(exception);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+        assertThat(response.getBody().getCode()).isEqualTo(WeatherErrorCode.WEATHER_API_QUOTA_EXCEEDED.getCode());
+        assertThat(Long.parseLong(response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER)))
+                .isBetween(Duration.ofDays(1).toSeconds() - 60, Duration.ofDays(1).toSeconds());
+    }
+
+    @Test
+    void exhaustedPerSecondBudgetIsAnsweredTooManyRequestsWithRetryAfter() {
+        WeatherApiRateLimiter rateLimiter = rateLimiter(1, 100);
+        rateLimiter.acquire(Priority.CURRENT, 1);
+
+        WeatherApiException exception = assertRejected(() -> rateLimiter.acquire(Priority.CURRENT, 1));
+        ResponseEntity<ErrorResponse> response = new WeatherExceptionHandler().handleWeatherApiException(exception);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+        assertThat(response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER)).isEqualTo("1");
+        assertThat(rejections("second", "current")).isEqualTo(1);
+    }
+
+    private WeatherApiRateLimiter rateLimiter(int perSecond, int daily) {
+        RateLimiterRegistry registry = RateLimiterRegistry.ofDefaults();
+        registry.rateLimiter("weather-api-per-second", config(perSecond, Duration.ofSeconds(1)));
+        registry.rateLimiter("weather-api-daily", config(daily, Duration.ofDays(1)));
+        return new WeatherApiRateLimiter(registry, meterRegistry, FORECAST_RESERVE, HISTORICAL_RESERVE);
+    }
+
+    private static RateLimiterConfig config(int limit, Duration period) {
+        return RateLimiterConfig.custom()
+                .limitForPeriod(limit)
+                .limitRefreshPeriod(period)
+                .timeoutDuration(Duration.ZERO)
+                .build();
+    }
+
+    private static WeatherApiException assertRejected(Runnable call) {
+        WeatherApiException exception = catchThrowableOfType(WeatherApiException.class, call::run);
+        assertThat(exception).isNotNull();
+        assertThat(exception.getErrorCode()).isEqualTo(WeatherErrorCode.WEATHER_API_QUOTA_EXCEEDED);
+        return exception;
+    }
+
+    private double rejections(String limit, String priority) {
+        return meterRegistry.get("weather.api.rejections").tag("limit", limit).tag("priority", priority).counter().count();
+    }
+}
@@ -0,0 +1,104 @@
+package vn.ttg.roadmap.weatherapiservice.service.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import vn.ttg.roadmap.weatherapiservice.dto.DayWeather;
+import vn.ttg.roadmap.weatherapiservice.dto.WeatherAggregateResponse;
+import vn.ttg.roadmap.weatherapiservice.dto.WeeklyWeatherAggregate;
+import vn.ttg.roadmap.weatherapiservice.store.DaySeries;
+
+/**
+ * Tests of the statistics of {@link WeatherAggregator}: the ISO weeks its days are bucketed into, and the
+ * same statistics whether the days come from a list or from the columns of a {@link DaySeries}.
+ *
+ * @author ttg
+ */
+class WeatherAggregatorTest {
+
+    /**
+     * A Wednesday, so that the range starts in the middle of the ISO week of Monday 2024-01-01.
+     */
+    private static final LocalDate START = LocalDate.of(2024, 1, 3);
+    private static final LocalDate END = LocalDate.of(2024, 1, 23);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void daysAreBucketedIntoIsoWeeksStartingOnMonday() {
+        WeatherAggregator aggregator = new WeatherAggregator(START, END);
+        aggregator.add(List.of(
+                day("2024-01-02", 40, 0, "Clear"),
+                day("2024-01-03", 30, 20, "Rain"),
+                day("2024-01-07", 32, 22, "Clear"),
+                day("2024-01-08", 28, 18, "Rain"),
+                day("2024-01-14", 26, 16, "Rain"),
+                day("2024-01-23", 24, 14, "Overcast"),
+                day("2024-01-24", 40, 0, "Clear"),
+                day("not a date", 40, 0, "Clear")));
+
+        WeatherAggregateResponse response = aggregator.toResponse("hanoi,vietnam");
+
+        assertThat(response.getDays()).isEqualTo(5);
+        assertThat(response.getTempmax().getMax()).isEqualTo(32);
+        assertThat(response.getTempmin().getMin()).isEqualTo(14);
+        assertThat(response.getTempmax().getAvg()).isEqualTo(28);
+        assertThat(response.getConditions()).containsExactly(
+                Map.entry("Rain", 3), Map.entry("Clear", 1), Map.entry("Overcast", 1));
+        assertThat(response.getWeeks()).extracting(WeeklyWeatherAggregate::getWeekStart).containsExactly(
+                LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 8), LocalDate.of(2024, 1, 22));
+        assertThat(response.getWeeks()).extracting(WeeklyWeatherAggregate::getDays).containsExactly(2, 2, 1);
+        assertThat(response.getWeeks().get(0).getTempmax().getAvg()).isEqualTo(31);
+        assertThat(response.getWeeks().get(2).getTempmin().getMax()).isEqualTo(14);
+    }
+
+    @Test
+    void weeksWithoutDaysAreOmitted() {
+        WeatherAggregator aggregator = new WeatherAggregator(START, END);
+        aggregator.add(List.of(day("2024-01-22", 24, 14, "Overcast")));
+
+        WeatherAggregateResponse response = aggregator.toResponse("hanoi,vietnam");
+
+        assertThat(response.getWeeks()).extracting(WeeklyWeatherAggregate::getWeekStart)
+                .containsExactly(LocalDate.of(2024, 1, 22));
+
+        WeatherAggregateResponse empty = new WeatherAggregator(START, END).toResponse("hanoi,vietnam");
+        assertThat(empty.getDays()).isZero();
+        assertThat(empty.getTempmax()).isNull();
+        assertThat(empty.getConditions()).isEmpty();
+        assertThat(empty.getWeeks()).isEmpty();
+    }
+
+    @Test
+    void seriesAreAggregatedAsTheirDays() throws Exception {
+        List<DayWeather> days = new ArrayList<>();
+        for (LocalDate date = START.minusDays(3); !date.isAfter(END.plusDays(3)); date = date.plusDays(1)) {
+            int offset = date.getDayOfYear();
+            days.add(day(date.toString(), 25 + offset % 7 + 0.25, 15 + offset % 5 + 0.5, offset % 3 == 0 ? "Rain" : "Clear"));
+        }
+        DaySeries.write(dir.resolve("hanoi.days"), "hanoi,vietnam", days);
+        DaySeries series = DaySeries.open(dir.resolve("hanoi.days"));
+
+        WeatherAggregator fromSeries = new WeatherAggregator(START, END);
+        fromSeries.add(series, series.indexOf(START), series.indexOf(END));
+        WeatherAggregator fromList = new WeatherAggregator(START, END);
+        fromList.add(days);
+
+        assertThat(fromSeries.toResponse("hanoi,vietnam")).usingRecursiveComparison()
+                .isEqualTo(fromList.toResponse("hanoi,vietnam"));
+        assertThat(fromSeries.toResponse("hanoi,vietnam").getDays()).isEqualTo(21);
+    }
+
+    private static DayWeather day(String datetime, double tempmax, double tempmin, String conditions) {
+        return new DayWeather(datetime, tempmax, tempmin, conditions, conditions + " day");
+    }
+}
@@ -0,0 +1,365 @@
+package vn.ttg.roadmap.weatherapiservice.store;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import vn.ttg.roadmap.weatherapiservice.dto.DayWeather;
+import vn.ttg.roadmap.weatherapiservice.dto.WeatherResponse;
+
+/**
+ * Tests of the durability of {@link HistoricalWeatherStore}: recovery of its log after a crash, compaction
+ * under concurrent reads, its max size over the log and the day series, and reopening.
+ *
+ * @author ttg
+ */
+class HistoricalWeatherStoreTest {
+
+    private static final LocalDate START = LocalDate.of(2024, 1, 1);
+    private static final String LOG_FILE = "historical.log";
+
+    @TempDir
+    Path directory;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<HistoricalWeatherStore> stores = new ArrayList<>();
+
+    @AfterEach
+    void closeStores() throws Exception {
+        for (HistoricalWeatherStore store : stores) {
+            store.close();
+        }
+    }
+
+    @Test
+    void reopenServesStoredDaysAndAliases() throws Exception {
+        HistoricalWeatherStore store = open(DataSize.ofMegabytes(1));
+        store.store("Hanoi", "hanoi,vietnam", response("Hanoi, Vietnam", "Tropical", START, 3));
+        await().until(() -> store.getRange("Hanoi", START, START.plusDays(2)) != null);
+        store.close();
+
+        HistoricalWeatherStore reopened = open(DataSize.ofMegabytes(1));
+        WeatherResponse response = reopened.getRange("Hanoi", START, START.plusDays(2));
+
+        assertThat(response).isNotNull();
+        assertThat(response.getResolvedAddress()).isEqualTo("Hanoi, Vietnam");
+        assertThat(response.getDescription()).isEqualTo("Tropical");
+        assertThat(response.getDays()).extracting(DayWeather::getDatetime)
+                .containsExactly("2024-01-01", "2024-01-02", "2024-01-03");
+        assertThat(reopened.getRange("hanoi,vietnam", START, START.plusDays(3))).isNull();
+    }
+
+    @Test
+    void truncatedTailIsDiscardedOnReopen() throws Exception {
+        HistoricalWeatherStore store = open(DataSize.ofMegabytes(1));
+        store.store("hanoi", "hanoi", response("Hanoi", "Tropical", START, 2));
+        await().until(() -> store.getRange("hanoi", START, START.plusDays(1)) != null);
+        store.close();
+
+        // a crash in the middle of an append leaves the beginning of a record after the last complete one
+        Path log = directory.resolve(LOG_FILE);
+        long end = endOfRecords(log);
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE)) {
+            channel.truncate(end);
+            ByteBuffer torn = ByteBuffer.allocate(12).putInt(64).putInt(0x12345678).putShort((short) 5).put("me".getBytes(StandardCharsets.UTF_8));
+            channel.write(torn.flip(), end);
+        }
+
+        HistoricalWeatherStore reopened = open(DataSize.ofMegabytes(1));
+        assertThat(reopened.getRange("hanoi", START, START.plusDays(1))).isNotNull();
+        assertThat(endOfRecords(log)).isEqualTo(end);
+
+        // appends continue after the last complete record
+        reopened.store("paris", "paris", response("Paris", "Oceanic", START, 1));
+        await().until(() -> reopened.getRange("paris", START, START) != null);
+        reopened.close();
+
+        HistoricalWeatherStore again = open(DataSize.ofMegabytes(1));
+        assertThat(again.getRange("hanoi", START, START.plusDays(1))).isNotNull();
+        assertThat(again.getRange("paris", START, START)).isNotNull();
+    }
+
+    @Test
+    void recordFailingItsCrcIsDroppedOnReopen() throws Exception {
+        HistoricalWeatherStore store = open(DataSize.ofMegabytes(1));
+        store.store("hanoi", "hanoi", response("Hanoi", "Tropical", START, 1));
+        await().until(() -> store.getRange("hanoi", START, START) != null);
+        store.store("paris", "paris", response("Paris", "Oceanic", START, 1));
+        await().until(() -> store.getRange("paris", START, START) != null);
+        store.close();
+
+        Path log = directory.resolve(LOG_FILE);
+        byte[] bytes = Files.readAllBytes(log);
+        int value = indexOf(bytes, "meta:paris".getBytes(StandardCharsets.UTF_8)) + "meta:paris".length();
+        bytes[value + 4] ^= 0x5A;
+        Files.write(log, bytes);
+
+        HistoricalWeatherStore reopened = open(DataSize.ofMegabytes(1));
+        assertThat(reopened.getRange("hanoi", START, START)).isNotNull();
+        assertThat(reopened.getRange("paris", START, START)).isNull();
+    }
+
+    @Test
+    void overwrittenRecordsAreCompacted() throws Exception {
+        DataSize maxSize = DataSize.ofKilobytes(16);
+        HistoricalWeatherStore store = open(maxSize);
+        String padding = "x".repeat(200);
+        int revisions = 80;
+        for (int i = 0; i < revisions; i++) {
+            store.store("paris", "paris", response("Paris", "Revision " + i + " " + padding, START.plusDays(i), 1));
+        }
+        LocalDate last = START.plusDays(revisions - 1);
+        String latest = "Revision " + (revisions - 1) + " " + padding;
+        await().until(() -> {
+            WeatherResponse response = store.getRange("paris", START, last);
+            return response != null && latest.equals(response.getDescription());
+        });
+
+        // without compaction the overwritten descriptions would fill the log and the latest ones be dropped
+        assertThat(meterRegistry.get("weather.historical.store.size").gauge().value()).isLessThanOrEqualTo(maxSize.toBytes());
+        assertThat(meterRegistry.get("weather.historical.store.entries").gauge().value()).isEqualTo(1);
+        store.close();
+
+        HistoricalWeatherStore reopened = open(maxSize);
+        WeatherResponse response = reopened.getRange("paris", START, last);
+        assertThat(response).isNotNull();
+        assertThat(response.getDescription()).isEqualTo(latest);
+        assertThat(response.getDays()).hasSize(revisions);
+    }
+
+    @Test
+    void appendsGrowTheMappingPastItsInitialSize() throws Exception {
+        HistoricalWeatherStore store = open(DataSize.ofMegabytes(64));
+        Random random = new Random(42);
+        List<String> descriptions = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            StringBuilder description = new StringBuilder();
+            random.ints(200_000, 'a', 'z' + 1).forEach(c -> description.append((char) c));
+            descriptions.add(description.toString());
+            store.store("location-" + i, "location-" + i, response("Location " + i, description.toString(), START, 1));
+        }
+        await().until(() -> store.getRange("location-11", START, START) != null);
+        assertThat(meterRegistry.get("weather.historical.store.size").gauge().value()).isGreaterThan(1 << 20);
+        store.close();
+
+        HistoricalWeatherStore reopened = open(DataSize.ofMegabytes(64));
+        for (int i = 0; i < descriptions.size(); i++) {
+            WeatherResponse response = reopened.getRange("location-" + i, START, START);
+            assertThat(response).isNotNull();
+            assertThat(response.getDescription()).isEqualTo(descriptions.get(i));
+        }
+    }
+
+    @Test
+    void readsDuringCompactionSeeEveryEntry() throws Exception {
+        DataSize maxSize = DataSize.ofKilobytes(16);
+        HistoricalWeatherStore store = open(maxSize);
+        store.store("hanoi", "hanoi", response("Hanoi", "Tropical", START, 2));
+        await().until(() -> store.getRange("hanoi", START, START.plusDays(1)) != null);
+
+        // readers keep reading the segments they hold while the log is compacted and its channel closed
+        AtomicBoolean writing = new AtomicBoolean(true);
+        AtomicInteger reads = new AtomicInteger();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Thread> readers = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Thread reader = new Thread(() -> {
+                try {
+                    while (writing.get()) {
+                        WeatherResponse response = store.getRange("hanoi", START, START.plusDays(1));
+                        assertThat(response).isNotNull();
+                        assertThat(response.getDescription()).isEqualTo("Tropical");
+                        reads.incrementAndGet();
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            });
+            reader.start();
+            readers.add(reader);
+        }
+
+        String padding = "x".repeat(200);
+        int revisions = 200;
+        for (int i = 0; i < revisions; i++) {
+            store.store("paris", "paris", response("Paris", "Revision " + i + " " + padding, START.plusDays(i), 1));
+        }
+        String latest = "Revision " + (revisions - 1) + " " + padding;
+        try {
+            await().until(() -> {
+                WeatherResponse response = store.getRange("paris", START, START.plusDays(revisions - 1));
+                return response != null && latest.equals(response.getDescription());
+            });
+        } finally {
+            writing.set(false);
+            for (Thread reader : readers) {
+                reader.join();
+            }
+        }
+
+        assertThat(failure.get()).isNull();
+        assertThat(reads.get()).isPositive();
+        // the revisions written take several times the max size, none was dropped thanks to compaction
+        assertThat(dropped("store-full")).isZero();
+        assertThat(meterRegistry.get("weather.historical.store.size").gauge().value()).isLessThanOrEqualTo(maxSize.toBytes());
+    }
+
+    @Test
+    void writesOverTheMaxSizeAreDropped() throws Exception {
+        HistoricalWeatherStore store = open(DataSize.ofKilobytes(16));
+        store.store("paris", "paris", response("Paris", randomText(new Random(42), 40_000), START, 1));
+        await().until(() -> dropped("store-full") == 1);
+        assertThat(store.getRange("paris", START, START)).isNull();
+
+        store.store("hanoi", "hanoi", response("Hanoi", "Tropical", START, 1));
+        await().until(() -> store.getRange("hanoi", START, START) != null);
+        assertThat(dropped("store-full")).isEqualTo(1);
+    }
+
+    @Test
+    void daySeriesCountTowardsTheMaxSize() throws Exception {
+        DataSize maxSize = DataSize.ofKilobytes(16);
+        HistoricalWeatherStore store = open(maxSize);
+        // 300 days take about 8 KB of series
+        store.store("hanoi", "hanoi", response("Hanoi", "Tropical", START, 300));
+        await().until(() -> store.getRange("hanoi", START, START.plusDays(299)) != null);
+        double stored = meterRegistry.get("weather.historical.store.size").gauge().value();
+        assertThat(stored).isGreaterThan(300 * 28);
+
+        store.store("paris", "paris", response("Paris", "Oceanic", START, 300));
+        await().until(() -> dropped("store-full") == 1);
+        assertThat(store.getRange("paris", START, START)).isNull();
+        assertThat(meterRegistry.get("weather.historical.store.size").gauge().value()).isLessThanOrEqualTo(maxSize.toBytes());
+        store.close();
+
+        HistoricalWeatherStore reopened = open(maxSize);
+        assertThat(meterRegistry.get("weather.historical.store.size").gauge().value()).isGreaterThanOrEqualTo(stored);
+        reopened.store("paris", "paris", response("Paris", "Oceanic", START, 300));
+        await().until(() -> dropped("store-full") == 1);
+        assertThat(reopened.getRange("hanoi", START, START.plusDays(299))).isNotNull();
+    }
+
+    @Test
+    void logOverALoweredMaxSizeIsCompactedOnReopen() throws Exception {
+        HistoricalWeatherStore store = open(DataSize.ofMegabytes(1));
+        String padding = "x".repeat(200);
+        int revisions = 80;
+        // each revision comes with a day not stored yet, responses whose days are all stored being skipped
+        for (int i = 0; i < revisions; i++) {
+            store.store("paris", "paris", response("Paris", "Revision " + i + " " + padding, START.plusDays(i), 1));
+        }
+        String latest = "Revision " + (revisions - 1) + " " + padding;
+        await().until(() -> {
+            WeatherResponse response = store.getRange("paris", START, START);
+            return response != null && latest.equals(response.getDescription());
+        });
+        store.close();
+        DataSize maxSize = DataSize.ofKilobytes(8);
+        assertThat(endOfRecords(directory.resolve(LOG_FILE))).isGreaterThan(maxSize.toBytes());
+
+        HistoricalWeatherStore reopened = open(maxSize);
+        assertThat(meterRegistry.get("weather.historical.store.size").gauge().value()).isLessThanOrEqualTo(maxSize.toBytes());
+        assertThat(reopened.getRange("paris", START, START).getDescription()).isEqualTo(latest);
+
+        reopened.store("hanoi", "hanoi", response("Hanoi", "Tropical", START, 1));
+        await().until(() -> reopened.getRange("hanoi", START, START) != null);
+    }
+
+    @Test
+    void logStillOverALoweredMaxSizeIsServedReadOnly() throws Exception {
+        HistoricalWeatherStore store = open(DataSize.ofMegabytes(1));
+        Random random = new Random(42);
+        List<String> descriptions = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            descriptions.add(randomText(random, 10_000));
+            store.store("location-" + i, "location-" + i, response("Location " + i, descriptions.get(i), START, 1));
+        }
+        await().until(() -> store.getRange("location-2", START, START) != null);
+        store.close();
+
+        HistoricalWeatherStore reopened = open(DataSize.ofKilobytes(8));
+        for (int i = 0; i < descriptions.size(); i++) {
+            assertThat(reopened.getRange("location-" + i, START, START).getDescription()).isEqualTo(descriptions.get(i));
+        }
+
+        reopened.store("hanoi", "hanoi", response("Hanoi", "Tropical", START, 1));
+        await().until(() -> dropped("store-full") == 1);
+        assertThat(reopened.getRange("hanoi", START, START)).isNull();
+    }
+
+    private HistoricalWeatherStore open(DataSize maxSize) throws IOException {
+        meterRegistry.clear();
+        HistoricalWeatherStore store = new HistoricalWeatherStore(new ObjectMapper(), meterRegistry, true, directory, maxSize,
+                0.5, Duration.ofDays(2), 100, 1000);
+        store.open();
+        stores.add(store);
+        return store;
+    }
+
+    private double dropped(String reason) {
+        return meterRegistry.get("weather.historical.store.dropped").tag("reason", reason).counter().count();
+    }
+
+    private static String randomText(Random random, int length) {
+        StringBuilder text = new StringBuilder(length);
+        random.ints(length, 'a', 'z' + 1).forEach(c -> text.append((char) c));
+        return text.toString();
+    }
+
+    private static WeatherResponse response(String resolvedAddress, String description, LocalDate startDate, int days) {
+        List<DayWeather> list = new ArrayList<>(days);
+        for (int i = 0; i < days; i++) {
+            list.add(new DayWeather(startDate.plusDays(i).toString(), 30.5, 20.1, "Rain", "Rainy day"));
+        }
+        return new WeatherResponse(resolvedAddress, "Asia/Bangkok", description, list, List.of());
+    }
+
+    /**
+     * Offset following the last record of a log, records being {@code [length][crc32][key length][key][value]}
+     * and followed by zeros.
+     */
+    private static long endOfRecords(Path log) throws IOException {
+        ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(log));
+        int position = 0;
+        while (position + 8 <= bytes.limit() && bytes.getInt(position) != 0) {
+            position += 8 + bytes.getInt(position);
+        }
+        return position;
+    }
+
+    private static int indexOf(byte[] bytes, byte[] key) {
+        outer:
+        for (int i = 0; i <= bytes.length - key.length; i++) {
+            for (int j = 0; j < key.length; j++) {
+                if (bytes[i + j] != key[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        throw new AssertionError("Key not found");
+    }
+}